@@ -16,8 +16,8 @@ public class RunTest {
         Account acc = dao.findAccountById(2);
         user = acc.getOwner();
         System.out.println(user.getId()+ " "+user.getName()+ " "+user.getRole().getName());
-        System.out.println(acc.getAmmount());
-        acc.setAmmount(11433.85);
+        System.out.println(acc.getMoney());
+        acc.setBalance(1143385);
         dao.updateAccountState(acc);
 
         /*String s = AuthenticationManager.hashPassword("Adam");
@@ -0,0 +1,146 @@
+package biz;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed array of locks shared by all accounts, an account always maps to the
+ * same stripe. Several accounts are locked in ascending stripe order, so two
+ * transfers between the same accounts in opposite directions cannot deadlock.
+ */
+public class AccountLocks {
+
+    /**
+     * Usage of one stripe since the locks were created.
+     */
+    public static class StripeStats {
+        private final int stripe;
+        private final long acquisitions;
+        private final long contended;
+        private final long waitNanos;
+
+        public StripeStats(int stripe, long acquisitions, long contended, long waitNanos) {
+            this.stripe = stripe;
+            this.acquisitions = acquisitions;
+            this.contended = contended;
+            this.waitNanos = waitNanos;
+        }
+
+        public int getStripe() {
+            return stripe;
+        }
+
+        public long getAcquisitions() {
+            return acquisitions;
+        }
+
+        /**
+         * Acquisitions which found the stripe held by another thread.
+         */
+        public long getContended() {
+            return contended;
+        }
+
+        public long getWaitNanos() {
+            return waitNanos;
+        }
+    }
+
+    /**
+     * Stripes held by the caller, released by {@link #close()}.
+     */
+    public class Held implements AutoCloseable {
+        private final int[] held;
+
+        private Held(int[] held) {
+            this.held = held;
+        }
+
+        @Override
+        public void close() {
+            for (int i = held.length - 1; i >= 0; i--) {
+                stripes[held[i]].unlock();
+            }
+        }
+    }
+
+    private final ReentrantLock[] stripes;
+    private final LongAdder[] acquisitions;
+    private final LongAdder[] contended;
+    private final LongAdder[] waitNanos;
+    private final int mask;
+
+    public AccountLocks() {
+        this(64);
+    }
+
+    /**
+     * @param stripes rounded up to a power of two
+     */
+    public AccountLocks(int stripes) {
+        int size = 1;
+        while (size < stripes) size <<= 1;
+        this.stripes = new ReentrantLock[size];
+        this.acquisitions = new LongAdder[size];
+        this.contended = new LongAdder[size];
+        this.waitNanos = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+            this.acquisitions[i] = new LongAdder();
+            this.contended[i] = new LongAdder();
+            this.waitNanos[i] = new LongAdder();
+        }
+        this.mask = size - 1;
+    }
+
+    int stripeFor(int accountId) {
+        int h = accountId * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Locks the stripes of all given accounts, waiting as long as necessary.
+     */
+    public Held lock(int... accountIds) {
+        int[] held = new int[accountIds.length];
+        for (int i = 0; i < accountIds.length; i++) {
+            held[i] = stripeFor(accountIds[i]);
+        }
+        Arrays.sort(held);
+        int distinct = 0;
+        for (int i = 0; i < held.length; i++) {
+            if (distinct == 0 || held[distinct - 1] != held[i]) held[distinct++] = held[i];
+        }
+        held = Arrays.copyOf(held, distinct);
+        for (int stripe : held) {
+            acquire(stripe);
+        }
+        return new Held(held);
+    }
+
+    private void acquire(int stripe) {
+        ReentrantLock lock = stripes[stripe];
+        if (!lock.tryLock()) {
+            contended[stripe].increment();
+            long start = System.nanoTime();
+            lock.lock();
+            waitNanos[stripe].add(System.nanoTime() - start);
+        }
+        acquisitions[stripe].increment();
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    public List<StripeStats> getStats() {
+        List<StripeStats> stats = new ArrayList<>(stripes.length);
+        for (int i = 0; i < stripes.length; i++) {
+            stats.add(new StripeStats(i, acquisitions[i].sum(), contended[i].sum(), waitNanos[i].sum()));
+        }
+        return stats;
+    }
+}
@@ -1,6 +1,8 @@
 package biz;
 
 import db.dao.DAO;
+import db.dao.impl.CachingDAO;
+import db.dao.impl.IdentityCachingDAO;
 import db.dao.impl.SQLiteDB;
 import model.Account;
 import model.Operation;
@@ -11,6 +13,7 @@ import model.operations.PaymentIn;
 import model.operations.Withdraw;
 
 import java.sql.SQLException;
+import java.util.Objects;
 
 /**
  * Created by Krzysztof Podlaski on 04.03.2018.
@@ -21,57 +24,79 @@ public class AccountManager {
     AuthenticationManager auth;
     InterestOperator interestOperator;
     User loggedUser=null;
+    AccountLocks locks = new AccountLocks();
+    SessionManager sessions = new SessionManager();
 
-    public boolean paymentIn(User user, double ammount, String description, int accountId) throws SQLException {
-        Account account = dao.findAccountById(accountId);
-        Operation operation = new PaymentIn(user, ammount,description, account);
-        boolean success = false;
-        if (account != null) {
-            success = account.income(ammount);
+    // amounts are in minor units of the account's currency, see Money
+    // the read-modify-write of an account state runs under the account's stripe lock
+    public boolean paymentIn(User user, long ammount, String description, int accountId) throws SQLException {
+        try (AccountLocks.Held held = locks.lock(accountId)) {
+            Account account = dao.findAccountById(accountId);
+            Operation operation = new PaymentIn(user, ammount,description, account);
+            boolean success = false;
+            if (account != null) {
+                success = account.income(ammount);
+                success = dao.updateAccountState(account);
+            }
+            history.logOperation(operation, success);
+            return success;
+        }
+    }
+
+    public boolean paymentOut(User user, long ammount, String description, int accountId) throws OperationIsNotAllowedException, SQLException {
+        try (AccountLocks.Held held = locks.lock(accountId)) {
+            Account account = dao.findAccountById(accountId);
+            Operation operation = new Withdraw(user, ammount,description, account);
+            boolean success = auth.canInvokeOperation(operation,user );
+            if (!success){
+                history.logUnauthorizedOperation(operation, success);
+                throw new OperationIsNotAllowedException("Unauthorized operation");
+            }
+            success = account.outcome(ammount);
             success = dao.updateAccountState(account);
+            history.logOperation(operation, success);
+            return success;
         }
-        history.logOperation(operation, success);
-        return success;
     }
 
-    public boolean paymentOut(User user, double ammount, String description, int accountId) throws OperationIsNotAllowedException, SQLException {
-        Account account = dao.findAccountById(accountId);
-        Operation operation = new Withdraw(user, ammount,description, account);
-        boolean success = auth.canInvokeOperation(operation,user );
-        if (!success){
-            history.logUnauthorizedOperation(operation, success);
-            throw new OperationIsNotAllowedException("Unauthorized operation");
+    public boolean internalPayment(User user, long ammount, String description, int sourceAccountId, int destAccountId) throws OperationIsNotAllowedException, SQLException {
+        try (AccountLocks.Held held = locks.lock(sourceAccountId, destAccountId)) {
+            return transferLocked(user, ammount, description, sourceAccountId, destAccountId);
         }
-        success = account.outcome(ammount);
-        success = dao.updateAccountState(account);
-        history.logOperation(operation, success);
-        return success;
     }
 
-    public boolean internalPayment(User user, double ammount, String description, int sourceAccountId, int destAccountId) throws OperationIsNotAllowedException, SQLException {
+    private boolean transferLocked(User user, long ammount, String description, int sourceAccountId, int destAccountId) throws OperationIsNotAllowedException, SQLException {
         Account sourceAccount = dao.findAccountById(sourceAccountId);
         Account destAccount = dao.findAccountById(destAccountId);
-        Operation withdraw = new Withdraw(user, ammount,description, sourceAccount);
-        Operation payment = new PaymentIn(user, ammount,description, destAccount);
+        Withdraw withdraw = new Withdraw(user, ammount,description, sourceAccount);
+        PaymentIn payment = new PaymentIn(user, ammount,description, destAccount);
         boolean success = auth.canInvokeOperation(withdraw,user );
         if (!success){
             history.logUnauthorizedOperation(withdraw, success);
             throw new OperationIsNotAllowedException("Unauthorized operation");
         }
-        success = sourceAccount.outcome(ammount);
-        success = success && destAccount.income(ammount);
+        if (sourceAccount == null || destAccount == null
+                || !Objects.equals(sourceAccount.getCurrency(), destAccount.getCurrency())) {
+            history.logOperation(withdraw, false);
+            history.logOperation(payment, false);
+            return false;
+        }
+        // debit, credit and both journal rows are committed together by the DAO
+        success = dao.transfer(withdraw, payment);
         if (success) {
-            success = dao.updateAccountState(sourceAccount);
-            if (success) dao.updateAccountState(destAccount);
+            sourceAccount.outcome(ammount);
+            destAccount.income(ammount);
         }
-        history.logOperation(withdraw, success);
-        history.logOperation(payment, success);
         return success;
     }
 
+    public AccountLocks getLocks() {
+        return locks;
+    }
+
     public static AccountManager buildBank() {
         try {
-            DAO dao = SQLiteDB.createDAO();
+            DAO dao = new CachingDAO(new IdentityCachingDAO(SQLiteDB.createDAO()));
             BankHistory history = new BankHistory(dao);
             AuthenticationManager am = new AuthenticationManager(dao, history);
             AccountManager aManager = new AccountManager();
@@ -94,6 +119,14 @@ public class AccountManager {
         return loggedUser!=null;
     }
 
+    /**
+     * @param source client address, failed logins from one source lock it out for every user name
+     */
+    public boolean logIn(String userName, char[] password, String source) throws UserUnnkownOrBadPasswordException, SQLException {
+        loggedUser =  auth.logIn(userName, password, source);
+        return loggedUser!=null;
+    }
+
     public boolean logOut(User user) throws SQLException {
         if (auth.logOut(user)) {
             loggedUser = null;
@@ -102,6 +135,50 @@ public class AccountManager {
         return false;
     }
 
+    /**
+     * Authenticates once and opens a session, further calls only pass the token.
+     * @return session token
+     */
+    public String logInSession(String userName, char[] password) throws UserUnnkownOrBadPasswordException, SQLException {
+        User user = auth.logIn(userName, password);
+        return sessions.open(user);
+    }
+
+    /**
+     * @param source client address used for throttling, see {@link #logIn(String, char[], String)}
+     */
+    public String logInSession(String userName, char[] password, String source) throws UserUnnkownOrBadPasswordException, SQLException {
+        User user = auth.logIn(userName, password, source);
+        return sessions.open(user);
+    }
+
+    /**
+     * @return user of the session, null when it has expired or does not exist
+     */
+    public User resolveSession(String token) {
+        return sessions.resolve(token);
+    }
+
+    public boolean logOutSession(String token) throws SQLException {
+        User user = sessions.close(token);
+        if (user == null) return false;
+        return auth.logOut(user);
+    }
+
+    public boolean paymentOutInSession(String token, long ammount, String description, int accountId) throws OperationIsNotAllowedException, SQLException {
+        return paymentOut(sessionUser(token), ammount, description, accountId);
+    }
+
+    public boolean internalPaymentInSession(String token, long ammount, String description, int sourceAccountId, int destAccountId) throws OperationIsNotAllowedException, SQLException {
+        return internalPayment(sessionUser(token), ammount, description, sourceAccountId, destAccountId);
+    }
+
+    private User sessionUser(String token) throws OperationIsNotAllowedException {
+        User user = sessions.resolve(token);
+        if (user == null) throw new OperationIsNotAllowedException("Session expired");
+        return user;
+    }
+
     public User getLoggedUser() {
         return loggedUser;
     }
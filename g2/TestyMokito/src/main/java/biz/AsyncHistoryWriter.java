@@ -0,0 +1,232 @@
+package biz;
+
+import db.dao.DAO;
+import model.Operation;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes history on a dedicated thread. Callers only enqueue the operation,
+ * the writer drains the queue in batches and commits every batch as one
+ * transaction (group commit).
+ * <p>
+ * A batch which fails is tried again a few times with a growing pause, then
+ * its operations are written one by one, so only those which cannot be
+ * written at all are lost (and counted by {@link #getFailed()}).
+ */
+public class AsyncHistoryWriter {
+    private static final int RETRIES = 3;
+    private static final long RETRY_DELAY_MILLIS = 10;
+
+    /**
+     * What happens to an operation when the queue is full.
+     */
+    public enum OverflowPolicy {
+        /** caller waits for free space */
+        BLOCK,
+        /** caller writes the operation synchronously */
+        CALLER_RUNS,
+        /** operation is counted as dropped and forgotten */
+        DROP
+    }
+
+    private static class Entry {
+        final Operation operation;
+        final boolean success;
+
+        Entry(Operation operation, boolean success) {
+            this.operation = operation;
+            this.success = success;
+        }
+    }
+
+    private final DAO dao;
+    private final BlockingQueue<Entry> queue;
+    private final int maxBatchSize;
+    private final long maxLingerNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final Thread writer;
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final Object progress = new Object();
+    private long completed = 0;
+    private volatile boolean closed = false;
+
+    public AsyncHistoryWriter(DAO dao) {
+        this(dao, 10_000, 500, 5, OverflowPolicy.BLOCK);
+    }
+
+    public AsyncHistoryWriter(DAO dao, int capacity, int maxBatchSize, long maxLingerMillis, OverflowPolicy overflowPolicy) {
+        this.dao = dao;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+        this.overflowPolicy = overflowPolicy;
+        this.writer = new Thread(this::run, "bank-history-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public void submit(Operation operation, boolean success) throws SQLException {
+        if (closed) {
+            dao.logOperation(operation, success);
+            return;
+        }
+        Entry entry = new Entry(operation, success);
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    queue.put(entry);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dao.logOperation(operation, success);
+                    return;
+                }
+                break;
+            case CALLER_RUNS:
+                if (!queue.offer(entry)) {
+                    dao.logOperation(operation, success);
+                    return;
+                }
+                break;
+            case DROP:
+                if (!queue.offer(entry)) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                break;
+        }
+        // close() may have drained the queue between the check above and the put;
+        // whoever removes the entry first writes it
+        if (closed && queue.remove(entry)) {
+            dao.logOperation(operation, success);
+            return;
+        }
+        accepted.incrementAndGet();
+    }
+
+    /**
+     * Waits until every operation accepted before this call has been written
+     * (or has failed to be written).
+     * @return false if the timeout elapsed first
+     */
+    public boolean flush(long timeoutMillis) throws InterruptedException {
+        long target = accepted.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (progress) {
+            while (completed < target) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) return false;
+                TimeUnit.NANOSECONDS.timedWait(progress, left);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops accepting new operations, writes everything queued and stops the writer thread.
+     */
+    public void close() throws InterruptedException {
+        closed = true;
+        writer.join();
+        List<Entry> late = new ArrayList<>();
+        queue.drainTo(late);
+        if (!late.isEmpty()) write(late);
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + maxLingerNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long left = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || left <= 0) break;
+                    Entry next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // keep draining, close() is the only way to stop the writer
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Entry> batch) {
+        List<Operation> operations = new ArrayList<>(batch.size());
+        boolean[] success = new boolean[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            operations.add(batch.get(i).operation);
+            success[i] = batch.get(i).success;
+        }
+        if (!writeBatch(operations, success)) {
+            for (int i = 0; i < operations.size(); i++) {
+                try {
+                    dao.logOperation(operations.get(i), success[i]);
+                } catch (SQLException | RuntimeException e) {
+                    failed.incrementAndGet();
+                    e.printStackTrace();
+                }
+            }
+        }
+        synchronized (progress) {
+            completed += batch.size();
+            progress.notifyAll();
+        }
+    }
+
+    /**
+     * @return false if the batch still failed after the retries
+     */
+    private boolean writeBatch(List<Operation> operations, boolean[] success) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                dao.logOperations(operations, success);
+                batches.incrementAndGet();
+                return true;
+            } catch (SQLException | RuntimeException e) {
+                if (attempt == RETRIES) {
+                    e.printStackTrace();
+                    return false;
+                }
+            }
+            try {
+                Thread.sleep(RETRY_DELAY_MILLIS << attempt);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -4,16 +4,13 @@ package biz;
 import db.dao.DAO;
 import model.Operation;
 import model.Password;
+import model.Role;
 import model.User;
+import model.exceptions.LoginServiceBusyException;
+import model.exceptions.LoginThrottledException;
 import model.exceptions.UserUnnkownOrBadPasswordException;
-import model.operations.OperationType;
 import model.operations.Withdraw;
-import org.apache.commons.codec.binary.Base64;
 
-import java.nio.CharBuffer;
-import java.nio.charset.Charset;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
 import java.util.Arrays;
 
@@ -22,27 +19,62 @@ import java.util.Arrays;
  * Created by Krzysztof Podlaski on 04.03.2018.
  */
 public class AuthenticationManager {
+    private static final PasswordHashing DEFAULT_HASHING = PasswordHashing.defaults();
+
     private DAO dao;
     private BankHistory history;
+    private PasswordHashing hashing;
+    private LoginThrottle throttle;
 
     public AuthenticationManager(DAO dao, BankHistory bankHistory){
+        this(dao, bankHistory, DEFAULT_HASHING);
+    }
+
+    /**
+     * @param pbkdf2Iterations iteration count of new password hashes, e.g. from {@link PasswordHashCalibrator}
+     */
+    public AuthenticationManager(DAO dao, BankHistory bankHistory, int pbkdf2Iterations){
+        this(dao, bankHistory, PasswordHashing.defaults(pbkdf2Iterations));
+    }
+
+    public AuthenticationManager(DAO dao, BankHistory bankHistory, PasswordHashing hashing){
+        this(dao, bankHistory, hashing, new LoginThrottle(bankHistory));
+    }
+
+    public AuthenticationManager(DAO dao, BankHistory bankHistory, PasswordHashing hashing, LoginThrottle throttle){
         this.dao=dao;
         this.history=bankHistory;
+        this.hashing=hashing;
+        this.throttle=throttle;
     }
 
     public User logIn(String userName, char[] password) throws UserUnnkownOrBadPasswordException, SQLException {
+        return logIn(userName, password, null);
+    }
+
+    /**
+     * @param source client address used for throttling, may be null
+     */
+    public User logIn(String userName, char[] password, String source) throws UserUnnkownOrBadPasswordException, SQLException {
+        if (throttle.refuse(userName, source)) {
+            if (password != null) Arrays.fill(password, 'a');
+            throw new LoginThrottledException("Too many failed logins");
+        }
         User user = dao.findUserByName(userName);
         if (user==null) {
-            history.logLoginFailure(null,"Zła nazwa użytkownika "+userName);
+            if (throttle.failure(userName, null, source)) history.logLoginFailure(null,"Zła nazwa użytkownika "+userName);
             throw new UserUnnkownOrBadPasswordException("Bad Password");
         }
         Password paswd = dao.findPasswordForUser(user);
+        String stored = paswd.getPasswd();
         if (checkPassword(paswd,password)) {
+            if (!stored.equals(paswd.getPasswd())) rehash(user, paswd.getPasswd(), stored);
+            throttle.success(userName);
             history.logLoginSuccess(user);
             return user;
         }
         else {
-            history.logLoginFailure(user,"Bad Password");
+            if (throttle.failure(userName, user, source)) history.logLoginFailure(user,"Bad Password");
             throw new UserUnnkownOrBadPasswordException("Bad Password");
         }
     }
@@ -52,40 +84,47 @@ public class AuthenticationManager {
         return true;
     }
 
-    private boolean checkPassword(Password passwd, char[] password) {
-        String hashedPassword = hashPassword(password);
-        return passwd.getPasswd().equals(hashedPassword);
+    /**
+     * On success passwd holds the hash to keep, a new one when the stored
+     * hash is in an outdated format.
+     */
+    private boolean checkPassword(Password passwd, char[] password) throws LoginServiceBusyException {
+        String current = hashing.verify(password, passwd.getPasswd());
+        if (current == null) return false;
+        passwd.setPasswd(current);
+        return true;
     }
 
-    public static String hashPassword(char[] pass){
-        String result=null;
-        CharBuffer cBuffer = CharBuffer.wrap(pass);
-        byte[] bpass = null;
+    /**
+     * Replaces the stored hash unless it has changed meanwhile. The login
+     * succeeds even if the new hash cannot be written.
+     */
+    private void rehash(User user, String newHash, String oldHash) {
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            bpass = Charset.forName("UTF-8").encode(cBuffer).array();
-            byte[] encodedhash = digest.digest(bpass);
-            Base64 base64 = new Base64();
-            result = new String(base64.encode(encodedhash));
-        } catch (NoSuchAlgorithmException e) {
+            dao.setUserPassword(user, newHash, oldHash);
+        } catch (SQLException e) {
             e.printStackTrace();
         }
-        finally{
-            cBuffer.clear();
-            if (bpass!=null) Arrays.fill(bpass, (byte) 0x0);
-            if (pass!=null) Arrays.fill(pass, 'a');
-        }
-        return result;
     }
 
+    /**
+     * Hash in the legacy unsalted format, see {@link PasswordHashing#hash(char[])} for new passwords.
+     */
+    public static String hashPassword(char[] pass){
+        return PasswordDigest.SHA_256.hash(pass);
+    }
+
+    /**
+     * Permissions come with the role from the Role table.
+     */
     public boolean canInvokeOperation(Operation operation, User user) {
-        if (user.getRole().getName().equals("Admin")) return true;
-        if (operation.getType() == OperationType.PAYMENT_IN) return true;
-        if (operation.getType() == OperationType.WITHDRAW) {
+        Role role = user.getRole();
+        if (!role.permits(operation.getType())) return false;
+        if (role.isOwnershipChecked() && operation instanceof Withdraw) {
             Withdraw op = (Withdraw) operation;
             return user.getId() == op.getUser().getId();
         }
-        return false;
+        return true;
     }
 
 
@@ -7,6 +7,7 @@ import model.User;
 import model.operations.LogIn;
 import model.operations.LogOut;
 
+import java.io.IOException;
 import java.sql.SQLException;
 
 /**
@@ -14,11 +15,29 @@ import java.sql.SQLException;
  */
 public class BankHistory {
     DAO dao;
+    AsyncHistoryWriter writer;
+    OperationJournal journal;
 
     public BankHistory(DAO dao) {
         this.dao = dao;
     }
 
+    /**
+     * History which hands operations to the writer instead of waiting for the database.
+     */
+    public BankHistory(DAO dao, AsyncHistoryWriter writer) {
+        this.dao = dao;
+        this.writer = writer;
+    }
+
+    /**
+     * History appended to a memory-mapped journal instead of the database.
+     */
+    public BankHistory(DAO dao, OperationJournal journal) {
+        this.dao = dao;
+        this.journal = journal;
+    }
+
     public void logLoginSuccess(User user) throws SQLException {
         Operation o = new LogIn(user,"Logowanie ");
         logOperation(o,true);
@@ -34,19 +53,42 @@ public class BankHistory {
         logOperation(o,true);
     }
 
-    public void logPaymentIn(Account account, double ammount, boolean success) {
+    public void logPaymentIn(Account account, long ammount, boolean success) {
         throw new RuntimeException("Not implemented");
     }
 
-    public void logPaymentOut(Account account, double ammount, boolean success) {
+    public void logPaymentOut(Account account, long ammount, boolean success) {
         throw new RuntimeException("Not implemented");
     }
 
     public void logOperation(Operation operation, boolean success) throws SQLException {
-
+        if (journal != null) {
+            try {
+                journal.append(operation, success);
+            } catch (IOException e) {
+                throw new SQLException(e);
+            }
+            return;
+        }
+        if (writer != null) {
+            writer.submit(operation, success);
+            return;
+        }
         dao.logOperation(operation,success);
     }
 
+    /**
+     * Waits until history logged so far is stored, no-op for synchronous history.
+     */
+    public boolean flush(long timeoutMillis) throws InterruptedException {
+        if (journal != null) {
+            journal.force();
+            return true;
+        }
+        if (writer == null) return true;
+        return writer.flush(timeoutMillis);
+    }
+
     public void logUnauthorizedOperation(Operation operation, boolean success) {
 
         throw new RuntimeException("Not implemented");
@@ -2,11 +2,18 @@ package biz;
 
 import db.dao.DAO;
 import model.Account;
+import model.Money;
 import model.Operation;
 import model.User;
 import model.operations.Interest;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Created by Krzysztof Podlaski on 07.03.2018.
@@ -15,7 +22,9 @@ public class InterestOperator {
     protected DAO dao;
     protected AccountManager accountManager;
     protected BankHistory bankHistory;
-    private double interestFactor =.2;
+    // 20%, in basis points of the balance
+    private long interestRate = 2000;
+    private int chunkSize = 1000;
 
     public InterestOperator (DAO dao, AccountManager am){
         this.dao=dao;
@@ -23,8 +32,7 @@ public class InterestOperator {
     }
 
     public void countInterestForAccount(Account account) throws SQLException {
-        double ammount = account.getAmmount();
-        double interest = ammount*interestFactor;
+        long interest = Money.percent(account.getBalance(), interestRate);
         User user = dao.findUserByName("InterestOperator");
         String desc = "Interest ...";
         boolean success = accountManager.paymentIn(user,interest,desc,account.getId());
@@ -32,5 +40,135 @@ public class InterestOperator {
         bankHistory.logOperation(operation,success);
     }
 
+    /**
+     * Credits interest to every account. Accounts are read in id order, chunk by
+     * chunk, and every chunk is credited and journalled in a single transaction
+     * together with the run's checkpoint. Calling it again with the same runId
+     * resumes after the last committed chunk, accounts already credited by the
+     * run are never credited twice. The caller names the run (e.g. after the
+     * period it pays for), an id derived from the clock would change when a run
+     * is resumed on another day. A finished run is not applied again and its
+     * checkpoints and claims are deleted.
+     */
+    public InterestRunSummary applyInterestToAllAccounts(String runId, InterestProgressListener listener) throws SQLException {
+        InterestRunProgress progress = new InterestRunProgress(listener);
+        if (dao.isInterestRunFinished(runId)) return new InterestRunSummary(0, 0, progress.elapsedNanos());
+        User user = dao.findUserByName("InterestOperator");
+        InterestRunSummary summary = creditRange(user, runId, 0, Integer.MAX_VALUE, progress);
+        for (InterestRunSummary.PartitionFailure failure : summary.getFailures()) {
+            if (failure.getCause() instanceof SQLException) throw (SQLException) failure.getCause();
+            throw (RuntimeException) failure.getCause();
+        }
+        dao.finishInterestRun(runId);
+        return summary.withElapsedNanos(progress.elapsedNanos());
+    }
+
+    /**
+     * Same as {@link #applyInterestToAllAccounts(String, InterestProgressListener)}, but the
+     * account id space is split into ranges of partitionSize ids processed on
+     * parallelism threads. A failed range does not stop the others, it is reported
+     * in the summary from its last committed account on. The listener is called
+     * from the worker threads. Writes are still serialised by SQLite, the DAO pool
+     * should have at least parallelism connections.
+     * <p>
+     * Every partition keeps its own checkpoint, a rerun with the same runId and
+     * partitionSize resumes each partition where it stopped. The run is finished
+     * when no partition failed.
+     */
+    public InterestRunSummary applyInterestInParallel(String runId, int parallelism, int partitionSize, InterestProgressListener listener) throws SQLException {
+        InterestRunProgress progress = new InterestRunProgress(listener);
+        if (dao.isInterestRunFinished(runId)) return new InterestRunSummary(0, 0, progress.elapsedNanos());
+        User user = dao.findUserByName("InterestOperator");
+        int maxId = dao.findMaxAccountId();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            InterestRunSummary summary = pool.invoke(new InterestPartitionTask(this, user, runId, 0, maxId, partitionSize, progress));
+            if (summary.isComplete()) dao.finishInterestRun(runId);
+            return summary.withElapsedNanos(progress.elapsedNanos());
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Credits accounts with id in (fromId, toId], starting after the range's
+     * checkpoint. An error stops the range, the summary then holds the accounts
+     * committed so far and the failed remainder.
+     */
+    InterestRunSummary creditRange(User user, String runId, int fromId, int toId, InterestRunProgress progress) {
+        long start = System.nanoTime();
+        String desc = "Interest ...";
+        long accounts = 0;
+        long total = 0;
+        int lastId = fromId;
+        try {
+            lastId = Math.max(fromId, dao.findInterestWatermark(runId, fromId));
+            List<Account> chunk;
+            while (!(chunk = dao.findAccounts(lastId, toId, chunkSize)).isEmpty()) {
+                List<Interest> credits = new ArrayList<>(chunk.size());
+                for (Account account : chunk) {
+                    long interest = Money.percent(account.getBalance(), interestRate);
+                    credits.add(new Interest(user, interest, desc, account));
+                }
+                int watermark = chunk.get(chunk.size() - 1).getId();
+                boolean[] applied = credit(runId, fromId, credits, lastId, watermark);
+                for (int i = 0; i < applied.length; i++) {
+                    if (!applied[i]) continue;
+                    accounts++;
+                    total = Money.add(total, credits.get(i).getAmmount());
+                }
+                lastId = watermark;
+                progress.chunkCommitted(chunk.size());
+            }
+        } catch (SQLException | RuntimeException e) {
+            return new InterestRunSummary(accounts, total, System.nanoTime() - start, Collections.emptyMap(),
+                    Collections.singletonList(new InterestRunSummary.PartitionFailure(lastId, toId, e)));
+        }
+        return new InterestRunSummary(accounts, total, System.nanoTime() - start);
+    }
+
+    /**
+     * Payments write back the balance they read under the account's stripe,
+     * a credit made between the read and the write would be overwritten. The
+     * chunk is credited stripe by stripe, each part under its one stripe, so
+     * payments on the other stripes and other partitions go on meanwhile. The
+     * checkpoint moves to watermark with the last part only, a resumed run
+     * repeats the chunk and skips the accounts already credited.
+     */
+    private boolean[] credit(String runId, int partitionFrom, List<Interest> credits, int previousWatermark,
+                             int watermark) throws SQLException {
+        AccountLocks locks = accountManager == null ? null : accountManager.getLocks();
+        if (locks == null) return dao.creditInterest(runId, partitionFrom, credits, watermark);
+        Map<Integer, List<Integer>> byStripe = new LinkedHashMap<>();
+        for (int i = 0; i < credits.size(); i++) {
+            byStripe.computeIfAbsent(locks.stripeFor(credits.get(i).getAccount().getId()), k -> new ArrayList<>()).add(i);
+        }
+        boolean[] applied = new boolean[credits.size()];
+        int parts = byStripe.size();
+        for (List<Integer> indexes : byStripe.values()) {
+            List<Interest> part = new ArrayList<>(indexes.size());
+            for (int i : indexes) {
+                part.add(credits.get(i));
+            }
+            boolean[] partApplied;
+            try (AccountLocks.Held held = locks.lock(part.get(0).getAccount().getId())) {
+                partApplied = dao.creditInterest(runId, partitionFrom, part, --parts == 0 ? watermark : previousWatermark);
+            }
+            for (int k = 0; k < partApplied.length; k++) {
+                applied[indexes.get(k)] = partApplied[k];
+            }
+        }
+        return applied;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
 
 }
@@ -0,0 +1,47 @@
+package biz;
+
+import model.User;
+
+import java.util.Collections;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Credits interest to the accounts with id in (fromId, toId]. Ranges larger
+ * than the partition size are split in halves and processed in parallel.
+ */
+class InterestPartitionTask extends RecursiveTask<InterestRunSummary> {
+    private final InterestOperator operator;
+    private final User user;
+    private final String runId;
+    private final int fromId;
+    private final int toId;
+    private final int partitionSize;
+    private final InterestRunProgress progress;
+
+    InterestPartitionTask(InterestOperator operator, User user, String runId, int fromId, int toId, int partitionSize, InterestRunProgress progress) {
+        this.operator = operator;
+        this.user = user;
+        this.runId = runId;
+        this.fromId = fromId;
+        this.toId = toId;
+        this.partitionSize = partitionSize;
+        this.progress = progress;
+    }
+
+    @Override
+    protected InterestRunSummary compute() {
+        if ((long) toId - fromId > partitionSize) {
+            int middle = (int) (((long) fromId + toId) / 2);
+            InterestPartitionTask left = new InterestPartitionTask(operator, user, runId, fromId, middle, partitionSize, progress);
+            InterestPartitionTask right = new InterestPartitionTask(operator, user, runId, middle, toId, partitionSize, progress);
+            left.fork();
+            InterestRunSummary rightResult = right.compute();
+            return left.join().merge(rightResult);
+        }
+        String worker = Thread.currentThread().getName();
+        InterestRunSummary result = operator.creditRange(user, runId, fromId, toId, progress);
+        return new InterestRunSummary(result.getAccounts(), result.getTotalInterest(), result.getElapsedNanos(),
+                Collections.singletonMap(worker, new InterestRunSummary.WorkerStats(result.getAccounts(), result.getElapsedNanos())),
+                result.getFailures());
+    }
+}
@@ -0,0 +1,8 @@
+package biz;
+
+/**
+ * Notified after every committed chunk of a bulk interest run.
+ */
+public interface InterestProgressListener {
+    void chunkCommitted(long accountsDone, long elapsedNanos);
+}
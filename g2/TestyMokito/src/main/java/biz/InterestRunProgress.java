@@ -0,0 +1,25 @@
+package biz;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress shared by all partitions of one interest run.
+ */
+class InterestRunProgress {
+    private final InterestProgressListener listener;
+    private final AtomicLong accountsDone = new AtomicLong();
+    private final long start = System.nanoTime();
+
+    InterestRunProgress(InterestProgressListener listener) {
+        this.listener = listener;
+    }
+
+    void chunkCommitted(int accounts) {
+        long done = accountsDone.addAndGet(accounts);
+        if (listener != null) listener.chunkCommitted(done, elapsedNanos());
+    }
+
+    long elapsedNanos() {
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,152 @@
+package biz;
+
+import model.Money;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Outcome of a bulk interest run. Partial summaries of a partitioned run
+ * are combined with {@link #merge(InterestRunSummary)}.
+ */
+public class InterestRunSummary {
+
+    /**
+     * Work done by one worker thread.
+     */
+    public static class WorkerStats {
+        private final long accounts;
+        private final long busyNanos;
+
+        public WorkerStats(long accounts, long busyNanos) {
+            this.accounts = accounts;
+            this.busyNanos = busyNanos;
+        }
+
+        public long getAccounts() {
+            return accounts;
+        }
+
+        public long getBusyNanos() {
+            return busyNanos;
+        }
+
+        public double getAccountsPerSecond() {
+            if (busyNanos == 0) return 0;
+            return accounts * 1e9 / busyNanos;
+        }
+
+        WorkerStats plus(WorkerStats other) {
+            return new WorkerStats(accounts + other.accounts, busyNanos + other.busyNanos);
+        }
+    }
+
+    /**
+     * Account id range (fromId, toId] which could not be completed.
+     */
+    public static class PartitionFailure {
+        private final int fromId;
+        private final int toId;
+        private final Exception cause;
+
+        public PartitionFailure(int fromId, int toId, Exception cause) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.cause = cause;
+        }
+
+        public int getFromId() {
+            return fromId;
+        }
+
+        public int getToId() {
+            return toId;
+        }
+
+        public Exception getCause() {
+            return cause;
+        }
+    }
+
+    private final long accounts;
+    private final long totalInterest;
+    private final long elapsedNanos;
+    private final Map<String, WorkerStats> workers;
+    private final List<PartitionFailure> failures;
+
+    public InterestRunSummary(long accounts, long totalInterest, long elapsedNanos) {
+        this(accounts, totalInterest, elapsedNanos, Collections.emptyMap(), Collections.emptyList());
+    }
+
+    public InterestRunSummary(long accounts, long totalInterest, long elapsedNanos,
+                              Map<String, WorkerStats> workers, List<PartitionFailure> failures) {
+        this.accounts = accounts;
+        this.totalInterest = totalInterest;
+        this.elapsedNanos = elapsedNanos;
+        this.workers = workers;
+        this.failures = failures;
+    }
+
+    /**
+     * Sums both summaries, elapsed time is the longer of the two as partitions run side by side.
+     */
+    public InterestRunSummary merge(InterestRunSummary other) {
+        Map<String, WorkerStats> mergedWorkers = new TreeMap<>(workers);
+        other.workers.forEach((name, stats) -> mergedWorkers.merge(name, stats, WorkerStats::plus));
+        List<PartitionFailure> mergedFailures = new ArrayList<>(failures);
+        mergedFailures.addAll(other.failures);
+        return new InterestRunSummary(accounts + other.accounts, Money.add(totalInterest, other.totalInterest),
+                Math.max(elapsedNanos, other.elapsedNanos), mergedWorkers, mergedFailures);
+    }
+
+    InterestRunSummary withElapsedNanos(long elapsedNanos) {
+        return new InterestRunSummary(accounts, totalInterest, elapsedNanos, workers, failures);
+    }
+
+    public long getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * @return interest credited in minor units, all accounts of the bank are in PLN
+     */
+    public long getTotalInterest() {
+        return totalInterest;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getAccountsPerSecond() {
+        if (elapsedNanos == 0) return 0;
+        return accounts * 1e9 / elapsedNanos;
+    }
+
+    public Map<String, WorkerStats> getWorkers() {
+        return Collections.unmodifiableMap(workers);
+    }
+
+    public List<PartitionFailure> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format("%d accounts, interest %s, %.1f accounts/s",
+                accounts, Money.format(totalInterest, Money.PLN), getAccountsPerSecond()));
+        workers.forEach((name, stats) -> sb.append(String.format("%n  %s: %d accounts, %.1f accounts/s",
+                name, stats.getAccounts(), stats.getAccountsPerSecond())));
+        for (PartitionFailure failure : failures) {
+            sb.append(String.format("%n  failed (%d, %d]: %s", failure.getFromId(), failure.getToId(), failure.getCause()));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,460 @@
+package biz;
+
+import db.dao.DAO;
+import model.Account;
+import model.Money;
+import model.User;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Account balances held in memory, in a long[] indexed by account id. All
+ * changes go through one sequencer thread which applies them in order,
+ * appends them to a {@link LedgerJournal} and acknowledges a whole batch
+ * after one journal flush. Balances can be read from any thread.
+ * <p>
+ * Every snapshotEvery changes the sequencer copies the changed balances and
+ * a background thread stores them with {@link DAO#saveLedgerSnapshot}, after
+ * which the journal before the snapshot is deleted. On start the balances
+ * are loaded from the database and the journal after the stored snapshot is
+ * replayed. While a ledger is open it owns the balances, nothing else may
+ * change them in the database.
+ * <p>
+ * Accounts created after the ledger was opened are loaded by
+ * {@link #lookup(int)}, the arrays grow on the sequencer thread.
+ */
+public class Ledger implements AutoCloseable {
+
+    static final byte CREDIT = 1;
+    static final byte DEBIT = 2;
+    static final byte TRANSFER = 3;
+    // not journaled, the account is loaded from the database again on start
+    private static final byte OPEN = 4;
+
+    private static final VarHandle BALANCES = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final long MISSING = Long.MIN_VALUE;
+    private static final int LOAD_CHUNK = 10000;
+
+    private static class Command {
+        final byte type;
+        final int from;
+        final int to;
+        final long amount;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        boolean applied;
+        User owner;
+
+        Command(byte type, int from, int to, long amount) {
+            this.type = type;
+            this.from = from;
+            this.to = to;
+            this.amount = amount;
+        }
+    }
+
+    private final DAO dao;
+    private final LedgerJournal journal;
+    private final Currency currency;
+    // replaced by the sequencer only, owners before balances
+    private volatile long[] balances;
+    private volatile User[] owners;
+    private final BlockingQueue<Command> commands;
+    private final int maxBatch;
+    private final long snapshotEvery;
+    private final Thread sequencer;
+    private final ExecutorService snapshotter;
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+    private final Command stop = new Command((byte) 0, 0, 0, 0);
+    // submitters hold the read lock, close() the write lock before it stops the sequencer
+    private final ReentrantReadWriteLock openLock = new ReentrantReadWriteLock();
+    private volatile boolean open = true;
+    private volatile Throwable failure;
+    private volatile long acknowledged;
+    private volatile boolean fullSnapshot;
+    private volatile boolean released;
+
+    // sequencer thread only
+    private long seq;
+    private long changesSinceSnapshot;
+    private final BitSet dirty = new BitSet();
+
+    public Ledger(DAO dao, Path journalDirectory) throws SQLException, IOException {
+        this(dao, journalDirectory, true, 1 << 16, 1024, 1_000_000);
+    }
+
+    /**
+     * @param sync          force the journal to disk before acknowledging a batch
+     * @param queueCapacity changes waiting for the sequencer, callers block when it is full
+     * @param maxBatch      changes acknowledged after one journal flush
+     * @param snapshotEvery changes between snapshots to the database
+     */
+    public Ledger(DAO dao, Path journalDirectory, boolean sync, int queueCapacity, int maxBatch,
+                  long snapshotEvery) throws SQLException, IOException {
+        this.dao = dao;
+        this.currency = Money.PLN;
+        this.maxBatch = maxBatch;
+        this.snapshotEvery = snapshotEvery;
+        this.commands = new ArrayBlockingQueue<>(queueCapacity);
+        int size = dao.findMaxAccountId() + 1;
+        this.balances = new long[size];
+        this.owners = new User[size];
+        load();
+        this.journal = new LedgerJournal(journalDirectory, sync);
+        long snapshot = dao.findLedgerSnapshot();
+        seq = journal.replay(snapshot, this::replay);
+        changesSinceSnapshot = seq - snapshot;
+        journal.rotate(seq + 1);
+        acknowledged = seq;
+        this.snapshotter = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "ledger-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        this.sequencer = new Thread(this::run, "ledger-sequencer");
+        this.sequencer.start();
+    }
+
+    /**
+     * @return balance in minor units, Long.MIN_VALUE for an unknown account
+     */
+    public long getBalance(int accountId) {
+        if (accountId < 0 || accountId >= balances.length) return MISSING;
+        return (long) BALANCES.getAcquire(balances, accountId);
+    }
+
+    public boolean exists(int accountId) {
+        return getBalance(accountId) != MISSING;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    /**
+     * Current state of an account as a detached object, null when unknown.
+     */
+    public Account account(int accountId) {
+        long balance = getBalance(accountId);
+        if (balance == MISSING) return null;
+        Account account = new Account();
+        account.setId(accountId);
+        account.setOwner(owners[accountId]);
+        account.setCurrency(currency);
+        account.setBalance(balance);
+        return account;
+    }
+
+    /**
+     * As {@link #account(int)}, but an account missing from the ledger is
+     * looked up in the database and held by the ledger from now on.
+     * @return null when the database has no such account in the ledger currency
+     */
+    public Account lookup(int accountId) throws SQLException {
+        Account account = account(accountId);
+        if (account != null || accountId < 0) return account;
+        Account stored = dao.findAccountById(accountId);
+        if (stored == null || !currency.equals(stored.getCurrency())) return null;
+        Command command = new Command(OPEN, accountId, accountId, stored.getBalance());
+        command.owner = stored.getOwner();
+        submit(command);
+        return account(accountId);
+    }
+
+    public boolean credit(int accountId, long amount) throws SQLException {
+        return submit(new Command(CREDIT, accountId, accountId, amount));
+    }
+
+    /**
+     * @return false when the account does not hold enough money
+     */
+    public boolean debit(int accountId, long amount) throws SQLException {
+        return submit(new Command(DEBIT, accountId, accountId, amount));
+    }
+
+    /**
+     * @return false when the source account does not hold enough money
+     */
+    public boolean transfer(int fromId, int toId, long amount) throws SQLException {
+        return submit(new Command(TRANSFER, fromId, toId, amount));
+    }
+
+    /**
+     * @return sequence number of the last change written to the journal
+     */
+    public long getSequence() {
+        return acknowledged;
+    }
+
+    /**
+     * True until close() has stored the final snapshot. A ledger whose
+     * journal failed keeps the balances, the journal is replayed on start.
+     */
+    public boolean ownsBalances() {
+        return !released;
+    }
+
+    /**
+     * Stops accepting changes, applies the queued ones and stores a final
+     * snapshot.
+     */
+    @Override
+    public void close() throws SQLException {
+        openLock.writeLock().lock();
+        try {
+            if (!open) return;
+            open = false;
+            if (failure == null) commands.put(stop);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while closing the ledger", e);
+        } finally {
+            openLock.writeLock().unlock();
+        }
+        try {
+            sequencer.join();
+            snapshotter.shutdown();
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+            if (failure == null) released = snapshot().getAsBoolean();
+            journal.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    private boolean submit(Command command) throws SQLException {
+        openLock.readLock().lock();
+        try {
+            checkOpen();
+            commands.put(command);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the ledger", e);
+        } finally {
+            openLock.readLock().unlock();
+        }
+        try {
+            return command.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the ledger", e);
+        } catch (ExecutionException e) {
+            throw new SQLException("Ledger change failed", e.getCause());
+        }
+    }
+
+    private void checkOpen() throws SQLException {
+        if (failure != null) throw new SQLException("Ledger journal failed", failure);
+        if (!open) throw new SQLException("Ledger closed");
+    }
+
+    private void run() {
+        List<Command> batch = new ArrayList<>(maxBatch);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(commands.take());
+            } catch (InterruptedException e) {
+                fail(new IOException("Ledger sequencer interrupted", e), batch);
+                return;
+            }
+            commands.drainTo(batch, maxBatch - 1);
+            try {
+                for (Command command : batch) {
+                    if (command == stop) {
+                        // close() holds the write lock, nothing is queued after stop
+                        stopping = true;
+                        continue;
+                    }
+                    if (command.type == OPEN) {
+                        command.applied = open(command.from, command.amount, command.owner);
+                        continue;
+                    }
+                    command.applied = apply(command.type, command.from, command.to, command.amount);
+                    if (command.applied) {
+                        journal.append(++seq, command.type, command.from, command.to, command.amount);
+                        changesSinceSnapshot++;
+                    }
+                }
+                journal.flush();
+                acknowledged = seq;
+                for (Command command : batch) {
+                    command.result.complete(command.applied);
+                }
+                batch.clear();
+                if (!stopping && changesSinceSnapshot >= snapshotEvery && snapshotRunning.compareAndSet(false, true)) {
+                    BooleanSupplier snapshot = snapshot();
+                    snapshotter.execute(() -> {
+                        try {
+                            snapshot.getAsBoolean();
+                        } finally {
+                            snapshotRunning.set(false);
+                        }
+                    });
+                }
+            } catch (IOException | RuntimeException e) {
+                fail(e, batch);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Balances may now be ahead of the journal, the ledger cannot go on.
+     */
+    private void fail(Exception e, List<Command> batch) {
+        failure = e;
+        open = false;
+        for (Command command : batch) {
+            command.result.completeExceptionally(e);
+        }
+        // submitters blocked on a full queue hold the read lock, draining lets them finish
+        while (!openLock.writeLock().tryLock()) {
+            failQueued(e);
+            Thread.yield();
+        }
+        try {
+            failQueued(e);
+        } finally {
+            openLock.writeLock().unlock();
+        }
+    }
+
+    private void failQueued(Exception e) {
+        for (Command command; (command = commands.poll()) != null; ) {
+            command.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Applies one change on the sequencer thread.
+     * @return false when it was refused and nothing changed
+     */
+    private boolean apply(byte type, int from, int to, long amount) {
+        try {
+            switch (type) {
+                case CREDIT:
+                    return exists(from) && set(from, Money.add(balances[from], amount));
+                case DEBIT:
+                    return exists(from) && balances[from] >= amount
+                            && set(from, Money.subtract(balances[from], amount));
+                case TRANSFER:
+                    if (!exists(from) || !exists(to) || balances[from] < amount) return false;
+                    if (from == to) return true;
+                    // both results first, an overflow must not leave half a transfer
+                    long source = Money.subtract(balances[from], amount);
+                    long dest = Money.add(balances[to], amount);
+                    return set(from, source) && set(to, dest);
+                default:
+                    throw new IllegalStateException("Unknown ledger change " + type);
+            }
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    private boolean set(int accountId, long balance) {
+        BALANCES.setRelease(balances, accountId, balance);
+        dirty.set(accountId);
+        return true;
+    }
+
+    /**
+     * Starts holding an account loaded after start, on the sequencer thread.
+     * An account already held keeps its balance, it may have changed since.
+     */
+    private boolean open(int accountId, long balance, User owner) {
+        if (exists(accountId)) return true;
+        long[] current = balances;
+        if (accountId >= current.length) {
+            int size = (int) Math.min(Integer.MAX_VALUE, Math.max(accountId + 1L, current.length * 3L / 2));
+            long[] grown = Arrays.copyOf(current, size);
+            Arrays.fill(grown, current.length, size, MISSING);
+            owners = Arrays.copyOf(owners, size);
+            balances = grown;
+        }
+        owners[accountId] = owner;
+        BALANCES.setRelease(balances, accountId, balance);
+        return true;
+    }
+
+    private void replay(long seq, byte type, int from, int to, long amount) {
+        apply(type, from, to, amount);
+    }
+
+    /**
+     * Copies the changed balances on the sequencer thread and rotates the
+     * journal, the returned task writes them to the database and tells
+     * whether they were stored.
+     */
+    private BooleanSupplier snapshot() throws IOException {
+        long snapshotSeq = seq;
+        if (fullSnapshot) {
+            fullSnapshot = false;
+            for (int id = 0; id < balances.length; id++) {
+                if (balances[id] != MISSING) dirty.set(id);
+            }
+        }
+        List<Account> changed = new ArrayList<>(dirty.cardinality());
+        for (int id = dirty.nextSetBit(0); id >= 0; id = dirty.nextSetBit(id + 1)) {
+            Account account = new Account();
+            account.setId(id);
+            account.setCurrency(currency);
+            account.setBalance(balances[id]);
+            changed.add(account);
+        }
+        dirty.clear();
+        changesSinceSnapshot = 0;
+        journal.rotate(snapshotSeq + 1);
+        return () -> {
+            try {
+                dao.saveLedgerSnapshot(changed, snapshotSeq);
+                journal.deleteUpTo(snapshotSeq);
+                return true;
+            } catch (SQLException | IOException e) {
+                // the journal is kept, the next snapshot writes every account
+                fullSnapshot = true;
+                e.printStackTrace();
+                return false;
+            }
+        };
+    }
+
+    private void load() throws SQLException {
+        long[] balances = this.balances;
+        User[] owners = this.owners;
+        Arrays.fill(balances, MISSING);
+        int last = 0;
+        List<Account> chunk;
+        while (!(chunk = dao.findAccounts(last, Integer.MAX_VALUE, LOAD_CHUNK)).isEmpty()) {
+            for (Account account : chunk) {
+                int id = account.getId();
+                last = id;
+                if (id >= balances.length || !currency.equals(account.getCurrency())) continue;
+                balances[id] = account.getBalance();
+                owners[id] = account.getOwner();
+            }
+        }
+        VarHandle.releaseFence();
+    }
+}
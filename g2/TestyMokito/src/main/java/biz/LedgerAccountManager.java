@@ -0,0 +1,145 @@
+package biz;
+
+import db.dao.DAO;
+import db.dao.impl.ForwardingDAO;
+import db.dao.impl.IdentityCachingDAO;
+import db.dao.impl.SQLiteDB;
+import model.Account;
+import model.Operation;
+import model.User;
+import model.exceptions.OperationIsNotAllowedException;
+import model.operations.Interest;
+import model.operations.Payment;
+import model.operations.PaymentIn;
+import model.operations.Withdraw;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * AccountManager whose balances live in a {@link Ledger} instead of the
+ * database. Authorization and history work as in AccountManager, account
+ * locks are not needed as the ledger applies changes one by one.
+ * <p>
+ * Bulk interest runs of {@link InterestOperator} credit the database
+ * directly, the DAO of a ledger bank refuses them and every other balance
+ * write while the ledger owns the balances.
+ */
+public class LedgerAccountManager extends AccountManager {
+    Ledger ledger;
+
+    @Override
+    public boolean paymentIn(User user, long ammount, String description, int accountId) throws SQLException {
+        Account account = ledger.lookup(accountId);
+        Operation operation = new PaymentIn(user, ammount, description, account);
+        boolean success = account != null && ledger.credit(accountId, ammount);
+        history.logOperation(operation, success);
+        return success;
+    }
+
+    @Override
+    public boolean paymentOut(User user, long ammount, String description, int accountId) throws OperationIsNotAllowedException, SQLException {
+        Account account = ledger.lookup(accountId);
+        Operation operation = new Withdraw(user, ammount, description, account);
+        if (!auth.canInvokeOperation(operation, user)) {
+            history.logUnauthorizedOperation(operation, false);
+            throw new OperationIsNotAllowedException("Unauthorized operation");
+        }
+        boolean success = account != null && ledger.debit(accountId, ammount);
+        history.logOperation(operation, success);
+        return success;
+    }
+
+    @Override
+    public boolean internalPayment(User user, long ammount, String description, int sourceAccountId, int destAccountId) throws OperationIsNotAllowedException, SQLException {
+        Account sourceAccount = ledger.lookup(sourceAccountId);
+        Account destAccount = ledger.lookup(destAccountId);
+        Withdraw withdraw = new Withdraw(user, ammount, description, sourceAccount);
+        PaymentIn payment = new PaymentIn(user, ammount, description, destAccount);
+        if (!auth.canInvokeOperation(withdraw, user)) {
+            history.logUnauthorizedOperation(withdraw, false);
+            throw new OperationIsNotAllowedException("Unauthorized operation");
+        }
+        boolean success = sourceAccount != null && destAccount != null
+                && ledger.transfer(sourceAccountId, destAccountId, ammount);
+        history.logOperation(withdraw, success);
+        history.logOperation(payment, success);
+        return success;
+    }
+
+    public Ledger getLedger() {
+        return ledger;
+    }
+
+    /**
+     * Refuses balance writes to the database while the ledger owns the balances.
+     */
+    static class BalanceGuard extends ForwardingDAO {
+        private final Ledger ledger;
+
+        BalanceGuard(DAO delegate, Ledger ledger) {
+            super(delegate);
+            this.ledger = ledger;
+        }
+
+        @Override
+        public boolean updateAccountState(Account account) throws SQLException {
+            checkReleased();
+            return delegate.updateAccountState(account);
+        }
+
+        @Override
+        public boolean[] updateAccountStates(List<Account> accounts) throws SQLException {
+            checkReleased();
+            return delegate.updateAccountStates(accounts);
+        }
+
+        @Override
+        public boolean transfer(Payment withdraw, Payment payment) throws SQLException {
+            checkReleased();
+            return delegate.transfer(withdraw, payment);
+        }
+
+        @Override
+        public boolean[] creditInterest(String runId, int partitionFrom, List<Interest> credits, int watermark) throws SQLException {
+            checkReleased();
+            return delegate.creditInterest(runId, partitionFrom, credits, watermark);
+        }
+
+        private void checkReleased() throws SQLException {
+            if (ledger.ownsBalances()) throw new SQLException("Account balances are held by the ledger");
+        }
+    }
+
+    public static LedgerAccountManager buildLedgerBank() {
+        return buildLedgerBank(Paths.get("./ledger"));
+    }
+
+    /**
+     * @param journalDirectory where the ledger keeps its journal segments
+     */
+    public static LedgerAccountManager buildLedgerBank(Path journalDirectory) {
+        try {
+            // balances are not cached, the ledger holds them
+            DAO store = new IdentityCachingDAO(SQLiteDB.createDAO());
+            Ledger ledger = new Ledger(store, journalDirectory);
+            DAO dao = new BalanceGuard(store, ledger);
+            BankHistory history = new BankHistory(dao);
+            LedgerAccountManager aManager = new LedgerAccountManager();
+            aManager.dao = dao;
+            aManager.auth = new AuthenticationManager(dao, history);
+            aManager.history = history;
+            aManager.interestOperator = new InterestOperator(dao, aManager);
+            aManager.ledger = ledger;
+            return aManager;
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+        } catch (ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+}
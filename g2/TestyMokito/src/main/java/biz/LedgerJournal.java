@@ -0,0 +1,160 @@
+package biz;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of ledger changes. Records go to segment files named
+ * after the sequence number of their first record; a new segment is started
+ * at every snapshot so older segments can be deleted once the snapshot is
+ * stored. Appends are buffered and written by {@link #flush()}, only the
+ * ledger's sequencer thread appends.
+ * <p>
+ * Record: seq (8), type (1), from (4), to (4), amount (8), CRC32 of the
+ * previous fields (4). A torn record at the end of the last segment was
+ * never acknowledged and ends the replay.
+ */
+class LedgerJournal implements AutoCloseable {
+
+    interface Visitor {
+        void record(long seq, byte type, int from, int to, long amount);
+    }
+
+    static final int RECORD_SIZE = 29;
+    private static final String PREFIX = "ledger-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final boolean sync;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_SIZE * 4096);
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+
+    /**
+     * @param sync force every flush to the disk, without it a crash of the
+     *             machine (not only of the process) may lose acknowledged changes
+     */
+    LedgerJournal(Path directory, boolean sync) throws IOException {
+        this.directory = directory;
+        this.sync = sync;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Calls the visitor for every intact record with seq &gt; afterSeq, in order.
+     * @return last sequence number found, afterSeq when there is none
+     */
+    long replay(long afterSeq, Visitor visitor) throws IOException {
+        long last = afterSeq;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        for (Path segment : segments()) {
+            try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ)) {
+                while (true) {
+                    record.clear();
+                    while (record.hasRemaining() && in.read(record) > 0) {
+                        // read the whole record
+                    }
+                    if (record.hasRemaining()) break;
+                    record.flip();
+                    crc.reset();
+                    crc.update(record.array(), 0, RECORD_SIZE - 4);
+                    if ((int) crc.getValue() != record.getInt(RECORD_SIZE - 4)) break;
+                    long seq = record.getLong();
+                    byte type = record.get();
+                    int from = record.getInt();
+                    int to = record.getInt();
+                    long amount = record.getLong();
+                    if (seq <= last) continue;
+                    visitor.record(seq, type, from, to, amount);
+                    last = seq;
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Starts a new segment, the next record appended must have firstSeq.
+     */
+    void rotate(long firstSeq) throws IOException {
+        if (channel != null) {
+            flush();
+            channel.close();
+        }
+        Path segment = directory.resolve(String.format("%s%020d%s", PREFIX, firstSeq, SUFFIX));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    void append(long seq, byte type, int from, int to, long amount) throws IOException {
+        if (buffer.remaining() < RECORD_SIZE) write();
+        int start = buffer.position();
+        buffer.putLong(seq).put(type).putInt(from).putInt(to).putLong(amount);
+        crc.reset();
+        ByteBuffer fields = buffer.duplicate();
+        fields.position(start).limit(start + RECORD_SIZE - 4);
+        crc.update(fields);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Writes buffered records, the changes they describe are durable afterwards.
+     */
+    void flush() throws IOException {
+        write();
+        if (sync) channel.force(false);
+    }
+
+    /**
+     * Deletes segments holding only records with seq &lt;= seq, the current
+     * segment is never deleted.
+     */
+    void deleteUpTo(long seq) throws IOException {
+        List<Path> segments = segments();
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstSeq(segments.get(i + 1)) <= seq + 1) Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel == null) return;
+        flush();
+        channel.close();
+        channel = null;
+    }
+
+    private void write() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        // zero padded names sort by first sequence number
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static long firstSeq(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,24 @@
+package biz;
+
+/**
+ * Unsalted SHA-256 hashes written before salted hashes were introduced.
+ * They are only verified, every one is replaced after a successful login.
+ */
+public class LegacySha256Hasher implements PasswordHasher {
+
+    public boolean supports(String storedHash) {
+        return storedHash != null && !storedHash.startsWith("$");
+    }
+
+    public String hash(char[] password) {
+        return PasswordDigest.SHA_256.hash(password);
+    }
+
+    public boolean matches(char[] password, String storedHash) {
+        return PasswordDigest.SHA_256.matches(password, storedHash);
+    }
+
+    public boolean needsRehash(String storedHash) {
+        return true;
+    }
+}
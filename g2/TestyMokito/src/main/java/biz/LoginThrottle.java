@@ -0,0 +1,247 @@
+package biz;
+
+import model.User;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts failed logins per user name and per source in sliding windows. A
+ * user name or source with too many failures is locked out for a while and
+ * its attempts are refused before touching the database.
+ * <p>
+ * Only the first failure of a user name in a window is written to history
+ * one by one, later failures and refused attempts are summed up and written
+ * as one summary row per user name and window. Failures with unknown user
+ * names are written one by one only up to the user limit per window in
+ * total, the rest go into one row together with the attempts refused because
+ * of their source, so a flood of made-up names writes a single row.
+ * <p>
+ * Counters which neither hold failures nor a lockout any more are dropped
+ * once per window by a background thread started with the throttle.
+ */
+public class LoginThrottle {
+
+    /**
+     * Failures of one key in the last window, split into buckets. A bucket is
+     * reset when its slot is reused, a failure counted during the reset may
+     * be lost, which only makes the throttle slightly more lenient.
+     */
+    private class Window {
+        final LongAdder[] counts = new LongAdder[buckets];
+        final AtomicLongArray epochs = new AtomicLongArray(buckets);
+        volatile long lockedUntil;
+
+        Window() {
+            for (int i = 0; i < buckets; i++) {
+                counts[i] = new LongAdder();
+                epochs.set(i, Long.MIN_VALUE);
+            }
+        }
+
+        long add(long now) {
+            long epoch = now / bucketMillis;
+            int i = (int) Math.floorMod(epoch, (long) buckets);
+            long seen = epochs.get(i);
+            if (seen != epoch && epochs.compareAndSet(i, seen, epoch)) counts[i].reset();
+            counts[i].increment();
+            return sum(now);
+        }
+
+        long sum(long now) {
+            long epoch = now / bucketMillis;
+            long total = 0;
+            for (int i = 0; i < buckets; i++) {
+                long seen = epochs.get(i);
+                if (seen != Long.MIN_VALUE && epoch - seen < buckets) total += counts[i].sum();
+            }
+            return total;
+        }
+    }
+
+    private static class Summary {
+        final String userName;
+        volatile User user;
+        final LongAdder failed = new LongAdder();
+        final LongAdder refused = new LongAdder();
+
+        Summary(String userName) {
+            this.userName = userName;
+        }
+    }
+
+    private final BankHistory history;
+    private final long windowMillis;
+    private final int buckets;
+    private final long bucketMillis;
+    private final int maxUserFailures;
+    private final int maxSourceFailures;
+    private final long lockoutMillis;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, Window> users = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Window> sources = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Summary> summaries = new ConcurrentHashMap<>();
+    private final Window unknownNames;
+    private final LongAdder unknownFailed = new LongAdder();
+    private final LongAdder sourceRefused = new LongAdder();
+    private final ScheduledExecutorService summarizer;
+
+    public LoginThrottle(BankHistory history) {
+        this(history, 60_000, 6, 5, 50, 300_000);
+    }
+
+    public LoginThrottle(BankHistory history, long windowMillis, int buckets, int maxUserFailures,
+                         int maxSourceFailures, long lockoutMillis) {
+        this(history, windowMillis, buckets, maxUserFailures, maxSourceFailures, lockoutMillis,
+                () -> System.nanoTime() / 1_000_000, true);
+    }
+
+    /**
+     * @param background run {@link #writeSummaries()} once per window on a thread of its own,
+     *                   without it the caller does
+     */
+    LoginThrottle(BankHistory history, long windowMillis, int buckets, int maxUserFailures,
+                  int maxSourceFailures, long lockoutMillis, LongSupplier clock, boolean background) {
+        this.history = history;
+        this.windowMillis = windowMillis;
+        this.buckets = buckets;
+        this.bucketMillis = Math.max(1, windowMillis / buckets);
+        this.maxUserFailures = maxUserFailures;
+        this.maxSourceFailures = maxSourceFailures;
+        this.lockoutMillis = lockoutMillis;
+        this.clock = clock;
+        this.unknownNames = new Window();
+        if (background) {
+            summarizer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "login-throttle-summary");
+                t.setDaemon(true);
+                return t;
+            });
+            summarizer.scheduleWithFixedDelay(this::writeSummaries, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+        } else {
+            summarizer = null;
+        }
+    }
+
+    /**
+     * Whether the attempt must be refused without checking the password.
+     * A refused attempt is counted for the summary row.
+     * @param source client address or similar, may be null
+     */
+    public boolean refuse(String userName, String source) {
+        long now = clock.getAsLong();
+        if (isLocked(users.get(key(userName)), now)) {
+            summary(userName).refused.increment();
+            return true;
+        }
+        if (source == null || !isLocked(sources.get(source), now)) return false;
+        sourceRefused.increment();
+        return true;
+    }
+
+    /**
+     * Counts a failed attempt and locks the user name or source out when it
+     * reached its limit.
+     * @param user null when the user name is unknown
+     * @return true when the failure should be written to history on its own,
+     * false when it goes into the summary row
+     */
+    public boolean failure(String userName, User user, String source) {
+        long now = clock.getAsLong();
+        Window window = users.computeIfAbsent(key(userName), k -> new Window());
+        long failures = window.add(now);
+        if (failures >= maxUserFailures) window.lockedUntil = now + lockoutMillis;
+        if (source != null) {
+            Window sourceWindow = sources.computeIfAbsent(source, k -> new Window());
+            if (sourceWindow.add(now) >= maxSourceFailures) sourceWindow.lockedUntil = now + lockoutMillis;
+        }
+        if (user == null) {
+            if (unknownNames.add(now) <= maxUserFailures && failures <= 1) return true;
+            unknownFailed.increment();
+            return false;
+        }
+        if (failures <= 1) return true;
+        Summary summary = summary(userName);
+        summary.user = user;
+        summary.failed.increment();
+        return false;
+    }
+
+    /**
+     * A successful login clears the failures of the user name.
+     */
+    public void success(String userName) {
+        users.remove(key(userName));
+    }
+
+    public int getTrackedUsers() {
+        return users.size();
+    }
+
+    public int getTrackedSources() {
+        return sources.size();
+    }
+
+    public void shutdown() {
+        if (summarizer != null) summarizer.shutdownNow();
+        writeSummaries();
+    }
+
+    /**
+     * Writes one history row per user name with aggregated failures and drops
+     * counters which neither hold failures nor a lockout any more.
+     */
+    void writeSummaries() {
+        for (Map.Entry<String, Summary> entry : summaries.entrySet()) {
+            Summary summary = entry.getValue();
+            long failed = summary.failed.sumThenReset();
+            long refused = summary.refused.sumThenReset();
+            if (failed == 0 && refused == 0) {
+                summaries.remove(entry.getKey(), summary);
+                continue;
+            }
+            try {
+                history.logLoginFailure(summary.user, "Nieudane logowania: " + failed + ", odrzucone: " + refused
+                        + ", użytkownik " + summary.userName);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+        long unknown = unknownFailed.sumThenReset();
+        long refused = sourceRefused.sumThenReset();
+        if (unknown > 0 || refused > 0) {
+            try {
+                history.logLoginFailure(null, "Nieudane logowania nieznanych użytkowników: " + unknown
+                        + ", odrzucone ze względu na źródło: " + refused);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+        long now = clock.getAsLong();
+        prune(users, now);
+        prune(sources, now);
+    }
+
+    private void prune(ConcurrentHashMap<String, Window> windows, long now) {
+        windows.entrySet().removeIf(entry -> !isLocked(entry.getValue(), now) && entry.getValue().sum(now) == 0);
+    }
+
+    private boolean isLocked(Window window, long now) {
+        return window != null && window.lockedUntil > now;
+    }
+
+    private Summary summary(String userName) {
+        return summaries.computeIfAbsent(key(userName), Summary::new);
+    }
+
+    private static String key(String userName) {
+        return String.valueOf(userName);
+    }
+}
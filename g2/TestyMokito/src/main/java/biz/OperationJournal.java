@@ -0,0 +1,295 @@
+package biz;
+
+import model.Operation;
+import model.operations.Payment;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * History written as fixed size binary records into memory-mapped segment
+ * files instead of the Operation and History tables. Writers claim a slot
+ * with one atomic increment and copy their record into the mapping, the
+ * description of an operation is not kept.
+ * <p>
+ * Record layout, big endian, {@value #RECORD_SIZE} bytes:
+ * crc (4), sequence (8), timestamp millis (8), amount (8), user id (4),
+ * account id (4), type (1), success (1), padding (2). The CRC32 covers the
+ * bytes after it and is written last, a record with a wrong CRC is not
+ * written (yet). User and account id are -1 when the operation has none.
+ * <p>
+ * Segment n holds the records with sequence numbers from
+ * n * recordsPerSegment, files are named after n. A segment is created at
+ * full size under a temporary name and then renamed, so a reader never sees
+ * it shorter.
+ */
+public class OperationJournal implements AutoCloseable {
+
+    /**
+     * When mapped pages are forced to the disk. Without forcing a crash of the
+     * process loses nothing, a crash of the machine may lose recent records.
+     */
+    public enum ForcePolicy {
+        /** left to the operating system */
+        NEVER,
+        /** by a background thread every forceIntervalMillis */
+        INTERVAL,
+        /** before append returns, costs a disk write per record */
+        EVERY_WRITE
+    }
+
+    static final int RECORD_SIZE = 40;
+    static final int CRC = 0;
+    static final int SEQUENCE = 4;
+    static final int TIMESTAMP = 12;
+    static final int AMOUNT = 20;
+    static final int USER = 28;
+    static final int ACCOUNT = 32;
+    static final int TYPE = 36;
+    static final int SUCCESS = 37;
+
+    static final String PREFIX = "history-";
+    static final String SUFFIX = ".seg";
+
+    static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private static class Segment {
+        final long index;
+        final MappedByteBuffer buffer;
+
+        Segment(long index, MappedByteBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+        }
+    }
+
+    private static class Scratch {
+        final byte[] bytes = new byte[RECORD_SIZE];
+        final ByteBuffer record = ByteBuffer.wrap(bytes);
+        final CRC32 crc = new CRC32();
+    }
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final ForcePolicy forcePolicy;
+    private final AtomicLong next;
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+    private final ScheduledExecutorService forcer;
+    private volatile Segment current;
+    private volatile Segment previous;
+    private volatile boolean closed;
+
+    public OperationJournal(Path directory) throws IOException {
+        this(directory, 1 << 20, ForcePolicy.INTERVAL, 100);
+    }
+
+    /**
+     * @param recordsPerSegment records in one segment file
+     * @param forceIntervalMillis used by {@link ForcePolicy#INTERVAL}
+     */
+    public OperationJournal(Path directory, int recordsPerSegment, ForcePolicy forcePolicy,
+                            long forceIntervalMillis) throws IOException {
+        if ((long) recordsPerSegment * RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment larger than 2 GB");
+        }
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.forcePolicy = forcePolicy;
+        Files.createDirectories(directory);
+        List<Long> segments = segments(directory);
+        long last = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        Segment segment = map(last);
+        // continue after the last record, a hole left by a crashed writer stays a hole
+        Scratch s = scratch.get();
+        int written = recordsPerSegment;
+        while (written > 0 && !isValid(segment.buffer, (written - 1) * RECORD_SIZE, s.bytes, s.crc)) {
+            written--;
+        }
+        this.current = segment;
+        this.next = new AtomicLong(last * recordsPerSegment + written);
+        if (forcePolicy == ForcePolicy.INTERVAL) {
+            forcer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "history-journal-force");
+                t.setDaemon(true);
+                return t;
+            });
+            forcer.scheduleWithFixedDelay(this::force, forceIntervalMillis, forceIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            forcer = null;
+        }
+    }
+
+    /**
+     * @return sequence number of the record
+     */
+    public long append(Operation operation, boolean success) throws IOException {
+        if (closed) throw new IOException("History journal closed");
+        long seq = next.getAndIncrement();
+        long index = seq / recordsPerSegment;
+        Segment segment = current;
+        if (segment.index != index) segment = segment(index);
+        int offset = (int) (seq % recordsPerSegment) * RECORD_SIZE;
+
+        Scratch s = scratch.get();
+        ByteBuffer record = s.record;
+        record.putLong(SEQUENCE, seq);
+        record.putLong(TIMESTAMP, operation.getDate().getTime());
+        long amount = 0;
+        int accountId = -1;
+        if (operation instanceof Payment) {
+            Payment payment = (Payment) operation;
+            amount = payment.getAmmount();
+            if (payment.getAccount() != null) accountId = payment.getAccount().getId();
+        }
+        record.putLong(AMOUNT, amount);
+        record.putInt(USER, operation.getUser() == null ? -1 : operation.getUser().getId());
+        record.putInt(ACCOUNT, accountId);
+        record.put(TYPE, operation.getType() == null ? -1 : (byte) operation.getType().getId());
+        record.put(SUCCESS, success ? (byte) 1 : 0);
+        s.crc.reset();
+        s.crc.update(s.bytes, SEQUENCE, RECORD_SIZE - SEQUENCE);
+
+        segment.buffer.put(offset + SEQUENCE, s.bytes, SEQUENCE, RECORD_SIZE - SEQUENCE);
+        // a reader which sees the CRC sees the whole record
+        INT.setRelease(segment.buffer, offset + CRC, (int) s.crc.getValue());
+        if (forcePolicy == ForcePolicy.EVERY_WRITE) segment.buffer.force(offset, RECORD_SIZE);
+        return seq;
+    }
+
+    /**
+     * Sequence number the next record will get.
+     */
+    public long getNextSequence() {
+        return next.get();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public int getRecordsPerSegment() {
+        return recordsPerSegment;
+    }
+
+    /**
+     * Forces the mapped records to the disk.
+     */
+    public void force() {
+        Segment old = previous;
+        if (old != null) {
+            old.buffer.force();
+            previous = null;
+        }
+        current.buffer.force();
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        if (forcer != null) forcer.shutdownNow();
+        if (forcePolicy != ForcePolicy.NEVER) force();
+    }
+
+    /**
+     * Slow path of a writer whose slot is in another segment than the current one.
+     */
+    private synchronized Segment segment(long index) throws IOException {
+        Segment segment = current;
+        if (segment.index == index) return segment;
+        if (segment.index > index) {
+            // a slow writer of an older segment, it is no longer current
+            return map(index);
+        }
+        // writers of the skipped segments have not got here yet; their files are created first,
+        // a reader takes a missing segment before an existing later one for a gap
+        for (long skipped = segment.index + 1; skipped < index; skipped++) {
+            Path file = segmentFile(directory, skipped);
+            if (!Files.exists(file)) create(file);
+        }
+        Segment rolled = map(index);
+        if (forcePolicy != ForcePolicy.NEVER) {
+            segment.buffer.force();
+            previous = segment;
+        }
+        // without a reference the old mapping is released with the buffer
+        current = rolled;
+        return rolled;
+    }
+
+    private MappedByteBuffer mapFile(long index) throws IOException {
+        Path file = segmentFile(directory, index);
+        if (!Files.exists(file)) create(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_SIZE);
+        }
+    }
+
+    private void create(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.allocate(1), (long) recordsPerSegment * RECORD_SIZE - 1);
+        }
+        try {
+            // a rename within the directory, readers see no file or the whole one
+            Files.move(tmp, file);
+        } catch (FileAlreadyExistsException e) {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private Segment map(long index) throws IOException {
+        return new Segment(index, mapFile(index));
+    }
+
+    /**
+     * Copies the record at offset into bytes and checks its CRC.
+     */
+    static boolean isValid(ByteBuffer buffer, int offset, byte[] bytes, CRC32 crc) {
+        if (offset + RECORD_SIZE > buffer.capacity()) return false;
+        int stored = (int) INT.getAcquire(buffer, offset + CRC);
+        buffer.get(offset + SEQUENCE, bytes, SEQUENCE, RECORD_SIZE - SEQUENCE);
+        crc.reset();
+        crc.update(bytes, SEQUENCE, RECORD_SIZE - SEQUENCE);
+        return stored == (int) crc.getValue();
+    }
+
+    static Path segmentFile(Path directory, long index) {
+        return directory.resolve(String.format("%s%020d%s", PREFIX, index, SUFFIX));
+    }
+
+    /**
+     * Indexes of the segment files in the directory, ascending.
+     */
+    static List<Long> segments(Path directory) throws IOException {
+        List<Long> indexes = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                indexes.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+            }
+        }
+        Collections.sort(indexes);
+        return indexes;
+    }
+}
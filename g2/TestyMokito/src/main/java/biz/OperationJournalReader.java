@@ -0,0 +1,169 @@
+package biz;
+
+import model.operations.OperationType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the records of an {@link OperationJournal} in sequence order, from
+ * another thread or process. {@link #replay} reads what is there,
+ * {@link #tail} keeps waiting for new records.
+ * <p>
+ * A slot without a valid record while the journal has moved on to a later
+ * segment is either a writer still copying its record or a hole left by a
+ * crashed one. poll and tail wait holeGraceMillis for it before they skip
+ * it, replay skips it at once and is meant for a journal nobody writes to.
+ */
+public class OperationJournalReader {
+
+    public interface Visitor {
+        void record(long sequence, OperationType type, int userId, int accountId, long amount,
+                    long timestamp, boolean success);
+    }
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final long holeGraceNanos;
+    private final byte[] bytes = new byte[OperationJournal.RECORD_SIZE];
+    private final ByteBuffer record = ByteBuffer.wrap(bytes);
+    private final CRC32 crc = new CRC32();
+    private long position;
+    private long segmentIndex = -1;
+    private MappedByteBuffer segment;
+    private long holePosition = -1;
+    private long holeSince;
+
+    /**
+     * @param recordsPerSegment as given to the journal
+     * @param fromSequence      first record to read
+     */
+    public OperationJournalReader(Path directory, int recordsPerSegment, long fromSequence) {
+        this(directory, recordsPerSegment, fromSequence, 1000);
+    }
+
+    /**
+     * @param holeGraceMillis how long poll waits for a missing record before it is skipped
+     */
+    public OperationJournalReader(Path directory, int recordsPerSegment, long fromSequence, long holeGraceMillis) {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.position = fromSequence;
+        this.holeGraceNanos = TimeUnit.MILLISECONDS.toNanos(holeGraceMillis);
+    }
+
+    /**
+     * Reads at most max records which are already written.
+     * @return number of records passed to the visitor
+     */
+    public int poll(Visitor visitor, int max) throws IOException {
+        return poll(visitor, max, holeGraceNanos);
+    }
+
+    private int poll(Visitor visitor, int max, long graceNanos) throws IOException {
+        int read = 0;
+        while (read < max) {
+            long index = position / recordsPerSegment;
+            if (index != segmentIndex && !open(index)) break;
+            int offset = (int) (position % recordsPerSegment) * OperationJournal.RECORD_SIZE;
+            if (offset + OperationJournal.RECORD_SIZE > segment.capacity()) {
+                // mapped while the file was shorter, the slot is not written until the file has grown
+                int mapped = segment.capacity();
+                if (!open(index)) break;
+                if (segmentIndex != index || segment.capacity() > mapped) continue;
+                break;
+            }
+            if (!OperationJournal.isValid(segment, offset, bytes, crc)) {
+                // not written yet, or a hole left by a crashed writer once the journal has moved on
+                if (!Files.exists(OperationJournal.segmentFile(directory, index + 1))) break;
+                if (!holeExpired(graceNanos)) break;
+                position++;
+                continue;
+            }
+            visitor.record(record.getLong(OperationJournal.SEQUENCE),
+                    OperationType.byId(record.get(OperationJournal.TYPE)),
+                    record.getInt(OperationJournal.USER),
+                    record.getInt(OperationJournal.ACCOUNT),
+                    record.getLong(OperationJournal.AMOUNT),
+                    record.getLong(OperationJournal.TIMESTAMP),
+                    record.get(OperationJournal.SUCCESS) != 0);
+            position++;
+            read++;
+        }
+        return read;
+    }
+
+    /**
+     * Reads every record written so far.
+     * @return number of records read
+     */
+    public long replay(Visitor visitor) throws IOException {
+        long total = 0;
+        int read;
+        while ((read = poll(visitor, 4096, 0)) > 0) {
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Reads records as they are written until the thread is interrupted.
+     * @param idleMillis pause when there is nothing new
+     */
+    public void tail(Visitor visitor, long idleMillis) throws IOException, InterruptedException {
+        while (true) {
+            if (poll(visitor, 4096) == 0) Thread.sleep(idleMillis);
+            else if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Sequence number of the next record to read.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * True once the slot at position has been seen empty for graceNanos.
+     */
+    private boolean holeExpired(long graceNanos) {
+        long now = System.nanoTime();
+        if (holePosition != position) {
+            holePosition = position;
+            holeSince = now;
+        }
+        return now - holeSince >= graceNanos;
+    }
+
+    /**
+     * Maps the segment, a missing one is skipped when a later segment exists.
+     */
+    private boolean open(long index) throws IOException {
+        Path file = OperationJournal.segmentFile(directory, index);
+        if (!Files.exists(file)) {
+            List<Long> segments = OperationJournal.segments(directory);
+            for (long later : segments) {
+                if (later < index) continue;
+                // the segment may have been created since the check above
+                if (later > index) position = later * recordsPerSegment;
+                return open(later);
+            }
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = Math.min(channel.size(), (long) recordsPerSegment * OperationJournal.RECORD_SIZE);
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        segmentIndex = index;
+        return true;
+    }
+}
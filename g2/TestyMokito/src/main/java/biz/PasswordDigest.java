@@ -0,0 +1,210 @@
+package biz;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Unsalted password digest in the format stored by the first version of the
+ * bank: Base64 of the digest of the UTF-8 encoded password. Every thread keeps
+ * its own MessageDigest and buffers, checking a password allocates nothing.
+ * <p>
+ * The original code hashed the whole array behind Charset.encode(), which
+ * ends with zero bytes up to the encoder's buffer capacity. The padding is
+ * part of every stored hash and is reproduced here.
+ */
+public class PasswordDigest {
+
+    public static final PasswordDigest SHA_256 = new PasswordDigest("SHA-256");
+
+    private static final byte[] BASE64_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(BASE64_VALUES, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64_VALUES[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private static class State {
+        final MessageDigest digest;
+        final byte[] hash;
+        final byte[] expected;
+        byte[] encoded = new byte[64];
+
+        State(MessageDigest digest) {
+            this.digest = digest;
+            this.hash = new byte[digest.getDigestLength()];
+            this.expected = new byte[digest.getDigestLength()];
+        }
+    }
+
+    private final String algorithm;
+    private final ThreadLocal<State> state;
+
+    public PasswordDigest(String algorithm) {
+        this.algorithm = algorithm;
+        this.state = ThreadLocal.withInitial(this::newState);
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return Base64 of the digest, null when the algorithm is not available
+     */
+    public String hash(char[] password) {
+        State s = state.get();
+        if (s == null) {
+            fill(password);
+            return null;
+        }
+        try {
+            digest(s, password);
+            return Base64.getEncoder().encodeToString(s.hash);
+        }
+        finally {
+            Arrays.fill(s.hash, (byte) 0);
+            fill(password);
+        }
+    }
+
+    /**
+     * Compares the digest of the password with a stored Base64 digest in
+     * constant time. The password array is overwritten afterwards.
+     */
+    public boolean matches(char[] password, String storedHash) {
+        State s = state.get();
+        if (s == null || storedHash == null) {
+            fill(password);
+            return false;
+        }
+        try {
+            if (decodeBase64(storedHash, s.expected) != s.expected.length) return false;
+            digest(s, password);
+            return MessageDigest.isEqual(s.hash, s.expected);
+        }
+        finally {
+            Arrays.fill(s.hash, (byte) 0);
+            Arrays.fill(s.expected, (byte) 0);
+            fill(password);
+        }
+    }
+
+    private State newState() {
+        try {
+            return new State(MessageDigest.getInstance(algorithm));
+        } catch (NoSuchAlgorithmException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static void digest(State s, char[] password) {
+        int chars = password == null ? 0 : password.length;
+        int length = encodedLength(password, chars);
+        int capacity = legacyCapacity(chars, length);
+        if (s.encoded.length < capacity) {
+            Arrays.fill(s.encoded, (byte) 0);
+            s.encoded = new byte[Math.max(capacity, s.encoded.length * 2)];
+        }
+        try {
+            encodeUtf8(password, chars, s.encoded);
+            // bytes past length are zero, they stand for the encoder padding
+            s.digest.update(s.encoded, 0, capacity);
+            s.digest.digest(s.hash, 0, s.hash.length);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+        finally {
+            Arrays.fill(s.encoded, 0, length, (byte) 0);
+        }
+    }
+
+    /**
+     * Size of the buffer Charset.encode() ends with: it starts at 1.1 bytes
+     * per char and grows to 2n+1 whenever the output does not fit.
+     */
+    static int legacyCapacity(int chars, int encodedLength) {
+        int n = (int) (chars * 1.1f);
+        while (n < encodedLength) n = 2 * n + 1;
+        return n;
+    }
+
+    private static int encodedLength(char[] chars, int count) {
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            char c = chars[i];
+            if (c < 0x80) length += 1;
+            else if (c < 0x800) length += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(chars[i + 1])) {
+                length += 4;
+                i++;
+            }
+            else if (Character.isSurrogate(c)) length += 1;
+            else length += 3;
+        }
+        return length;
+    }
+
+    /**
+     * UTF-8 as the JDK encoder writes it, an unpaired surrogate becomes '?'.
+     */
+    private static void encodeUtf8(char[] chars, int count, byte[] out) {
+        int p = 0;
+        for (int i = 0; i < count; i++) {
+            char c = chars[i];
+            if (c < 0x80) {
+                out[p++] = (byte) c;
+            } else if (c < 0x800) {
+                out[p++] = (byte) (0xC0 | (c >> 6));
+                out[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(chars[i + 1])) {
+                int cp = Character.toCodePoint(c, chars[++i]);
+                out[p++] = (byte) (0xF0 | (cp >> 18));
+                out[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                out[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                out[p++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                out[p++] = '?';
+            } else {
+                out[p++] = (byte) (0xE0 | (c >> 12));
+                out[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * @return number of bytes written to out, -1 when the text is not Base64
+     * or does not fit
+     */
+    static int decodeBase64(String text, byte[] out) {
+        int end = text.length();
+        while (end > 0 && text.charAt(end - 1) == '=') end--;
+        int bits = 0;
+        int bitCount = 0;
+        int p = 0;
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            int value = c < 128 ? BASE64_VALUES[c] : -1;
+            if (value < 0) return -1;
+            bits = (bits << 6) | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                if (p == out.length) return -1;
+                out[p++] = (byte) (bits >> bitCount);
+            }
+        }
+        return p;
+    }
+
+    private static void fill(char[] password) {
+        if (password != null) Arrays.fill(password, 'a');
+    }
+}
@@ -0,0 +1,51 @@
+package biz;
+
+/**
+ * Finds the PBKDF2 iteration count which takes about the given time on this
+ * host. Run it on the production hardware:
+ * {@code java biz.PasswordHashCalibrator [target millis]}
+ * and start the bank with the printed system property, or pass the result of
+ * {@link #calibrate(long)} to {@link AuthenticationManager}.
+ */
+public class PasswordHashCalibrator {
+    static final int MIN_ITERATIONS = 10_000;
+
+    public static int calibrate(long targetMillis) {
+        long targetNanos = targetMillis * 1_000_000L;
+        int iterations = MIN_ITERATIONS;
+        for (int i = 0; i < 5; i++) {
+            measure(iterations); // warm up the JIT
+        }
+        long elapsed = measure(iterations);
+        // measure long enough for timer resolution to stop mattering
+        while (elapsed < 50_000_000L && elapsed < targetNanos) {
+            iterations *= 2;
+            elapsed = measure(iterations);
+        }
+        long scaled = iterations * targetNanos / Math.max(1, elapsed);
+        scaled = scaled / 1000 * 1000;
+        return (int) Math.max(MIN_ITERATIONS, Math.min(Integer.MAX_VALUE, scaled));
+    }
+
+    /**
+     * Best of three runs, in nanoseconds.
+     */
+    static long measure(int iterations) {
+        byte[] salt = new byte[16];
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            char[] password = "calibration".toCharArray();
+            long start = System.nanoTime();
+            Pbkdf2Hasher.derive(password, salt, iterations, 256);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    public static void main(String[] args) {
+        long target = args.length > 0 ? Long.parseLong(args[0]) : 250;
+        int iterations = calibrate(target);
+        System.out.println("PBKDF2-SHA256 iterations for " + target + " ms: " + iterations);
+        System.out.println("-D" + Pbkdf2Hasher.ITERATIONS_PROPERTY + "=" + iterations);
+    }
+}
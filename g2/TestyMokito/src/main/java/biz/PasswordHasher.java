@@ -0,0 +1,23 @@
+package biz;
+
+/**
+ * One format of hashes stored in the Password table. Implementations
+ * overwrite the password array passed to hash and matches.
+ */
+public interface PasswordHasher {
+
+    /**
+     * Whether the stored hash is in this hasher's format.
+     */
+    boolean supports(String storedHash);
+
+    String hash(char[] password);
+
+    boolean matches(char[] password, String storedHash);
+
+    /**
+     * Whether a hash in this format should be replaced by a fresh one from
+     * the current hasher.
+     */
+    boolean needsRehash(String storedHash);
+}
@@ -0,0 +1,135 @@
+package biz;
+
+import model.exceptions.LoginServiceBusyException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks passwords against hashes in any known format and creates new hashes
+ * with the current hasher. Hashing runs on a small pool of its own with a
+ * bounded queue: a burst of logins waits there, or is refused when the queue
+ * is full, instead of occupying every request thread with KDF work.
+ */
+public class PasswordHashing {
+    private final PasswordHasher current;
+    private final List<PasswordHasher> hashers;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * PBKDF2 for new hashes, legacy SHA-256 hashes are still accepted.
+     */
+    public static PasswordHashing defaults() {
+        return defaults(new Pbkdf2Hasher());
+    }
+
+    /**
+     * As {@link #defaults()}, new hashes use the given PBKDF2 iteration count.
+     */
+    public static PasswordHashing defaults(int pbkdf2Iterations) {
+        return defaults(new Pbkdf2Hasher(pbkdf2Iterations));
+    }
+
+    private static PasswordHashing defaults(Pbkdf2Hasher hasher) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        return new PasswordHashing(hasher, Collections.singletonList(new LegacySha256Hasher()),
+                threads, 64 * threads);
+    }
+
+    /**
+     * @param older hashers of formats which are verified but no longer written
+     */
+    public PasswordHashing(PasswordHasher current, List<PasswordHasher> older, int threads, int queueCapacity) {
+        this.current = current;
+        this.hashers = new ArrayList<>();
+        this.hashers.add(current);
+        this.hashers.addAll(older);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread t = new Thread(r, "password-hash-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Checks the password, the array is overwritten afterwards.
+     * @return null when the password does not match, otherwise the hash to
+     * keep: storedHash itself or a new hash when its format is outdated
+     */
+    public String verify(char[] password, String storedHash) throws LoginServiceBusyException {
+        return run(password, () -> {
+            PasswordHasher hasher = hasherFor(storedHash);
+            if (hasher == null) {
+                fill(password);
+                return null;
+            }
+            boolean rehash = hasher != current || current.needsRehash(storedHash);
+            char[] copy = rehash ? password.clone() : null;
+            try {
+                if (!hasher.matches(password, storedHash)) return null;
+                return rehash ? current.hash(copy) : storedHash;
+            }
+            finally {
+                fill(copy);
+            }
+        });
+    }
+
+    /**
+     * New hash in the current format, the array is overwritten afterwards.
+     */
+    public String hash(char[] password) throws LoginServiceBusyException {
+        return run(password, () -> current.hash(password));
+    }
+
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private PasswordHasher hasherFor(String storedHash) {
+        for (PasswordHasher hasher : hashers) {
+            if (hasher.supports(storedHash)) return hasher;
+        }
+        return null;
+    }
+
+    private String run(char[] password, Callable<String> work) throws LoginServiceBusyException {
+        Future<String> result;
+        try {
+            result = executor.submit(work);
+        } catch (RejectedExecutionException e) {
+            fill(password);
+            throw new LoginServiceBusyException("Too many logins in progress");
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LoginServiceBusyException("Interrupted while checking password");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static void fill(char[] password) {
+        if (password != null) Arrays.fill(password, 'a');
+    }
+}
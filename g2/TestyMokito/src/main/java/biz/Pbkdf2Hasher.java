@@ -0,0 +1,128 @@
+package biz;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Salted PBKDF2 with HMAC-SHA256, stored as
+ * {@code $pbkdf2-sha256$<iterations>$<salt>$<hash>} with Base64 salt and hash.
+ * The iteration count is part of the stored hash, so it can be raised without
+ * breaking existing passwords.
+ * <p>
+ * The iteration count for new hashes is given to the constructor or, for the
+ * default hasher, by the system property {@value #ITERATIONS_PROPERTY};
+ * {@link PasswordHashCalibrator} finds a value for the host.
+ */
+public class Pbkdf2Hasher implements PasswordHasher {
+    public static final int DEFAULT_ITERATIONS = 310_000;
+    public static final String ITERATIONS_PROPERTY = "bank.pbkdf2.iterations";
+
+    static final String PREFIX = "$pbkdf2-sha256$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int KEY_BITS = 256;
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Iterations from {@value #ITERATIONS_PROPERTY}, {@link #DEFAULT_ITERATIONS} when it is not set.
+     */
+    public Pbkdf2Hasher() {
+        this(configuredIterations());
+    }
+
+    public Pbkdf2Hasher(int iterations) {
+        if (iterations < 1) throw new IllegalArgumentException("Iterations must be positive");
+        this.iterations = iterations;
+    }
+
+    static int configuredIterations() {
+        String value = System.getProperty(ITERATIONS_PROPERTY);
+        if (value == null || value.trim().isEmpty()) return DEFAULT_ITERATIONS;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + ITERATIONS_PROPERTY + ": " + value);
+        }
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public boolean supports(String storedHash) {
+        return storedHash != null && storedHash.startsWith(PREFIX);
+    }
+
+    public String hash(char[] password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] key = derive(password, salt, iterations, KEY_BITS);
+        Base64.Encoder encoder = Base64.getEncoder();
+        return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(key);
+    }
+
+    public boolean matches(char[] password, String storedHash) {
+        String[] parts = parse(storedHash);
+        if (parts == null) {
+            fill(password);
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(parts[0]);
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            byte[] key = derive(password, salt, storedIterations, expected.length * 8);
+            return MessageDigest.isEqual(key, expected);
+        } catch (IllegalArgumentException e) {
+            fill(password);
+            return false;
+        }
+    }
+
+    public boolean needsRehash(String storedHash) {
+        String[] parts = parse(storedHash);
+        if (parts == null) return true;
+        try {
+            return Integer.parseInt(parts[0]) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Derives the key and overwrites the password array.
+     */
+    static byte[] derive(char[] password, byte[] salt, int iterations, int keyBits) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, keyBits);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            throw new IllegalStateException(e);
+        }
+        finally {
+            spec.clearPassword();
+            fill(password);
+        }
+    }
+
+    /**
+     * @return iterations, salt and hash, null when the text is not in this format
+     */
+    private static String[] parse(String storedHash) {
+        if (storedHash == null || !storedHash.startsWith(PREFIX)) return null;
+        String[] parts = storedHash.substring(PREFIX.length()).split("\\$");
+        return parts.length == 3 ? parts : null;
+    }
+
+    private static void fill(char[] password) {
+        if (password != null) Arrays.fill(password, 'a');
+    }
+}
@@ -0,0 +1,186 @@
+package biz;
+
+import model.User;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Sessions of logged in users, identified by random tokens. A session ends
+ * after idleTimeout without use or absoluteTimeout after login, whichever
+ * comes first. Expired sessions are removed by a timer wheel: every session
+ * sits in the slot of its deadline and each tick inspects one slot only.
+ */
+public class SessionManager {
+
+    private static class Session {
+        final String token;
+        final User user;
+        final long absoluteDeadline;
+        volatile long lastAccess;
+
+        Session(String token, User user, long now, long absoluteTimeout) {
+            this.token = token;
+            this.user = user;
+            this.absoluteDeadline = now + absoluteTimeout;
+            this.lastAccess = now;
+        }
+    }
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final long idleTimeout;
+    private final long absoluteTimeout;
+    private final long tickMillis;
+    private final Queue<Session>[] wheel;
+    private final int mask;
+    private final LongSupplier clock;
+    private final SecureRandom random = new SecureRandom();
+    private final AtomicLong expired = new AtomicLong();
+    private long cursor;
+    private final Object reaperLock = new Object();
+    private volatile ScheduledExecutorService reaper;
+
+    public SessionManager() {
+        this(TimeUnit.MINUTES.toMillis(15), TimeUnit.HOURS.toMillis(8), 1000, 512);
+    }
+
+    public SessionManager(long idleTimeoutMillis, long absoluteTimeoutMillis, long tickMillis, int slots) {
+        this(idleTimeoutMillis, absoluteTimeoutMillis, tickMillis, slots, () -> System.nanoTime() / 1_000_000);
+    }
+
+    /**
+     * @param slots rounded up to a power of two
+     * @param clock milliseconds, used by tests to move time
+     */
+    @SuppressWarnings("unchecked")
+    SessionManager(long idleTimeoutMillis, long absoluteTimeoutMillis, long tickMillis, int slots, LongSupplier clock) {
+        this.idleTimeout = idleTimeoutMillis;
+        this.absoluteTimeout = absoluteTimeoutMillis;
+        this.tickMillis = tickMillis;
+        int size = 1;
+        while (size < slots) size <<= 1;
+        this.wheel = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            this.wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.mask = size - 1;
+        this.clock = clock;
+        this.cursor = clock.getAsLong() / tickMillis;
+    }
+
+    /**
+     * Starts a session for an authenticated user.
+     * @return token to pass to {@link #resolve(String)}
+     */
+    public String open(User user) {
+        startReaper();
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        Session session = new Session(token, user, clock.getAsLong(), absoluteTimeout);
+        sessions.put(token, session);
+        schedule(session);
+        return token;
+    }
+
+    /**
+     * @return user of a live session, null for an unknown or expired token
+     */
+    public User resolve(String token) {
+        if (token == null) return null;
+        Session session = sessions.get(token);
+        if (session == null) return null;
+        long now = clock.getAsLong();
+        if (isExpired(session, now)) {
+            if (sessions.remove(token, session)) expired.incrementAndGet();
+            return null;
+        }
+        session.lastAccess = now;
+        return session.user;
+    }
+
+    /**
+     * @return user of the closed session, null when there was none
+     */
+    public User close(String token) {
+        if (token == null) return null;
+        Session session = sessions.remove(token);
+        return session == null ? null : session.user;
+    }
+
+    public int getActiveSessions() {
+        return sessions.size();
+    }
+
+    public long getExpiredSessions() {
+        return expired.get();
+    }
+
+    public void shutdown() {
+        synchronized (reaperLock) {
+            if (reaper != null) reaper.shutdownNow();
+        }
+    }
+
+    /**
+     * Processes every slot up to the current time. Runs on the reaper thread.
+     */
+    synchronized void reap() {
+        long now = clock.getAsLong();
+        long nowTick = now / tickMillis;
+        // after a long pause one round over the wheel visits every session
+        if (nowTick - cursor >= wheel.length) cursor = nowTick - wheel.length + 1;
+        while (cursor <= nowTick) {
+            Queue<Session> slot = wheel[(int) (cursor & mask)];
+            // sessions rescheduled into this slot wait for the next round
+            for (int n = slot.size(); n > 0; n--) {
+                Session session = slot.poll();
+                if (session == null) break;
+                if (sessions.get(session.token) != session) continue;
+                if (isExpired(session, now)) {
+                    if (sessions.remove(session.token, session)) expired.incrementAndGet();
+                } else {
+                    schedule(session);
+                }
+            }
+            cursor++;
+        }
+    }
+
+    private void schedule(Session session) {
+        long deadlineTick = deadline(session) / tickMillis + 1;
+        wheel[(int) (deadlineTick & mask)].add(session);
+    }
+
+    private long deadline(Session session) {
+        return Math.min(session.lastAccess + idleTimeout, session.absoluteDeadline);
+    }
+
+    private boolean isExpired(Session session, long now) {
+        return now >= deadline(session);
+    }
+
+    private void startReaper() {
+        if (reaper != null) return;
+        synchronized (reaperLock) {
+            if (reaper != null) return;
+            ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "session-reaper");
+                t.setDaemon(true);
+                return t;
+            });
+            executor.scheduleAtFixedRate(this::reap, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+            reaper = executor;
+        }
+    }
+}
@@ -4,19 +4,90 @@ import model.Account;
 import model.Operation;
 import model.Password;
 import model.User;
+import model.operations.Interest;
+import model.operations.Payment;
 
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  * Created by Krzysztof Podlaski on 04.03.2018.
  */
 public interface DAO {
     User findUserByName(String userName) throws SQLException;
+
+    /**
+     * All users together with their roles.
+     */
+    List<User> findUsers() throws SQLException;
+
     Password findPasswordForUser(User user) throws SQLException;
     Account findAccountById(int accountId) throws SQLException;
     boolean updateAccountState(Account account) throws SQLException;
+
+    /**
+     * Writes the balances of all accounts in one transaction.
+     * @return updated[i] is false when accounts.get(i) does not exist
+     */
+    boolean[] updateAccountStates(List<Account> accounts) throws SQLException;
+
+    /**
+     * Keyset pagination over accounts: at most limit accounts with
+     * afterAccountId &lt; id &lt;= maxAccountId, ordered by id.
+     */
+    List<Account> findAccounts(int afterAccountId, int maxAccountId, int limit) throws SQLException;
+
+    int findMaxAccountId() throws SQLException;
     boolean setUserPassword(User user, String passwd, String oldPass) throws SQLException;
     void close() throws SQLException;
 
     void logOperation(Operation operation, boolean success) throws SQLException;
+
+    /**
+     * Journals all operations in one transaction, success[i] belongs to operations.get(i).
+     */
+    void logOperations(List<Operation> operations, boolean[] success) throws SQLException;
+
+    /**
+     * Moves the money of both payments in one transaction and journals both of them.
+     * @return false when the source account does not hold enough money
+     */
+    boolean transfer(Payment withdraw, Payment payment) throws SQLException;
+
+    /**
+     * Last account id committed by an interest run in the partition starting
+     * at partitionFrom, 0 when the partition has no checkpoint yet.
+     */
+    int findInterestWatermark(String runId, int partitionFrom) throws SQLException;
+
+    /**
+     * Adds every interest to its account, journals it and moves the partition
+     * watermark, all in one transaction. Accounts already credited by the same
+     * run are skipped.
+     * @return applied[i] is true when credits.get(i) was credited by this call
+     */
+    boolean[] creditInterest(String runId, int partitionFrom, List<Interest> credits, int watermark) throws SQLException;
+
+    /**
+     * True when {@link #finishInterestRun(String)} has been called for the run.
+     */
+    boolean isInterestRunFinished(String runId) throws SQLException;
+
+    /**
+     * Records the run as finished and deletes its checkpoints and credited
+     * accounts, which are not needed once the run cannot be resumed.
+     */
+    void finishInterestRun(String runId) throws SQLException;
+
+    /**
+     * Journal sequence number the stored balances of an in-memory ledger
+     * include, 0 when no snapshot was taken.
+     */
+    long findLedgerSnapshot() throws SQLException;
+
+    /**
+     * Writes the balances and the journal sequence number they include in
+     * one transaction.
+     */
+    void saveLedgerSnapshot(List<Account> accounts, long sequence) throws SQLException;
 }
@@ -0,0 +1,327 @@
+package db.dao.impl;
+
+import db.dao.DAO;
+import model.Account;
+import model.operations.Interest;
+import model.operations.Payment;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps recently used accounts in memory. Reads are served from the cache,
+ * balance updates are applied to the cache at once and written to the wrapped
+ * DAO later, several updates of one account collapse into a single row of the
+ * next batch.
+ * <p>
+ * Transfers and interest change balances inside the database, so pending
+ * balances are flushed before them and their accounts are dropped from the
+ * cache afterwards. Callers must not update an account while such an operation
+ * on it is running; AccountManager guarantees that with its account locks.
+ */
+public class CachingDAO extends ForwardingDAO {
+
+    /**
+     * When updateAccountState returns.
+     */
+    public enum Durability {
+        /** as soon as the cache is updated, the write happens on the next flush */
+        WRITE_BEHIND,
+        /**
+         * after the flush containing the update has been committed; when the
+         * flush fails the update is dropped and the caller gets the error
+         */
+        WAIT_FOR_FLUSH
+    }
+
+    private final int maxEntries;
+    private final Durability durability;
+    private final Object lock = new Object();
+    private final LinkedHashMap<Integer, Account> cache;
+    private Map<Integer, Account> dirty = new LinkedHashMap<>();
+    // account id -> last update sequence number of a flush which found no row for it
+    private final Map<Integer, Long> rejected = new HashMap<>();
+    // account id -> last update sequence number of a failed flush which dropped it
+    private final Map<Integer, Long> failed = new HashMap<>();
+    private long version = 0;
+    private long updateSeq = 0;
+    private final Object flushLock = new Object();
+    private volatile long flushedSeq = 0;
+    private final ScheduledExecutorService flusher;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedAccounts = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    public CachingDAO(DAO delegate) {
+        this(delegate, 10_000, 50, Durability.WAIT_FOR_FLUSH);
+    }
+
+    /**
+     * @param flushIntervalMillis period of the background flush, 0 flushes only
+     *                            on demand and before transfers
+     */
+    public CachingDAO(DAO delegate, int maxEntries, long flushIntervalMillis, Durability durability) {
+        super(delegate);
+        this.maxEntries = maxEntries;
+        this.durability = durability;
+        this.cache = new LinkedHashMap<Integer, Account>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Account> eldest) {
+                return size() > CachingDAO.this.maxEntries;
+            }
+        };
+        if (flushIntervalMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "account-cache-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    @Override
+    public Account findAccountById(int accountId) throws SQLException {
+        long loadedAt;
+        synchronized (lock) {
+            Account cached = dirty.get(accountId);
+            if (cached == null) cached = cache.get(accountId);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return copy(cached);
+            }
+            loadedAt = version;
+        }
+        misses.incrementAndGet();
+        Account account = delegate.findAccountById(accountId);
+        if (account != null && account.getId() == accountId) {
+            synchronized (lock) {
+                // an update or invalidation while loading may have made the row stale
+                if (version == loadedAt) cache.put(accountId, copy(account));
+            }
+        }
+        return account;
+    }
+
+    /**
+     * In {@link Durability#WAIT_FOR_FLUSH} mode false when the flush found no
+     * row of the account, and an SQLException when the flush failed; the
+     * update is then forgotten and the account reloaded on the next read.
+     * Always true in {@link Durability#WRITE_BEHIND} mode, a missing account
+     * is only noticed by the flush and a failed flush is retried.
+     */
+    @Override
+    public boolean updateAccountState(Account account) throws SQLException {
+        int id = account.getId();
+        Account state = copy(account);
+        long seq;
+        synchronized (lock) {
+            cache.put(id, state);
+            dirty.put(id, state);
+            version++;
+            seq = ++updateSeq;
+        }
+        if (durability == Durability.WRITE_BEHIND) return true;
+        flushUpTo(seq);
+        synchronized (lock) {
+            Long droppedAt = failed.get(id);
+            if (droppedAt != null && droppedAt >= seq) throw new SQLException("Balance of account " + id + " was not written");
+            Long at = rejected.get(id);
+            return at == null || at < seq;
+        }
+    }
+
+    @Override
+    public List<Account> findAccounts(int afterAccountId, int maxAccountId, int limit) throws SQLException {
+        flush();
+        return delegate.findAccounts(afterAccountId, maxAccountId, limit);
+    }
+
+    @Override
+    public boolean transfer(Payment withdraw, Payment payment) throws SQLException {
+        flush();
+        try {
+            return delegate.transfer(withdraw, payment);
+        }
+        finally {
+            invalidate(withdraw.getAccount().getId());
+            invalidate(payment.getAccount().getId());
+        }
+    }
+
+    @Override
+    public boolean[] creditInterest(String runId, int partitionFrom, List<Interest> credits, int watermark) throws SQLException {
+        flush();
+        try {
+            return delegate.creditInterest(runId, partitionFrom, credits, watermark);
+        }
+        finally {
+            for (Interest interest : credits) {
+                invalidate(interest.getAccount().getId());
+            }
+        }
+    }
+
+    @Override
+    public void saveLedgerSnapshot(List<Account> accounts, long sequence) throws SQLException {
+        flush();
+        try {
+            delegate.saveLedgerSnapshot(accounts, sequence);
+        }
+        finally {
+            for (Account account : accounts) {
+                invalidate(account.getId());
+            }
+        }
+    }
+
+    /**
+     * Writes all pending balances to the wrapped DAO in one batch.
+     */
+    public void flush() throws SQLException {
+        synchronized (flushLock) {
+            flushPending();
+        }
+    }
+
+    public void invalidate(int accountId) {
+        synchronized (lock) {
+            cache.remove(accountId);
+            version++;
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (lock) {
+            cache.clear();
+            version++;
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (flusher != null) flusher.shutdownNow();
+        try {
+            flush();
+        }
+        finally {
+            delegate.close();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    public long getFlushedAccounts() {
+        return flushedAccounts.get();
+    }
+
+    public long getFailedFlushes() {
+        return failedFlushes.get();
+    }
+
+    public int getPending() {
+        synchronized (lock) {
+            return dirty.size();
+        }
+    }
+
+    private void flushUpTo(long seq) throws SQLException {
+        synchronized (flushLock) {
+            // a flush started by another caller may already have written this update
+            if (flushedSeq >= seq) return;
+            flushPending();
+        }
+    }
+
+    private void flushPending() throws SQLException {
+        Map<Integer, Account> batch;
+        long upTo;
+        synchronized (lock) {
+            upTo = updateSeq;
+            if (dirty.isEmpty()) {
+                flushedSeq = upTo;
+                return;
+            }
+            batch = dirty;
+            dirty = new LinkedHashMap<>();
+        }
+        List<Account> accounts = new ArrayList<>(batch.values());
+        boolean[] updated;
+        try {
+            updated = delegate.updateAccountStates(accounts);
+        } catch (SQLException | RuntimeException e) {
+            failedFlushes.incrementAndGet();
+            synchronized (lock) {
+                for (Map.Entry<Integer, Account> entry : batch.entrySet()) {
+                    int id = entry.getKey();
+                    if (durability == Durability.WRITE_BEHIND) {
+                        // newer updates made during the failed flush win
+                        dirty.putIfAbsent(id, entry.getValue());
+                    } else if (!dirty.containsKey(id)) {
+                        // the callers are told it failed, the balance must not be written later
+                        failed.put(id, upTo);
+                        cache.remove(id);
+                    }
+                }
+                version++;
+                if (durability == Durability.WAIT_FOR_FLUSH) flushedSeq = upTo;
+            }
+            throw e;
+        }
+        synchronized (lock) {
+            for (int i = 0; i < updated.length; i++) {
+                int id = accounts.get(i).getId();
+                failed.remove(id);
+                if (updated[i]) {
+                    rejected.remove(id);
+                } else {
+                    if (durability == Durability.WAIT_FOR_FLUSH) rejected.put(id, upTo);
+                    cache.remove(id);
+                    version++;
+                }
+            }
+        }
+        flushes.incrementAndGet();
+        flushedAccounts.addAndGet(accounts.size());
+        flushedSeq = upTo;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static Account copy(Account account) {
+        Account copy = new Account();
+        copy.setId(account.getId());
+        copy.setBalance(account.getBalance());
+        copy.setCurrency(account.getCurrency());
+        copy.setOwner(account.getOwner());
+        return copy;
+    }
+}
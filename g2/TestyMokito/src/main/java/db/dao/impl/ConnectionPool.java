@@ -0,0 +1,168 @@
+package db.dao.impl;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of SQLite connections. Each pooled entry is a {@link DAOImpl},
+ * i.e. a connection together with its own prepared statement cache.
+ * A maintenance thread evicts idle connections and runs WAL checkpoints.
+ */
+class ConnectionPool {
+    private final String url;
+    private final PoolConfig config;
+    private final ConnectionProfile profile;
+    private final LinkedBlockingDeque<Idle> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicLong checkpoints = new AtomicLong();
+    private final ScheduledExecutorService maintenance;
+    private volatile boolean closed = false;
+
+    private static class Idle {
+        final DAOImpl dao;
+        final long since;
+
+        Idle(DAOImpl dao) {
+            this.dao = dao;
+            this.since = System.currentTimeMillis();
+        }
+    }
+
+    ConnectionPool(String url, PoolConfig config, ConnectionProfile profile) throws SQLException {
+        if (config.getMaxSize() < 1 || config.getMinSize() > config.getMaxSize())
+            throw new IllegalArgumentException("Invalid pool size " + config.getMinSize() + ".." + config.getMaxSize());
+        this.url = url;
+        this.config = config;
+        this.profile = profile;
+        this.permits = new Semaphore(config.getMaxSize(), true);
+        for (int i = 0; i < config.getMinSize(); i++) {
+            idle.offerLast(new Idle(connect()));
+        }
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sqlite-pool-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, config.getIdleTimeoutMillis() / 2);
+        maintenance.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        long checkpoint = profile.getCheckpointIntervalMillis();
+        if (checkpoint > 0 && "WAL".equalsIgnoreCase(profile.getJournalMode())) {
+            maintenance.scheduleWithFixedDelay(this::checkpoint, checkpoint, checkpoint, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    DAOImpl borrow() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        try {
+            if (!permits.tryAcquire(config.getBorrowTimeoutMillis(), TimeUnit.MILLISECONDS))
+                throw new SQLTimeoutException("No free connection after " + config.getBorrowTimeoutMillis() + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        try {
+            Idle entry;
+            while ((entry = idle.pollFirst()) != null) {
+                if (!config.isValidateOnBorrow() || isValid(entry.dao)) return entry.dao;
+                discard(entry.dao);
+            }
+            return connect();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    void release(DAOImpl dao) {
+        if (closed) discard(dao);
+        else idle.offerFirst(new Idle(dao));
+        permits.release();
+    }
+
+    int getOpenConnections() {
+        return open.get();
+    }
+
+    int getIdleConnections() {
+        return idle.size();
+    }
+
+    /**
+     * Background WAL checkpoints run so far.
+     */
+    long getCheckpoints() {
+        return checkpoints.get();
+    }
+
+    void close() {
+        closed = true;
+        maintenance.shutdownNow();
+        Idle entry;
+        while ((entry = idle.pollFirst()) != null) {
+            discard(entry.dao);
+        }
+    }
+
+    private DAOImpl connect() throws SQLException {
+        DAOImpl dao = SQLiteDB.connect(url, profile);
+        open.incrementAndGet();
+        return dao;
+    }
+
+    private boolean isValid(DAOImpl dao) {
+        try {
+            return dao.db.isValid(config.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(DAOImpl dao) {
+        open.decrementAndGet();
+        try {
+            dao.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void evictIdle() {
+        long deadline = System.currentTimeMillis() - config.getIdleTimeoutMillis();
+        Iterator<Idle> it = idle.descendingIterator();
+        while (it.hasNext() && open.get() > config.getMinSize()) {
+            Idle entry = it.next();
+            if (entry.since > deadline) break;
+            if (idle.removeLastOccurrence(entry)) discard(entry.dao);
+        }
+    }
+
+    /**
+     * Copies committed WAL frames back into the database file without
+     * waiting for readers, so the WAL does not grow under constant load.
+     */
+    private void checkpoint() {
+        if (closed) return;
+        try {
+            DAOImpl dao = borrow();
+            try (Statement st = dao.db.createStatement()) {
+                st.execute("PRAGMA wal_checkpoint(PASSIVE)");
+                checkpoints.incrementAndGet();
+            }
+            finally {
+                release(dao);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
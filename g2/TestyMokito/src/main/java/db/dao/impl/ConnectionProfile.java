@@ -0,0 +1,125 @@
+package db.dao.impl;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * SQLite pragmas applied to every connection when it is opened.
+ * WAL journal mode lets readers proceed while a writer commits, the other
+ * settings trade durability of the last transactions for write throughput.
+ */
+public class ConnectionProfile {
+    public static final String DURABLE = "durable";
+    public static final String THROUGHPUT = "throughput";
+
+    private String journalMode = "WAL";
+    private String synchronous = "FULL";
+    private int cacheSize = -2_000;
+    private long mmapSize = 0;
+    private String tempStore = "DEFAULT";
+    private int busyTimeoutMillis = 5_000;
+    private long checkpointIntervalMillis = 0;
+
+    /**
+     * Every commit is synced to disk, nothing committed is lost on power failure.
+     */
+    public static ConnectionProfile durable() {
+        ConnectionProfile profile = new ConnectionProfile();
+        profile.setCheckpointIntervalMillis(30_000);
+        return profile;
+    }
+
+    /**
+     * WAL is synced only at checkpoints, the last commits may be lost on power
+     * failure (never on an application crash).
+     */
+    public static ConnectionProfile throughput() {
+        ConnectionProfile profile = new ConnectionProfile();
+        profile.setSynchronous("NORMAL");
+        profile.setCacheSize(-64_000);
+        profile.setMmapSize(256L * 1024 * 1024);
+        profile.setTempStore("MEMORY");
+        profile.setCheckpointIntervalMillis(5_000);
+        return profile;
+    }
+
+    public static ConnectionProfile forName(String name) {
+        if (DURABLE.equalsIgnoreCase(name)) return durable();
+        if (THROUGHPUT.equalsIgnoreCase(name)) return throughput();
+        throw new IllegalArgumentException("Unknown connection profile " + name);
+    }
+
+    void apply(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("PRAGMA busy_timeout = " + busyTimeoutMillis);
+            st.execute("PRAGMA journal_mode = " + journalMode);
+            st.execute("PRAGMA synchronous = " + synchronous);
+            st.execute("PRAGMA cache_size = " + cacheSize);
+            st.execute("PRAGMA mmap_size = " + mmapSize);
+            st.execute("PRAGMA temp_store = " + tempStore);
+        }
+    }
+
+    public String getJournalMode() {
+        return journalMode;
+    }
+
+    public void setJournalMode(String journalMode) {
+        this.journalMode = journalMode;
+    }
+
+    public String getSynchronous() {
+        return synchronous;
+    }
+
+    public void setSynchronous(String synchronous) {
+        this.synchronous = synchronous;
+    }
+
+    /**
+     * Positive values are pages, negative values are KiB, as in SQLite.
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    public void setMmapSize(long mmapSize) {
+        this.mmapSize = mmapSize;
+    }
+
+    public String getTempStore() {
+        return tempStore;
+    }
+
+    public void setTempStore(String tempStore) {
+        this.tempStore = tempStore;
+    }
+
+    public int getBusyTimeoutMillis() {
+        return busyTimeoutMillis;
+    }
+
+    public void setBusyTimeoutMillis(int busyTimeoutMillis) {
+        this.busyTimeoutMillis = busyTimeoutMillis;
+    }
+
+    /**
+     * Period of the background WAL checkpoint, 0 leaves it to SQLite's auto-checkpoint.
+     */
+    public long getCheckpointIntervalMillis() {
+        return checkpointIntervalMillis;
+    }
+
+    public void setCheckpointIntervalMillis(long checkpointIntervalMillis) {
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+    }
+}
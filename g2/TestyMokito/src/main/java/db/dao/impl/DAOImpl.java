@@ -3,45 +3,142 @@ package db.dao.impl;
 import db.dao.DAO;
 import model.*;
 import model.operations.Interest;
-import model.operations.LogOperation;
 import model.operations.Payment;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.Date;
+import java.util.List;
 
 /**
  * Created by Krzysztof Podlaski on 04.03.2018.
  */
 public class DAOImpl implements DAO{
     Connection db;
+    StatementCache statements;
+
+    // shared by all connections, there are only a few roles
+    private static final RoleCache ROLES = new RoleCache();
+
+    private static final String FIND_USER_BY_NAME = "SELECT " +
+            "user.id as user_id, " +
+            "user.name as user_name, " +
+            "role.id as role_id, " +
+            "role.name as role_name, " +
+            "role.permissions as role_permissions, " +
+            "role.ownership_check as role_ownership_check " +
+            "FROM User , Role  " +
+            "WHERE role.id=user.role_id " +
+            "AND user_name = ?";
+
+    private static final String FIND_USERS = "SELECT " +
+            "user.id as user_id, " +
+            "user.name as user_name, " +
+            "role.id as role_id, " +
+            "role.name as role_name, " +
+            "role.permissions as role_permissions, " +
+            "role.ownership_check as role_ownership_check " +
+            "FROM User , Role  " +
+            "WHERE role.id=user.role_id";
+
+    private static final String FIND_PASSWORD_FOR_USER = "SELECT passwd FROM Password  WHERE user_id = ?";
+
+    private static final String FIND_ACCOUNT_BY_ID = "SELECT " +
+            "user.id as user_id, " +
+            "user.name as user_name, " +
+            "role.id as role_id, " +
+            "role.name as role_name, " +
+            "role.permissions as role_permissions, " +
+            "role.ownership_check as role_ownership_check, " +
+            "account.id as account_id, " +
+            "account.currency as account_currency, " +
+            "ammount " +
+            "FROM User , Role, Account " +
+            "WHERE role.id=user.role_id AND " +
+            "owner_id = user.id AND " +
+            "user_id = ?";
+
+    private static final String FIND_ACCOUNTS_AFTER = "SELECT " +
+            "user.id as user_id, " +
+            "user.name as user_name, " +
+            "role.id as role_id, " +
+            "role.name as role_name, " +
+            "role.permissions as role_permissions, " +
+            "role.ownership_check as role_ownership_check, " +
+            "account.id as account_id, " +
+            "account.currency as account_currency, " +
+            "ammount " +
+            "FROM User , Role, Account " +
+            "WHERE role.id=user.role_id AND " +
+            "owner_id = user.id AND " +
+            "account.id > ? AND account.id <= ? " +
+            "ORDER BY account.id LIMIT ?";
+
+    private static final String MAX_ACCOUNT_ID = "SELECT COALESCE(MAX(id), 0) FROM Account";
+
+    private static final String UPDATE_ACCOUNT_STATE = "UPDATE ACCOUNT SET ammount = ? WHERE id = ?";
+
+    private static final String DEBIT_ACCOUNT = "UPDATE ACCOUNT SET ammount = ammount - ? WHERE id = ? AND ammount >= ?";
+
+    private static final String CREDIT_ACCOUNT = "UPDATE ACCOUNT SET ammount = ammount + ? WHERE id = ?";
+
+    private static final String UPDATE_USER_PASSWORD = "UPDATE PASSWORD SET passwd = ? WHERE user_id = ? AND passwd = ?";
+
+    private static final String INSERT_LOG_OPERATION = "INSERT INTO OPERATION " +
+            "(`type`, `description`, `date`, `user_id`) " +
+            "VALUES (?, ?, ?, ?)";
+
+    private static final String INSERT_PAYMENT_OPERATION = "INSERT INTO OPERATION " +
+            "(`type`, `description`, `date`, `user_id`, `ammount`, `account_id`) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_OPERATION_WITH_ID = "INSERT INTO OPERATION " +
+            "(`id`, `type`, `description`, `date`, `user_id`, `ammount`, `account_id`) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String LAST_OPERATION_ID = "SELECT MAX(" +
+            "COALESCE((SELECT seq FROM sqlite_sequence WHERE name = 'Operation' COLLATE NOCASE), 0), " +
+            "COALESCE((SELECT MAX(id) FROM Operation), 0))";
+
+    private static final String INSERT_HISTORY = "INSERT INTO History (`operation_id`,`succesfull`) VALUES (?, ?)";
+
+    private static final String FIND_INTEREST_WATERMARK = "SELECT watermark FROM InterestCheckpoint " +
+            "WHERE run_id = ? AND partition_from = ?";
+
+    private static final String CLAIM_INTEREST_CREDIT = "INSERT OR IGNORE INTO InterestCredit " +
+            "(`run_id`, `account_id`) VALUES (?, ?)";
+
+    private static final String SAVE_INTEREST_CHECKPOINT = "INSERT OR REPLACE INTO InterestCheckpoint " +
+            "(`run_id`, `partition_from`, `watermark`) VALUES (?, ?, ?)";
+
+    private static final String FIND_FINISHED_INTEREST_RUN = "SELECT 1 FROM InterestRun WHERE run_id = ?";
+
+    private static final String FINISH_INTEREST_RUN = "INSERT OR IGNORE INTO InterestRun " +
+            "(`run_id`, `finished`) VALUES (?, ?)";
+
+    private static final String DELETE_INTEREST_CHECKPOINTS = "DELETE FROM InterestCheckpoint WHERE run_id = ?";
+
+    private static final String DELETE_INTEREST_CREDITS = "DELETE FROM InterestCredit WHERE run_id = ?";
+
+    private static final String FIND_LEDGER_SNAPSHOT = "SELECT seq FROM LedgerSnapshot WHERE id = 1";
+
+    private static final String SAVE_LEDGER_SNAPSHOT = "INSERT OR REPLACE INTO LedgerSnapshot (`id`, `seq`) VALUES (1, ?)";
 
 
     public User findUserByName(String userName) throws SQLException {
-        String sql = "SELECT " +
-                "user.id as user_id, " +
-                "user.name as user_name, " +
-                "role.id as role_id, " +
-                "role.name as role_name " +
-                "FROM User , Role  " +
-                "WHERE role.id=user.role_id " +
-                "AND user_name = '"+userName+"'";
+        PreparedStatement st = statements.prepare(FIND_USER_BY_NAME);
+        st.setString(1, userName);
         User user = null;
-        Statement st = null;
-        try{
-            st = db.createStatement();
-            ResultSet rs = st.executeQuery(sql);
+        try (ResultSet rs = st.executeQuery()) {
             if (rs.next()){
                 user = getUserFromRS(rs);
             }
-            st.close();
-        }
-        catch(SQLException e){
-            if (st!= null) {
-                st.close();
-            }
-            throw e;
         }
         return user;
     }
@@ -49,99 +146,143 @@ public class DAOImpl implements DAO{
 
 
 
+    public List<User> findUsers() throws SQLException {
+        PreparedStatement st = statements.prepare(FIND_USERS);
+        List<User> users = new ArrayList<>();
+        try (ResultSet rs = st.executeQuery()) {
+            while (rs.next()) {
+                users.add(getUserFromRS(rs));
+            }
+        }
+        return users;
+    }
+
     public Password findPasswordForUser(User user) throws SQLException {
-        String sql = "SELECT passwd FROM Password  WHERE user_id="+user.getId();
-        Statement st =null;
+        PreparedStatement st = statements.prepare(FIND_PASSWORD_FOR_USER);
+        st.setInt(1, user.getId());
         Password passwd =null;
-        try {
-            st= db.createStatement();
-            ResultSet rs = st.executeQuery(sql);
-            if (rs.next()) passwd = new Password();
-            passwd.setPasswd(rs.getString("passwd"));
-            passwd.setUserId(user.getId());
-            st.close();
-        }
-        catch (SQLException e){
-            if (st!=null) st.close();
-            throw e;
+        try (ResultSet rs = st.executeQuery()) {
+            if (rs.next()) {
+                passwd = new Password();
+                passwd.setPasswd(rs.getString("passwd"));
+                passwd.setUserId(user.getId());
+            }
         }
-
         return passwd;
     }
 
 
     public Account findAccountById(int accountId) throws SQLException {
-        String sql= "SELECT " +
-                "user.id as user_id, " +
-                "user.name as user_name, " +
-                "role.id as role_id, " +
-                "role.name as role_name, " +
-                "account.id as account_id, " +
-                "ammount " +
-                "FROM User , Role, Account " +
-                "WHERE role.id=user.role_id AND " +
-                "owner_id = user.id AND " +
-                "user_id = "+accountId;
-        Statement st = null;
+        PreparedStatement st = statements.prepare(FIND_ACCOUNT_BY_ID);
+        st.setInt(1, accountId);
         Account account = null;
-        try {
-            st = db.createStatement();
-            ResultSet rs = st.executeQuery(sql);
+        try (ResultSet rs = st.executeQuery()) {
             if (rs.next()) account = getAccountFromRs(rs);
-            st.close();
-        }
-        catch(SQLException e){
-            if (st != null) st.close();
-            throw e;
         }
         return account;
     }
 
 
-    public boolean updateAccountState(Account account) throws SQLException {
-        String sql = "UPDATE ACCOUNT SET ammount = "+account.getAmmount() +
-                " WHERE id="+account.getId();
-        Statement st = null;
-        int infected_rows =0;
-        try {
-            st = db.createStatement();
-            infected_rows = st.executeUpdate(sql);
-            st.close();
+    public List<Account> findAccounts(int afterAccountId, int maxAccountId, int limit) throws SQLException {
+        PreparedStatement st = statements.prepare(FIND_ACCOUNTS_AFTER);
+        st.setInt(1, afterAccountId);
+        st.setInt(2, maxAccountId);
+        st.setInt(3, limit);
+        List<Account> accounts = new ArrayList<>(limit);
+        try (ResultSet rs = st.executeQuery()) {
+            while (rs.next()) accounts.add(getAccountFromRs(rs));
         }
-        catch(SQLException e){
-            if (st!=null) st.close();
-            throw e;
+        return accounts;
+    }
+
+    public int findMaxAccountId() throws SQLException {
+        PreparedStatement st = statements.prepare(MAX_ACCOUNT_ID);
+        try (ResultSet rs = st.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
         }
+    }
+
+
+    public int findInterestWatermark(String runId, int partitionFrom) throws SQLException {
+        PreparedStatement st = statements.prepare(FIND_INTEREST_WATERMARK);
+        st.setString(1, runId);
+        st.setInt(2, partitionFrom);
+        try (ResultSet rs = st.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+
+    public boolean updateAccountState(Account account) throws SQLException {
+        PreparedStatement st = statements.prepare(UPDATE_ACCOUNT_STATE);
+        st.setLong(1, account.getBalance());
+        st.setInt(2, account.getId());
+        int infected_rows = st.executeUpdate();
         if (infected_rows>=1) return true;
         return false;
     }
 
-    public boolean setUserPassword(User user, String passwd, String oldPass) throws SQLException {
-        String sql = "UPDATE PASSWORD SET passwd = '"+passwd +
-                "' WHERE user_id="+user.getId()+" AND passwd = '"+oldPass+"'" ;
-        Statement st = null;
-        int infected_rows =0;
+    public boolean[] updateAccountStates(List<Account> accounts) throws SQLException {
+        if (accounts.isEmpty()) return new boolean[0];
+        return inTransaction(() -> updateBalances(accounts));
+    }
+
+    private boolean[] updateBalances(List<Account> accounts) throws SQLException {
+        PreparedStatement st = statements.prepareBatch(UPDATE_ACCOUNT_STATE);
+        int[] updated;
         try {
-            st = db.createStatement();
-            infected_rows = st.executeUpdate(sql);
-            st.close();
+            for (Account account : accounts) {
+                st.setLong(1, account.getBalance());
+                st.setInt(2, account.getId());
+                st.addBatch();
+            }
+            updated = st.executeBatch();
         }
-        catch(SQLException e){
-            if (st!=null) st.close();
+        catch (SQLException | RuntimeException e) {
+            st.clearBatch();
             throw e;
         }
+        boolean[] success = new boolean[accounts.size()];
+        for (int i = 0; i < updated.length; i++) {
+            success[i] = updated[i] >= 1 || updated[i] == Statement.SUCCESS_NO_INFO;
+        }
+        return success;
+    }
+
+    public long findLedgerSnapshot() throws SQLException {
+        PreparedStatement st = statements.prepare(FIND_LEDGER_SNAPSHOT);
+        try (ResultSet rs = st.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    public void saveLedgerSnapshot(List<Account> accounts, long sequence) throws SQLException {
+        inTransaction(() -> {
+            if (!accounts.isEmpty()) updateBalances(accounts);
+            PreparedStatement st = statements.prepare(SAVE_LEDGER_SNAPSHOT);
+            st.setLong(1, sequence);
+            st.executeUpdate();
+            return null;
+        });
+    }
+
+    public boolean setUserPassword(User user, String passwd, String oldPass) throws SQLException {
+        PreparedStatement st = statements.prepare(UPDATE_USER_PASSWORD);
+        st.setString(1, passwd);
+        st.setInt(2, user.getId());
+        st.setString(3, oldPass);
+        int infected_rows = st.executeUpdate();
         if (infected_rows>=1) return true;
         return false;
     }
 
     private User getUserFromRS(ResultSet rs) throws SQLException {
         User user = new User();
-        Role role = new Role();
         user.setId(rs.getInt("user_id"));
         user.setName(rs.getString("user_name"));
-        role.setId(rs.getInt("role_id"));
-        role.setName(rs.getString("role_name"));
-        user.setRole(role);
+        user.setRole(ROLES.intern(rs.getInt("role_id"), rs.getString("role_name"),
+                rs.getLong("role_permissions"), rs.getBoolean("role_ownership_check")));
         return user;
     }
 
@@ -150,60 +291,250 @@ public class DAOImpl implements DAO{
         Account account = new Account();
         account.setOwner(user);
         account.setId(rs.getInt("account_id"));
-        account.setAmmount(rs.getDouble("ammount"));
+        account.setBalance(rs.getLong("ammount"));
+        account.setCurrency(Currency.getInstance(rs.getString("account_currency")));
         return account;
     }
 
+    public long getStatementCacheHits() {
+        return statements.getHits();
+    }
+
+    public long getStatementCacheMisses() {
+        return statements.getMisses();
+    }
+
     public void close() throws SQLException {
-        db.close();
+        try {
+            statements.close();
+        }
+        finally {
+            db.close();
+        }
     }
 
     public void logOperation(Operation operation, boolean success) throws SQLException {
-        Statement st = db.createStatement();
-        String sqlStart = "INSERT INTO OPERATION ";
-        String sqlFields = "(`type`, `description`, `date`, `user_id` ";
-        String sqlValues = "VALUES ('"+operation.getType()+"'," +
-                "'"+operation.getDescription()+"'," +
-                "'"+operation.getDate()+"'," +
-                operation.getUser().getId();
+        PreparedStatement st;
         switch(operation.getType()){
-            case INTEREST: buildQueryInterest((Interest) operation,sqlFields,sqlValues);break;
-            case LOG_IN: buildQueryLogOperation((LogOperation) operation,sqlFields,sqlValues);break;
-            case LOG_OUT: buildQueryLogOperation((LogOperation) operation,sqlFields,sqlValues);break;
-            case WITHDRAW: buildQueryPayment((Payment) operation,sqlFields,sqlValues);break;
-            case PAYMENT_IN: buildQueryPayment((Payment) operation,sqlFields,sqlValues);break;
+            case INTEREST:
+            case WITHDRAW:
+            case PAYMENT_IN:
+                st = statements.prepare(INSERT_PAYMENT_OPERATION, Statement.RETURN_GENERATED_KEYS);
+                bindPayment((Payment) operation, st, 5);
+                break;
+            default:
+                st = statements.prepare(INSERT_LOG_OPERATION, Statement.RETURN_GENERATED_KEYS);
+        }
+        bindOperation(operation, st, 1);
+        st.executeUpdate();
+        try (ResultSet rs = st.getGeneratedKeys()) {
+            if (rs.next()) {
+                operation.setId(rs.getInt(1));
+                PreparedStatement history = statements.prepare(INSERT_HISTORY);
+                history.setInt(1, operation.getId());
+                history.setString(2, String.valueOf(success));
+                history.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Ids of the whole batch are reserved up front, so both tables are filled
+     * with one executeBatch each instead of reading generated keys row by row.
+     * Writers are serialised by PooledDAO; a writer from another process would
+     * make the batch fail on the primary key, never interleave with it.
+     */
+    public void logOperations(List<Operation> operations, boolean[] success) throws SQLException {
+        if (operations.isEmpty()) return;
+        inTransaction(() -> {
+            insertOperations(operations, success);
+            return null;
+        });
+    }
+
+    /**
+     * The (run id, account id) claims make a credit idempotent: an account
+     * already claimed by this run is neither credited nor journalled again.
+     * Claims, credits, journal and the new watermark commit together.
+     */
+    public boolean[] creditInterest(String runId, int partitionFrom, List<Interest> credits, int watermark) throws SQLException {
+        return inTransaction(() -> {
+            boolean[] applied = new boolean[credits.size()];
+            List<Interest> claimed = new ArrayList<>(credits.size());
+            if (!credits.isEmpty()) {
+                PreparedStatement claim = statements.prepareBatch(CLAIM_INTEREST_CREDIT);
+                int[] inserted;
+                try {
+                    for (Interest interest : credits) {
+                        claim.setString(1, runId);
+                        claim.setInt(2, interest.getAccount().getId());
+                        claim.addBatch();
+                    }
+                    inserted = claim.executeBatch();
+                }
+                catch (SQLException | RuntimeException e) {
+                    claim.clearBatch();
+                    throw e;
+                }
+                for (int i = 0; i < inserted.length; i++) {
+                    if (inserted[i] >= 1) claimed.add(credits.get(i));
+                }
+            }
+            if (!claimed.isEmpty()) {
+                PreparedStatement credit = statements.prepareBatch(CREDIT_ACCOUNT);
+                int[] updated;
+                try {
+                    for (Interest interest : claimed) {
+                        credit.setLong(1, interest.getAmmount());
+                        credit.setInt(2, interest.getAccount().getId());
+                        credit.addBatch();
+                    }
+                    updated = credit.executeBatch();
+                }
+                catch (SQLException | RuntimeException e) {
+                    credit.clearBatch();
+                    throw e;
+                }
+                boolean[] success = new boolean[claimed.size()];
+                for (int i = 0; i < updated.length; i++) {
+                    success[i] = updated[i] >= 1 || updated[i] == Statement.SUCCESS_NO_INFO;
+                }
+                insertOperations(claimed, success);
+                for (int i = 0, c = 0; i < credits.size() && c < claimed.size(); i++) {
+                    if (credits.get(i) == claimed.get(c)) applied[i] = success[c++];
+                }
+            }
+            PreparedStatement checkpoint = statements.prepare(SAVE_INTEREST_CHECKPOINT);
+            checkpoint.setString(1, runId);
+            checkpoint.setInt(2, partitionFrom);
+            checkpoint.setInt(3, watermark);
+            checkpoint.executeUpdate();
+            return applied;
+        });
+    }
+
+    public boolean isInterestRunFinished(String runId) throws SQLException {
+        PreparedStatement st = statements.prepare(FIND_FINISHED_INTEREST_RUN);
+        st.setString(1, runId);
+        try (ResultSet rs = st.executeQuery()) {
+            return rs.next();
+        }
+    }
+
+    public void finishInterestRun(String runId) throws SQLException {
+        inTransaction(() -> {
+            PreparedStatement finish = statements.prepare(FINISH_INTEREST_RUN);
+            finish.setString(1, runId);
+            finish.setString(2, new Date().toString());
+            finish.executeUpdate();
+            for (String sql : new String[] { DELETE_INTEREST_CHECKPOINTS, DELETE_INTEREST_CREDITS }) {
+                PreparedStatement delete = statements.prepare(sql);
+                delete.setString(1, runId);
+                delete.executeUpdate();
+            }
+            return null;
+        });
+    }
+
+    private void insertOperations(List<? extends Operation> operations, boolean[] success) throws SQLException {
+        PreparedStatement insert = statements.prepareBatch(INSERT_OPERATION_WITH_ID);
+        PreparedStatement history = statements.prepareBatch(INSERT_HISTORY);
+        try {
+            int firstId = reserveOperationIds();
+            for (int i = 0; i < operations.size(); i++) {
+                addOperationToBatch(operations.get(i), firstId + i, success[i], insert, history);
+            }
+            insert.executeBatch();
+            history.executeBatch();
+            for (int i = 0; i < operations.size(); i++) {
+                operations.get(i).setId(firstId + i);
+            }
         }
-        sqlFields+=") ";
-        sqlValues+=") ";
-        st.executeUpdate(sqlStart+sqlFields+sqlValues);
-        ResultSet rs = st.getGeneratedKeys();
-        if (rs.next()) {
-            int generatedkey=rs.getInt(1);
-            Statement st2 = db.createStatement();
-            String sql ="INSERT INTO History (`operation_id`,`succesfull`) " +
-                    "VALUES ("+rs.getInt(1)+", '"+success+"')";
-            st2.execute(sql);
-            st2.close();
+        catch (SQLException | RuntimeException e) {
+            insert.clearBatch();
+            history.clearBatch();
+            throw e;
         }
-        st.close();
+    }
 
+    private interface Work<T> {
+        T run() throws SQLException;
     }
 
-    private void buildQueryPayment(Payment operation, String sqlFields, String sqlValues) {
-        sqlFields+= ", `ammount`,`account_id`) ";
-        sqlValues+= ", "+operation.getAmmount()+","+
-                    operation.getAccount().getId()+")";
+    private <T> T inTransaction(Work<T> work) throws SQLException {
+        boolean autoCommit = db.getAutoCommit();
+        db.setAutoCommit(false);
+        try {
+            T result = work.run();
+            db.commit();
+            return result;
+        }
+        catch (SQLException | RuntimeException e) {
+            db.rollback();
+            throw e;
+        }
+        finally {
+            db.setAutoCommit(autoCommit);
+        }
+    }
+
+    private int reserveOperationIds() throws SQLException {
+        PreparedStatement st = statements.prepare(LAST_OPERATION_ID);
+        try (ResultSet rs = st.executeQuery()) {
+            rs.next();
+            return rs.getInt(1) + 1;
+        }
+    }
+
+    private void addOperationToBatch(Operation operation, int id, boolean success,
+                                     PreparedStatement insert, PreparedStatement history) throws SQLException {
+        insert.setInt(1, id);
+        bindOperation(operation, insert, 2);
+        if (operation instanceof Payment) {
+            bindPayment((Payment) operation, insert, 6);
+        }
+        else {
+            insert.setNull(6, Types.INTEGER);
+            insert.setNull(7, Types.INTEGER);
+        }
+        insert.addBatch();
+        history.setInt(1, id);
+        history.setString(2, String.valueOf(success));
+        history.addBatch();
+    }
+
+    public boolean transfer(Payment withdraw, Payment payment) throws SQLException {
+        return inTransaction(() -> {
+            PreparedStatement debit = statements.prepare(DEBIT_ACCOUNT);
+            debit.setLong(1, withdraw.getAmmount());
+            debit.setInt(2, withdraw.getAccount().getId());
+            debit.setLong(3, withdraw.getAmmount());
+            boolean success = debit.executeUpdate() == 1;
+            if (success) {
+                PreparedStatement credit = statements.prepare(CREDIT_ACCOUNT);
+                credit.setLong(1, payment.getAmmount());
+                credit.setInt(2, payment.getAccount().getId());
+                success = credit.executeUpdate() == 1;
+                if (!success) db.rollback();
+            }
+            logOperation(withdraw, success);
+            logOperation(payment, success);
+            return success;
+        });
     }
 
-    private void buildQueryInterest(Interest operation, String sqlFields, String sqlValues) {
-        sqlFields+= ", `ammount`,`account_id`) ";
-        sqlValues+= ", "+operation.getAmmount()+","+
-                operation.getAccount().getId()+")";
+    private void bindOperation(Operation operation, PreparedStatement st, int first) throws SQLException {
+        st.setString(first, operation.getType().toString());
+        st.setString(first + 1, operation.getDescription());
+        st.setString(first + 2, operation.getDate().toString());
+        if (operation.getUser() != null) st.setInt(first + 3, operation.getUser().getId());
+        else st.setNull(first + 3, Types.INTEGER);
     }
 
-    private void buildQueryLogOperation(LogOperation operation, String sqlFields, String sqlValues) {
-        sqlFields+= " )";
-        sqlValues+= " )";
+    private void bindPayment(Payment operation, PreparedStatement st, int first) throws SQLException {
+        st.setLong(first, operation.getAmmount());
+        if (operation.getAccount() != null) st.setInt(first + 1, operation.getAccount().getId());
+        else st.setNull(first + 1, Types.INTEGER);
     }
 
 
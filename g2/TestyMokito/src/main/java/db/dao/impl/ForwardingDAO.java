@@ -0,0 +1,99 @@
+package db.dao.impl;
+
+import db.dao.DAO;
+import model.Account;
+import model.Operation;
+import model.Password;
+import model.User;
+import model.operations.Interest;
+import model.operations.Payment;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Base of DAO decorators, every call goes to the wrapped DAO unless overridden.
+ */
+public abstract class ForwardingDAO implements DAO {
+    protected final DAO delegate;
+
+    protected ForwardingDAO(DAO delegate) {
+        this.delegate = delegate;
+    }
+
+    public User findUserByName(String userName) throws SQLException {
+        return delegate.findUserByName(userName);
+    }
+
+    public List<User> findUsers() throws SQLException {
+        return delegate.findUsers();
+    }
+
+    public Password findPasswordForUser(User user) throws SQLException {
+        return delegate.findPasswordForUser(user);
+    }
+
+    public Account findAccountById(int accountId) throws SQLException {
+        return delegate.findAccountById(accountId);
+    }
+
+    public List<Account> findAccounts(int afterAccountId, int maxAccountId, int limit) throws SQLException {
+        return delegate.findAccounts(afterAccountId, maxAccountId, limit);
+    }
+
+    public int findMaxAccountId() throws SQLException {
+        return delegate.findMaxAccountId();
+    }
+
+    public boolean updateAccountState(Account account) throws SQLException {
+        return delegate.updateAccountState(account);
+    }
+
+    public boolean[] updateAccountStates(List<Account> accounts) throws SQLException {
+        return delegate.updateAccountStates(accounts);
+    }
+
+    public boolean setUserPassword(User user, String passwd, String oldPass) throws SQLException {
+        return delegate.setUserPassword(user, passwd, oldPass);
+    }
+
+    public void close() throws SQLException {
+        delegate.close();
+    }
+
+    public void logOperation(Operation operation, boolean success) throws SQLException {
+        delegate.logOperation(operation, success);
+    }
+
+    public void logOperations(List<Operation> operations, boolean[] success) throws SQLException {
+        delegate.logOperations(operations, success);
+    }
+
+    public boolean transfer(Payment withdraw, Payment payment) throws SQLException {
+        return delegate.transfer(withdraw, payment);
+    }
+
+    public int findInterestWatermark(String runId, int partitionFrom) throws SQLException {
+        return delegate.findInterestWatermark(runId, partitionFrom);
+    }
+
+    public boolean[] creditInterest(String runId, int partitionFrom, List<Interest> credits, int watermark) throws SQLException {
+        return delegate.creditInterest(runId, partitionFrom, credits, watermark);
+    }
+
+    public boolean isInterestRunFinished(String runId) throws SQLException {
+        return delegate.isInterestRunFinished(runId);
+    }
+
+    public void finishInterestRun(String runId) throws SQLException {
+        delegate.finishInterestRun(runId);
+    }
+
+    public long findLedgerSnapshot() throws SQLException {
+        return delegate.findLedgerSnapshot();
+    }
+
+    public void saveLedgerSnapshot(List<Account> accounts, long sequence) throws SQLException {
+        delegate.saveLedgerSnapshot(accounts, sequence);
+    }
+}
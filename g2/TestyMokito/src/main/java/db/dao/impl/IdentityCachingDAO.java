@@ -0,0 +1,91 @@
+package db.dao.impl;
+
+import db.dao.DAO;
+import model.User;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves findUserByName from an in-memory snapshot of all users, loaded on
+ * first use. The snapshot is never modified, a new one replaces it after
+ * {@link #invalidate()}. Returned users and their roles are shared and must
+ * not be modified by callers.
+ */
+public class IdentityCachingDAO extends ForwardingDAO {
+
+    private static class Snapshot {
+        final long version;
+        final Map<String, User> users;
+
+        Snapshot(long version, Map<String, User> users) {
+            this.version = version;
+            this.users = users;
+        }
+    }
+
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot snapshot;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+
+    public IdentityCachingDAO(DAO delegate) {
+        super(delegate);
+    }
+
+    /**
+     * A name missing from the snapshot is looked up in the database, a user
+     * added since the last load is found without invalidating the cache.
+     */
+    @Override
+    public User findUserByName(String userName) throws SQLException {
+        User user = current().users.get(userName);
+        if (user != null) {
+            hits.incrementAndGet();
+            return user;
+        }
+        return delegate.findUserByName(userName);
+    }
+
+    /**
+     * Drops the snapshot, the next lookup loads all users again.
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getLoads() {
+        return loads.get();
+    }
+
+    private Snapshot current() throws SQLException {
+        Snapshot current = snapshot;
+        long wanted = version.get();
+        if (current != null && current.version == wanted) return current;
+        synchronized (this) {
+            current = snapshot;
+            if (current != null && current.version == wanted) return current;
+            List<User> users = delegate.findUsers();
+            Map<String, User> byName = new HashMap<>(users.size() * 2);
+            for (User user : users) {
+                byName.put(user.getName(), user);
+            }
+            loads.incrementAndGet();
+            current = new Snapshot(wanted, Collections.unmodifiableMap(byName));
+            snapshot = current;
+            return current;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package db.dao.impl;
+
+import db.dao.DAO;
+import model.Account;
+import model.Operation;
+import model.Password;
+import model.User;
+import model.operations.Interest;
+import model.operations.Payment;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * DAO which takes a pooled connection for every operation. Reads run in
+ * parallel on separate connections, writes are serialised here so that
+ * concurrent writers queue in the JVM instead of failing with SQLITE_BUSY.
+ */
+public class PooledDAO implements DAO {
+    private final ConnectionPool pool;
+    private final ReentrantLock writeLock = new ReentrantLock(true);
+
+    interface Call<T> {
+        T call(DAOImpl dao) throws SQLException;
+    }
+
+    PooledDAO(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    <T> T read(Call<T> call) throws SQLException {
+        DAOImpl dao = pool.borrow();
+        try {
+            return call.call(dao);
+        }
+        finally {
+            pool.release(dao);
+        }
+    }
+
+    <T> T write(Call<T> call) throws SQLException {
+        writeLock.lock();
+        try {
+            return read(call);
+        }
+        finally {
+            writeLock.unlock();
+        }
+    }
+
+    public User findUserByName(String userName) throws SQLException {
+        return read(dao -> dao.findUserByName(userName));
+    }
+
+    public List<User> findUsers() throws SQLException {
+        return read(DAOImpl::findUsers);
+    }
+
+    public Password findPasswordForUser(User user) throws SQLException {
+        return read(dao -> dao.findPasswordForUser(user));
+    }
+
+    public Account findAccountById(int accountId) throws SQLException {
+        return read(dao -> dao.findAccountById(accountId));
+    }
+
+    public List<Account> findAccounts(int afterAccountId, int maxAccountId, int limit) throws SQLException {
+        return read(dao -> dao.findAccounts(afterAccountId, maxAccountId, limit));
+    }
+
+    public int findMaxAccountId() throws SQLException {
+        return read(DAOImpl::findMaxAccountId);
+    }
+
+    public boolean updateAccountState(Account account) throws SQLException {
+        return write(dao -> dao.updateAccountState(account));
+    }
+
+    public boolean[] updateAccountStates(List<Account> accounts) throws SQLException {
+        return write(dao -> dao.updateAccountStates(accounts));
+    }
+
+    public boolean setUserPassword(User user, String passwd, String oldPass) throws SQLException {
+        return write(dao -> dao.setUserPassword(user, passwd, oldPass));
+    }
+
+    public void logOperation(Operation operation, boolean success) throws SQLException {
+        write(dao -> {
+            dao.logOperation(operation, success);
+            return null;
+        });
+    }
+
+    public void logOperations(List<Operation> operations, boolean[] success) throws SQLException {
+        write(dao -> {
+            dao.logOperations(operations, success);
+            return null;
+        });
+    }
+
+    public boolean transfer(Payment withdraw, Payment payment) throws SQLException {
+        return write(dao -> dao.transfer(withdraw, payment));
+    }
+
+    public int findInterestWatermark(String runId, int partitionFrom) throws SQLException {
+        return read(dao -> dao.findInterestWatermark(runId, partitionFrom));
+    }
+
+    public boolean[] creditInterest(String runId, int partitionFrom, List<Interest> credits, int watermark) throws SQLException {
+        return write(dao -> dao.creditInterest(runId, partitionFrom, credits, watermark));
+    }
+
+    public boolean isInterestRunFinished(String runId) throws SQLException {
+        return read(dao -> dao.isInterestRunFinished(runId));
+    }
+
+    public void finishInterestRun(String runId) throws SQLException {
+        write(dao -> {
+            dao.finishInterestRun(runId);
+            return null;
+        });
+    }
+
+    public long findLedgerSnapshot() throws SQLException {
+        return read(DAOImpl::findLedgerSnapshot);
+    }
+
+    public void saveLedgerSnapshot(List<Account> accounts, long sequence) throws SQLException {
+        write(dao -> {
+            dao.saveLedgerSnapshot(accounts, sequence);
+            return null;
+        });
+    }
+
+    public int getOpenConnections() {
+        return pool.getOpenConnections();
+    }
+
+    public int getIdleConnections() {
+        return pool.getIdleConnections();
+    }
+
+    public void close() throws SQLException {
+        pool.close();
+    }
+}
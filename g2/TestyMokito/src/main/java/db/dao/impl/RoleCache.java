@@ -0,0 +1,33 @@
+package db.dao.impl;
+
+import model.Role;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interns Role objects: every row describing the same role yields the same
+ * instance. A role whose row changed gets a new instance, users read earlier
+ * keep the old one. Roles handed out here must not be modified.
+ */
+class RoleCache {
+    private final ConcurrentMap<Integer, Role> roles = new ConcurrentHashMap<>();
+
+    Role intern(int id, String name, long permissions, boolean ownershipChecked) {
+        Role role = roles.get(id);
+        if (role != null && Objects.equals(role.getName(), name) && role.getPermissions() == permissions
+                && role.isOwnershipChecked() == ownershipChecked) return role;
+        Role fresh = new Role();
+        fresh.setId(id);
+        fresh.setName(name);
+        fresh.setPermissions(permissions);
+        fresh.setOwnershipChecked(ownershipChecked);
+        roles.put(id, fresh);
+        return fresh;
+    }
+
+    int size() {
+        return roles.size();
+    }
+}
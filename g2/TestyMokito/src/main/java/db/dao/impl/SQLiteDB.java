@@ -16,10 +16,44 @@ public class SQLiteDB {
     }
 
     public static DAO createDAO(String url) throws ClassNotFoundException, SQLException {
+        return createDAO(url, new PoolConfig());
+    }
+
+    public static DAO createDAO(String url, PoolConfig config) throws ClassNotFoundException, SQLException {
+        return createDAO(url, config, ConnectionProfile.durable());
+    }
+
+    public static DAO createDAO(String url, PoolConfig config, ConnectionProfile profile) throws ClassNotFoundException, SQLException {
         Class.forName("org.sqlite.JDBC");
+        PooledDAO dao = new PooledDAO(new ConnectionPool(url, config, profile));
+        try {
+            dao.write(d -> {
+                SchemaUpgrade.apply(d.db);
+                return null;
+            });
+        } catch (SQLException | RuntimeException e) {
+            // nobody gets the pool, its connections and maintenance thread must not outlive the call
+            try {
+                dao.close();
+            } catch (SQLException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        return dao;
+    }
+
+    static DAOImpl connect(String url, ConnectionProfile profile) throws SQLException {
         Connection conn = DriverManager.getConnection(url);
+        try {
+            profile.apply(conn);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
         DAOImpl dao = new DAOImpl();
         dao.db = conn;
+        dao.statements = new StatementCache(conn);
         return dao;
     }
 
@@ -30,9 +64,10 @@ public class SQLiteDB {
 
     public static void initializeDB(String connectionString) throws ClassNotFoundException, SQLException {
         Class.forName("org.sqlite.JDBC");
-        Connection conn = DriverManager.getConnection("jdbc:sqlite:./bank.db");
+        Connection conn = DriverManager.getConnection(connectionString);
         String sql;
         Statement st = conn.createStatement();
+        st.execute("PRAGMA journal_mode = WAL");
 
         sql = "CREATE TABLE `Role` (" +
                 " `id`	INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT, " +
@@ -97,13 +132,15 @@ public class SQLiteDB {
         PreparedStatement pst = conn.prepareStatement(sql);
 
         for (OperationType type : OperationType.values()) {
-            pst.setString(type.getId(),type.name());
+            pst.setInt(1, type.getId());
+            pst.setString(2, type.name());
             pst.execute();
         }
         pst.close();
 
 
         st.close();
+        SchemaUpgrade.apply(conn);
         conn.close();
     }
 }
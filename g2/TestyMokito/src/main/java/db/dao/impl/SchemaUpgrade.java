@@ -0,0 +1,153 @@
+package db.dao.impl;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Schema changes made after the initial bank.db layout. PRAGMA user_version
+ * holds the number of steps already applied to a database file.
+ */
+class SchemaUpgrade {
+
+    /**
+     * Stands for a CREATE TABLE of Operation_new made from the definition of
+     * Operation in the file with only the ammount column changed to INTEGER,
+     * so NOT NULL constraints and foreign keys of the file are kept.
+     */
+    private static final String CREATE_OPERATION_NEW = "CREATE TABLE `Operation_new` AS Operation";
+    /**
+     * Stands for a CREATE TABLE of Operation_new made from the definition of
+     * Operation in the file without NOT NULL on user_id.
+     */
+    private static final String CREATE_OPERATION_NULLABLE_USER = "CREATE TABLE `Operation_new` AS Operation WITH NULL user_id";
+    private static final Pattern OPERATION_TABLE = Pattern.compile("^CREATE\\s+TABLE\\s+[`\"\\[]?Operation[`\"\\]]?",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern AMMOUNT_COLUMN = Pattern.compile("([(,]\\s*[`\"\\[]?ammount[`\"\\]]?\\s+)\\w+",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern USER_NOT_NULL = Pattern.compile("([(,]\\s*[`\"\\[]?user_id[`\"\\]]?\\s+\\w+)\\s+NOT\\s+NULL",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final String[][] STEPS = {
+            // 1: checkpoints and idempotency keys of resumable interest runs
+            {
+                    "CREATE TABLE IF NOT EXISTS `InterestCheckpoint` ( " +
+                            " `run_id` TEXT NOT NULL, " +
+                            " `partition_from` INTEGER NOT NULL, " +
+                            " `watermark` INTEGER NOT NULL, " +
+                            " PRIMARY KEY(`run_id`, `partition_from`) " +
+                            ")",
+                    "CREATE TABLE IF NOT EXISTS `InterestCredit` ( " +
+                            " `run_id` TEXT NOT NULL, " +
+                            " `account_id` INTEGER NOT NULL, " +
+                            " PRIMARY KEY(`run_id`, `account_id`), " +
+                            " FOREIGN KEY(`account_id`) REFERENCES Account(id) " +
+                            ")"
+            },
+            // 2: role permissions, bit n allows the operation type with id n
+            {
+                    "ALTER TABLE `Role` ADD COLUMN `permissions` INTEGER NOT NULL DEFAULT 0",
+                    "ALTER TABLE `Role` ADD COLUMN `ownership_check` INTEGER NOT NULL DEFAULT 1",
+                    "UPDATE `Role` SET `permissions` = -1, `ownership_check` = 0 WHERE `name` IN ('Administrator', 'Admin')",
+                    "UPDATE `Role` SET `permissions` = 3 WHERE `name` = 'Klient'"
+            },
+            // 3: amounts in minor units (grosze) instead of REAL, accounts get a currency;
+            // SQLite cannot change a column type, the tables are rebuilt
+            {
+                    "CREATE TABLE `Account_new` ( " +
+                            " `id` INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            " `owner_id` INTEGER, " +
+                            " `ammount` INTEGER NOT NULL DEFAULT 0, " +
+                            " `currency` TEXT NOT NULL DEFAULT 'PLN', " +
+                            " FOREIGN KEY(`owner_id`) REFERENCES User(id) " +
+                            ")",
+                    "INSERT INTO `Account_new` (`id`, `owner_id`, `ammount`) " +
+                            "SELECT `id`, `owner_id`, CAST(ROUND(COALESCE(`ammount`, 0) * 100) AS INTEGER) FROM `Account`",
+                    "DROP TABLE `Account`",
+                    "ALTER TABLE `Account_new` RENAME TO `Account`",
+                    CREATE_OPERATION_NEW,
+                    "INSERT INTO `Operation_new` (`id`, `ammount`, `description`, `date`, `user_id`, `account_id`, `type`) " +
+                            "SELECT `id`, CAST(ROUND(`ammount` * 100) AS INTEGER), `description`, `date`, `user_id`, `account_id`, `type` " +
+                            "FROM `Operation`",
+                    "DROP TABLE `Operation`",
+                    "ALTER TABLE `Operation_new` RENAME TO `Operation`"
+            },
+            // 4: journal position included in the balances written by the in-memory ledger
+            {
+                    "CREATE TABLE IF NOT EXISTS `LedgerSnapshot` ( " +
+                            " `id` INTEGER PRIMARY KEY, " +
+                            " `seq` INTEGER NOT NULL " +
+                            ")"
+            },
+            // 5: finished interest runs, their checkpoints and credits are deleted
+            {
+                    "CREATE TABLE IF NOT EXISTS `InterestRun` ( " +
+                            " `run_id` TEXT NOT NULL PRIMARY KEY, " +
+                            " `finished` TEXT NOT NULL " +
+                            ")"
+            },
+            // 6: failed logins of unknown users have no user, bank.db declared user_id NOT NULL
+            {
+                    CREATE_OPERATION_NULLABLE_USER,
+                    "INSERT INTO `Operation_new` SELECT * FROM `Operation`",
+                    "DROP TABLE `Operation`",
+                    "ALTER TABLE `Operation_new` RENAME TO `Operation`"
+            },
+    };
+
+    static void apply(Connection conn) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        try (Statement st = conn.createStatement()) {
+            int version;
+            try (ResultSet rs = st.executeQuery("PRAGMA user_version")) {
+                version = rs.next() ? rs.getInt(1) : 0;
+            }
+            conn.setAutoCommit(false);
+            for (int step = version; step < STEPS.length; step++) {
+                try {
+                    for (String sql : STEPS[step]) {
+                        st.executeUpdate(statement(st, sql));
+                    }
+                    st.executeUpdate("PRAGMA user_version = " + (step + 1));
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            }
+        }
+        finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static String statement(Statement st, String sql) throws SQLException {
+        if (sql.equals(CREATE_OPERATION_NEW)) {
+            String columns = operationColumns(st);
+            Matcher ammount = AMMOUNT_COLUMN.matcher(columns);
+            if (!ammount.find()) throw new SQLException("No ammount column in Operation: " + columns);
+            return "CREATE TABLE `Operation_new`" + ammount.replaceFirst("$1INTEGER");
+        }
+        if (sql.equals(CREATE_OPERATION_NULLABLE_USER)) {
+            return "CREATE TABLE `Operation_new`" + USER_NOT_NULL.matcher(operationColumns(st)).replaceFirst("$1");
+        }
+        return sql;
+    }
+
+    /**
+     * Definition of Operation in the file after its table name.
+     */
+    private static String operationColumns(Statement st) throws SQLException {
+        String sql;
+        try (ResultSet rs = st.executeQuery("SELECT sql FROM sqlite_master WHERE type = 'table' AND name = 'Operation'")) {
+            if (!rs.next()) throw new SQLException("No Operation table to upgrade");
+            sql = rs.getString(1);
+        }
+        Matcher table = OPERATION_TABLE.matcher(sql);
+        if (!table.lookingAt()) throw new SQLException("Unexpected definition of Operation: " + sql);
+        return sql.substring(table.end());
+    }
+}
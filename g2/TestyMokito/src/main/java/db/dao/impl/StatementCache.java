@@ -0,0 +1,114 @@
+package db.dao.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prepared statements of one connection, keyed by their SQL text and
+ * whether they return generated keys.
+ * Every query shape is parsed and planned by SQLite only once, later calls
+ * reuse the already prepared statement.
+ * <p>
+ * Statements for JDBC batches are kept apart from those for single calls,
+ * so a single call never runs on a statement which has been (or is being)
+ * filled with a batch.
+ */
+class StatementCache {
+    private static final class Key {
+        final String sql;
+        final int autoGeneratedKeys;
+
+        Key(String sql, int autoGeneratedKeys) {
+            this.sql = sql;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return autoGeneratedKeys == other.autoGeneratedKeys && sql.equals(other.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * sql.hashCode() + autoGeneratedKeys;
+        }
+    }
+
+    private final Connection connection;
+    private final Map<Key, PreparedStatement> statements = new HashMap<>();
+    private final Map<Key, PreparedStatement> batches = new HashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private boolean closed;
+
+    StatementCache(Connection connection) {
+        this.connection = connection;
+    }
+
+    synchronized PreparedStatement prepare(String sql) throws SQLException {
+        return prepare(sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    synchronized PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        return prepare(statements, sql, autoGeneratedKeys);
+    }
+
+    /**
+     * Statement to be filled with addBatch, never the one returned by prepare.
+     */
+    synchronized PreparedStatement prepareBatch(String sql) throws SQLException {
+        return prepare(batches, sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    private PreparedStatement prepare(Map<Key, PreparedStatement> cache, String sql, int autoGeneratedKeys)
+            throws SQLException {
+        if (closed) throw new SQLException("Statement cache is closed");
+        Key key = new Key(sql, autoGeneratedKeys);
+        PreparedStatement st = cache.get(key);
+        if (st != null) {
+            hits.incrementAndGet();
+            return st;
+        }
+        misses.incrementAndGet();
+        st = connection.prepareStatement(sql, autoGeneratedKeys);
+        cache.put(key, st);
+        return st;
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Closes the prepared statements, later calls to prepare fail.
+     */
+    synchronized void close() throws SQLException {
+        closed = true;
+        SQLException failure = close(statements, null);
+        failure = close(batches, failure);
+        if (failure != null) throw failure;
+    }
+
+    private static SQLException close(Map<Key, PreparedStatement> cache, SQLException failure) {
+        for (PreparedStatement st : cache.values()) {
+            try {
+                st.close();
+            } catch (SQLException e) {
+                failure = e;
+            }
+        }
+        cache.clear();
+        return failure;
+    }
+}
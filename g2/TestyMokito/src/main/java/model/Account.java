@@ -1,21 +1,25 @@
 package model;
 
+import java.util.Currency;
+
 /**
  * Created by Krzysztof Podlaski on 04.03.2018.
+ * Balance and payments are in minor units of the account's currency, see {@link Money}.
  */
 public class Account {
     private int id;
-    private double ammount;
+    private long balance;
+    private Currency currency = Money.PLN;
     private User owner;
 
-    public boolean income(double ammount){
-        this.ammount+=ammount;
+    public boolean income(long ammount){
+        this.balance = Money.add(this.balance, ammount);
         return true;
     }
 
-    public boolean outcome(double ammount){
-        if (this.ammount<ammount) return false;
-        this.ammount-=ammount;
+    public boolean outcome(long ammount){
+        if (this.balance<ammount) return false;
+        this.balance = Money.subtract(this.balance, ammount);
         return true;
     }
 
@@ -27,12 +31,24 @@ public class Account {
         this.id = id;
     }
 
-    public double getAmmount() {
-        return ammount;
+    public long getBalance() {
+        return balance;
+    }
+
+    public void setBalance(long balance) {
+        this.balance = balance;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(Currency currency) {
+        this.currency = currency;
     }
 
-    public void setAmmount(double ammount) {
-        this.ammount = ammount;
+    public Money getMoney() {
+        return Money.of(balance, currency);
     }
 
     public User getOwner() {
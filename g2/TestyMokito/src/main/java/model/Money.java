@@ -0,0 +1,156 @@
+package model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * Amount of money in minor units (grosze for PLN) of a currency. Accounts and
+ * payments keep the long value only, the static helpers work on it directly
+ * and allocate nothing; a Money object is needed for display and parsing.
+ * Every operation fails with ArithmeticException on overflow.
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final Currency PLN = Currency.getInstance("PLN");
+
+    /** Basis points in a whole, 10000 bp = 100%. */
+    public static final long BASIS = 10_000;
+
+    private final long minor;
+    private final Currency currency;
+
+    private Money(long minor, Currency currency) {
+        this.minor = minor;
+        this.currency = currency;
+    }
+
+    public static Money of(long minor, Currency currency) {
+        if (currency == null) throw new IllegalArgumentException("currency");
+        return new Money(minor, currency);
+    }
+
+    public static Money pln(long minor) {
+        return new Money(minor, PLN);
+    }
+
+    /**
+     * Parses an amount in major units, e.g. "12.34". More fraction digits
+     * than the currency has are rejected.
+     */
+    public static Money parse(String major, Currency currency) {
+        return of(toMinor(new BigDecimal(major.trim()), currency), currency);
+    }
+
+    /**
+     * Converts an amount in major units, rounding half even to the nearest
+     * minor unit. Meant for legacy data and user input, not for arithmetic.
+     */
+    public static long toMinor(double major, Currency currency) {
+        return BigDecimal.valueOf(major).movePointRight(digits(currency))
+                .setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    private static long toMinor(BigDecimal major, Currency currency) {
+        return major.movePointRight(digits(currency)).setScale(0, RoundingMode.UNNECESSARY).longValueExact();
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * amount * basisPoints / 10000 rounded half even, the rounding used for
+     * interest.
+     */
+    public static long percent(long amount, long basisPoints) {
+        long product = Math.multiplyExact(amount, basisPoints);
+        long quotient = Math.floorDiv(product, BASIS);
+        long twice = 2 * Math.floorMod(product, BASIS);
+        if (twice > BASIS || (twice == BASIS && (quotient & 1) != 0)) quotient++;
+        return quotient;
+    }
+
+    /**
+     * Major units with the currency's fraction digits, e.g. "-12.05".
+     */
+    public static String format(long minor, Currency currency) {
+        int digits = digits(currency);
+        StringBuilder sb = new StringBuilder(24);
+        if (minor < 0) sb.append('-');
+        String abs = minor == Long.MIN_VALUE ? "9223372036854775808" : Long.toString(Math.abs(minor));
+        int split = abs.length() - digits;
+        if (digits == 0) {
+            sb.append(abs);
+        } else if (split <= 0) {
+            sb.append("0.");
+            for (int i = split; i < 0; i++) {
+                sb.append('0');
+            }
+            sb.append(abs);
+        } else {
+            sb.append(abs, 0, split).append('.').append(abs, split, abs.length());
+        }
+        return sb.toString();
+    }
+
+    private static int digits(Currency currency) {
+        return Math.max(0, currency.getDefaultFractionDigits());
+    }
+
+    public long getMinor() {
+        return minor;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return new Money(add(minor, other.minor), currency);
+    }
+
+    public Money minus(Money other) {
+        requireSameCurrency(other);
+        return new Money(subtract(minor, other.minor), currency);
+    }
+
+    public boolean isNegative() {
+        return minor < 0;
+    }
+
+    private void requireSameCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException(currency + " != " + other.currency);
+        }
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        requireSameCurrency(other);
+        return Long.compare(minor, other.minor);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Money)) return false;
+        Money other = (Money) o;
+        return minor == other.minor && currency.equals(other.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(minor) + currency.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return format(minor, currency) + " " + currency.getCurrencyCode();
+    }
+}
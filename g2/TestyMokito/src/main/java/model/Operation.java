@@ -21,6 +21,14 @@ public abstract class Operation {
         this.type=operationType;
     }
 
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
     public OperationType getType() {
         return type;
     }
@@ -1,11 +1,15 @@
 package model;
 
+import model.operations.OperationType;
+
 /**
  * Created by Krzysztof Podlaski on 04.03.2018.
  */
 public class Role {
     private int id;
     private String name;
+    private long permissions;
+    private boolean ownershipChecked = true;
 
     public int getId() {
         return id;
@@ -22,4 +26,30 @@ public class Role {
     public void setName(String name) {
         this.name = name;
     }
+
+    /**
+     * Mask of the operation types this role may invoke, see {@link OperationType#mask()}.
+     */
+    public long getPermissions() {
+        return permissions;
+    }
+
+    public void setPermissions(long permissions) {
+        this.permissions = permissions;
+    }
+
+    /**
+     * Whether withdrawals are allowed only by the account owner.
+     */
+    public boolean isOwnershipChecked() {
+        return ownershipChecked;
+    }
+
+    public void setOwnershipChecked(boolean ownershipChecked) {
+        this.ownershipChecked = ownershipChecked;
+    }
+
+    public boolean permits(OperationType type) {
+        return (permissions & type.mask()) != 0;
+    }
 }
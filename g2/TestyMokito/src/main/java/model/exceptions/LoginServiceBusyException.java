@@ -0,0 +1,11 @@
+package model.exceptions;
+
+/**
+ * The password could not be checked because the hashing threads are saturated,
+ * nothing is known about the credentials.
+ */
+public class LoginServiceBusyException extends UserUnnkownOrBadPasswordException {
+    public LoginServiceBusyException(String msg){
+        super(msg);
+    }
+}
@@ -0,0 +1,11 @@
+package model.exceptions;
+
+/**
+ * Login refused without checking the password, the user name or source has
+ * failed too often recently.
+ */
+public class LoginThrottledException extends UserUnnkownOrBadPasswordException {
+    public LoginThrottledException(String msg){
+        super(msg);
+    }
+}
@@ -17,4 +17,25 @@ public enum OperationType {
 
     public int getId(){return id;}
 
+    /**
+     * Bit of this type in a permission mask.
+     */
+    public long mask(){return 1L << id;}
+
+    /**
+     * @return type with the given id, null when there is none
+     */
+    public static OperationType byId(int id){
+        for (OperationType type : values()) {
+            if (type.id == id) return type;
+        }
+        return null;
+    }
+
+    public static long maskOf(OperationType... types){
+        long mask = 0;
+        for (OperationType type : types) mask |= type.mask();
+        return mask;
+    }
+
 }
@@ -9,16 +9,19 @@ import model.User;
  */
 public abstract class Payment extends Operation{
 
-    private double ammount;
+    private long ammount;
     private Account account;
 
-    public Payment(User user, double ammount, String description, Account account, OperationType operationType) {
+    public Payment(User user, long ammount, String description, Account account, OperationType operationType) {
         super(user, description, operationType);
         this.ammount = ammount;
         this.account=account;
     }
 
-    public double getAmmount() {
+    /**
+     * @return amount in minor units of the account's currency
+     */
+    public long getAmmount() {
         return ammount;
     }
 
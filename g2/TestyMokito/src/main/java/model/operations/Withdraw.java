@@ -8,7 +8,7 @@ import model.User;
  */
 public class Withdraw extends Payment{
 
-    public Withdraw(User user, double ammount, String description, Account account) {
+    public Withdraw(User user, long ammount, String description, Account account) {
         super(user, ammount, description, account, OperationType.WITHDRAW);
     }
 }
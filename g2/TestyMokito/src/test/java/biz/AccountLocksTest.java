@@ -0,0 +1,102 @@
+package biz;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountLocksTest {
+
+    @Test
+    void stripeCountIsRoundedUpToPowerOfTwo() {
+        // GIVEN
+        AccountLocks target = new AccountLocks(10);
+
+        // WHEN
+        int stripes = target.getStripeCount();
+
+        // THEN
+        assertEquals(16, stripes);
+        for (int id = 0; id < 1000; id++) {
+            assertTrue(target.stripeFor(id) >= 0 && target.stripeFor(id) < 16);
+        }
+    }
+
+    @Test
+    void sameStripeIsLockedOnlyOnce() {
+        // GIVEN
+        AccountLocks target = new AccountLocks(1);
+
+        // WHEN
+        try (AccountLocks.Held held = target.lock(1, 2)) {
+            // both accounts share the only stripe
+        }
+
+        // THEN
+        assertEquals(1, target.getStats().get(0).getAcquisitions());
+        assertEquals(0, target.getStats().get(0).getContended());
+    }
+
+    @Test
+    void oppositeTransfersDoNotDeadlock() throws InterruptedException {
+        // GIVEN
+        AccountLocks target = new AccountLocks(64);
+        AtomicInteger counter = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(2);
+        Runnable forward = () -> {
+            for (int i = 0; i < 10_000; i++) {
+                try (AccountLocks.Held held = target.lock(1, 2)) {
+                    counter.incrementAndGet();
+                }
+            }
+            done.countDown();
+        };
+        Runnable backward = () -> {
+            for (int i = 0; i < 10_000; i++) {
+                try (AccountLocks.Held held = target.lock(2, 1)) {
+                    counter.incrementAndGet();
+                }
+            }
+            done.countDown();
+        };
+
+        // WHEN
+        new Thread(forward).start();
+        new Thread(backward).start();
+
+        // THEN
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(20_000, counter.get());
+        long acquisitions = target.getStats().stream().mapToLong(AccountLocks.StripeStats::getAcquisitions).sum();
+        assertTrue(acquisitions >= 20_000);
+    }
+
+    @Test
+    void waitingForHeldStripeIsCountedAsContended() throws InterruptedException {
+        // GIVEN
+        AccountLocks target = new AccountLocks(1);
+        CountDownLatch started = new CountDownLatch(1);
+        Thread other;
+
+        // WHEN
+        try (AccountLocks.Held held = target.lock(7)) {
+            other = new Thread(() -> {
+                started.countDown();
+                try (AccountLocks.Held h = target.lock(7)) {
+                    // waits for the main thread
+                }
+            });
+            other.start();
+            started.await();
+            Thread.sleep(50);
+        }
+        other.join(5000);
+
+        // THEN
+        assertEquals(2, target.getStats().get(0).getAcquisitions());
+        assertEquals(1, target.getStats().get(0).getContended());
+    }
+}
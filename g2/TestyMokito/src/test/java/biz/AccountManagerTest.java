@@ -7,6 +7,8 @@ import model.Operation;
 import model.User;
 import model.exceptions.OperationIsNotAllowedException;
 import model.exceptions.UserUnnkownOrBadPasswordException;
+import model.operations.PaymentIn;
+import model.operations.Withdraw;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -61,7 +63,7 @@ class AccountManagerTest {
         User user = new User();
         Account a = mock(Account.class);
         String desc = "Wpłata";
-        double amount = 123;
+        long amount = 12300;
         when(mockDao.findAccountById(eq(accId))).thenReturn(a);
         when(mockDao.updateAccountState(eq(a))).thenReturn(true);
 
@@ -82,7 +84,7 @@ class AccountManagerTest {
         int accId = 13;
         User user = new User();
         String desc = "Wpłata";
-        double amount = 123;
+        long amount = 12300;
         when(mockDao.findAccountById(anyInt())).thenReturn(null);
 
         // WHEN
@@ -98,7 +100,7 @@ class AccountManagerTest {
         Account mockSourceAccount = mock(Account.class);
         int accId = 13;
         String desc = "Wypłata";
-        double amount = 123;
+        long amount = 12300;
         when(mockDao.findAccountById(eq(accId))).thenReturn(mockSourceAccount);
         when(mockAuthManager.canInvokeOperation(any(Operation.class), eq(mockUser))).thenReturn(true);
         when(mockDao.updateAccountState(eq(mockSourceAccount))).thenReturn(true);
@@ -114,13 +116,63 @@ class AccountManagerTest {
         verify(mockHistory, atLeastOnce()).logOperation(any(Operation.class), eq(true));
     }
 
+    @Test
+    void paymentOutInSession() throws SQLException, OperationIsNotAllowedException, UserUnnkownOrBadPasswordException {
+        // GIVEN
+        Account mockSourceAccount = mock(Account.class);
+        int accId = 13;
+        char[] password = "Adam".toCharArray();
+        when(mockAuthManager.logIn("Adam", password)).thenReturn(mockUser);
+        when(mockDao.findAccountById(eq(accId))).thenReturn(mockSourceAccount);
+        when(mockAuthManager.canInvokeOperation(any(Operation.class), eq(mockUser))).thenReturn(true);
+        when(mockDao.updateAccountState(eq(mockSourceAccount))).thenReturn(true);
+        String token = target.logInSession("Adam", password);
+
+        // WHEN
+        boolean first = target.paymentOutInSession(token, 10, "Wypłata", accId);
+        boolean second = target.paymentOutInSession(token, 20, "Wypłata", accId);
+
+        // THEN
+        assertTrue(first);
+        assertTrue(second);
+        assertEquals(mockUser, target.resolveSession(token));
+        verify(mockAuthManager, times(1)).logIn("Adam", password);
+        verify(mockSourceAccount, times(1)).outcome(10);
+        verify(mockSourceAccount, times(1)).outcome(20);
+    }
+
+    @Test
+    void paymentOutWithUnknownSession() throws SQLException {
+        // WHEN & THEN
+        assertThrows(OperationIsNotAllowedException.class, () -> target.paymentOutInSession("no-such-token", 10, "Wypłata", 13));
+        verify(mockDao, never()).findAccountById(anyInt());
+    }
+
+    @Test
+    void logOutSession() throws SQLException, UserUnnkownOrBadPasswordException {
+        // GIVEN
+        char[] password = "Adam".toCharArray();
+        when(mockAuthManager.logIn("Adam", password)).thenReturn(mockUser);
+        when(mockAuthManager.logOut(mockUser)).thenReturn(true);
+        String token = target.logInSession("Adam", password);
+
+        // WHEN
+        boolean result = target.logOutSession(token);
+
+        // THEN
+        assertTrue(result);
+        assertNull(target.resolveSession(token));
+        assertFalse(target.logOutSession(token));
+        verify(mockAuthManager, times(1)).logOut(mockUser);
+    }
+
     @Test
     void unauthorizedPaymentOut() throws SQLException, OperationIsNotAllowedException {
         // GIVEN
         Account mockSourceAccount = mock(Account.class);
         int accId = 13;
         String desc = "Wypłata";
-        double amount = 123;
+        long amount = 12300;
         when(mockDao.findAccountById(eq(accId))).thenReturn(mockSourceAccount);
         when(mockAuthManager.canInvokeOperation(any(Operation.class), eq(mockUser))).thenReturn(false);
 
@@ -139,14 +191,11 @@ class AccountManagerTest {
         int sourceAccId = 13;
         int destAccId = 14;
         String desc = "Przelew";
-        double amount = 123;
+        long amount = 12300;
         when(mockDao.findAccountById(eq(sourceAccId))).thenReturn(mockSourceAccount);
         when(mockDao.findAccountById(eq(destAccId))).thenReturn(mockDestAccount);
         when(mockAuthManager.canInvokeOperation(any(Operation.class), eq(mockUser))).thenReturn(true);
-        when(mockDao.updateAccountState(eq(mockSourceAccount))).thenReturn(true);
-        when(mockDao.updateAccountState(eq(mockDestAccount))).thenReturn(true);
-        when(mockSourceAccount.outcome(amount)).thenReturn(true);
-        when(mockDestAccount.income(amount)).thenReturn(true);
+        when(mockDao.transfer(any(Withdraw.class), any(PaymentIn.class))).thenReturn(true);
 
         // WHEN
         boolean result = target.internalPayment(mockUser, amount, desc, sourceAccId, destAccId);
@@ -156,8 +205,31 @@ class AccountManagerTest {
         verify(mockSourceAccount, times(1)).outcome(amount);
         verify(mockDestAccount, times(1)).income(amount);
         verify(mockDao, times(2)).findAccountById(anyInt());
-        verify(mockDao, times(2)).updateAccountState(any(Account.class));
-        verify(mockHistory, atLeastOnce()).logOperation(any(Operation.class), eq(true));
+        verify(mockDao, times(1)).transfer(any(Withdraw.class), any(PaymentIn.class));
+        verify(mockDao, never()).updateAccountState(any(Account.class));
+    }
+
+    @Test
+    void internalPaymentInsufficientFunds() throws SQLException, OperationIsNotAllowedException {
+        // GIVEN
+        Account mockSourceAccount = mock(Account.class);
+        Account mockDestAccount = mock(Account.class);
+        int sourceAccId = 13;
+        int destAccId = 14;
+        String desc = "Przelew";
+        long amount = 12300;
+        when(mockDao.findAccountById(eq(sourceAccId))).thenReturn(mockSourceAccount);
+        when(mockDao.findAccountById(eq(destAccId))).thenReturn(mockDestAccount);
+        when(mockAuthManager.canInvokeOperation(any(Operation.class), eq(mockUser))).thenReturn(true);
+        when(mockDao.transfer(any(Withdraw.class), any(PaymentIn.class))).thenReturn(false);
+
+        // WHEN
+        boolean result = target.internalPayment(mockUser, amount, desc, sourceAccId, destAccId);
+
+        // THEN
+        assertFalse(result);
+        verify(mockSourceAccount, never()).outcome(anyLong());
+        verify(mockDestAccount, never()).income(anyLong());
     }
 
     @Test
@@ -168,7 +240,7 @@ class AccountManagerTest {
         int sourceAccId = 13;
         int destAccId = 14;
         String desc = "Przelew";
-        double amount = 123;
+        long amount = 12300;
         when(mockDao.findAccountById(eq(sourceAccId))).thenReturn(mockSourceAccount);
         when(mockDao.findAccountById(eq(destAccId))).thenReturn(mockDestAccount);
         when(mockAuthManager.canInvokeOperation(any(Operation.class), eq(mockUser))).thenReturn(false);
@@ -195,6 +267,22 @@ class AccountManagerTest {
         assertEquals(mockUser, target.getLoggedUser());
     }
 
+    @Test
+    void logInPassesSourceToThrottling() throws SQLException, UserUnnkownOrBadPasswordException {
+        // GIVEN
+        char[] password = "password".toCharArray();
+        when(mockAuthManager.logIn("user", password, "10.0.0.1")).thenReturn(mockUser);
+
+        // WHEN
+        boolean result = target.logIn("user", password, "10.0.0.1");
+        String token = target.logInSession("user", password, "10.0.0.1");
+
+        // THEN
+        assertTrue(result);
+        assertEquals(mockUser, target.resolveSession(token));
+        verify(mockAuthManager, times(2)).logIn("user", password, "10.0.0.1");
+    }
+
     @Test
     void logInFailure() throws SQLException, UserUnnkownOrBadPasswordException {
         // GIVEN
@@ -0,0 +1,235 @@
+package biz;
+
+import db.dao.DAO;
+import db.dao.impl.SQLiteDB;
+import model.Operation;
+import model.User;
+import model.operations.LogIn;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncHistoryWriterTest {
+    private AsyncHistoryWriter target;
+
+    @Mock
+    private DAO dao;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (target != null) target.close();
+    }
+
+    @Test
+    void flushWritesAllSubmittedOperationsInBatches() throws SQLException, InterruptedException {
+        // GIVEN
+        AtomicInteger written = new AtomicInteger();
+        doAnswer(invocation -> {
+            List<Operation> operations = invocation.getArgument(0);
+            written.addAndGet(operations.size());
+            return null;
+        }).when(dao).logOperations(anyList(), any(boolean[].class));
+        target = new AsyncHistoryWriter(dao, 1000, 50, 5, AsyncHistoryWriter.OverflowPolicy.BLOCK);
+
+        // WHEN
+        for (int i = 0; i < 200; i++) {
+            target.submit(new LogIn(new User(), "Logowanie "), true);
+        }
+        boolean flushed = target.flush(5000);
+
+        // THEN
+        assertTrue(flushed);
+        assertEquals(200, written.get());
+        assertTrue(target.getBatches() >= 4);
+        verify(dao, never()).logOperation(any(Operation.class), anyBoolean());
+    }
+
+    @Test
+    void callerRunsWhenQueueIsFull() throws SQLException, InterruptedException {
+        // GIVEN
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(dao).logOperations(anyList(), any(boolean[].class));
+        target = new AsyncHistoryWriter(dao, 1, 1, 0, AsyncHistoryWriter.OverflowPolicy.CALLER_RUNS);
+
+        // WHEN
+        for (int i = 0; i < 10; i++) {
+            target.submit(new LogIn(new User(), "Logowanie "), true);
+        }
+        release.countDown();
+
+        // THEN
+        verify(dao, atLeastOnce()).logOperation(any(Operation.class), eq(true));
+        assertTrue(target.flush(5000));
+    }
+
+    @Test
+    void dropWhenQueueIsFull() throws SQLException, InterruptedException {
+        // GIVEN
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(dao).logOperations(anyList(), any(boolean[].class));
+        target = new AsyncHistoryWriter(dao, 1, 1, 0, AsyncHistoryWriter.OverflowPolicy.DROP);
+
+        // WHEN
+        for (int i = 0; i < 10; i++) {
+            target.submit(new LogIn(new User(), "Logowanie "), true);
+        }
+        release.countDown();
+
+        // THEN
+        assertTrue(target.getDropped() > 0);
+        verify(dao, never()).logOperation(any(Operation.class), anyBoolean());
+    }
+
+    @Test
+    void failedBatchIsCountedAndDoesNotBlockFlush() throws SQLException, InterruptedException {
+        // GIVEN
+        doThrow(new SQLException()).when(dao).logOperations(anyList(), any(boolean[].class));
+        doThrow(new SQLException()).when(dao).logOperation(any(Operation.class), anyBoolean());
+        target = new AsyncHistoryWriter(dao);
+
+        // WHEN
+        target.submit(new LogIn(new User(), "Logowanie "), false);
+        boolean flushed = target.flush(5000);
+
+        // THEN
+        assertTrue(flushed);
+        assertEquals(1, target.getFailed());
+        verify(dao, times(4)).logOperations(anyList(), any(boolean[].class));
+    }
+
+    @Test
+    void failedBatchIsRetried() throws SQLException, InterruptedException {
+        // GIVEN
+        doThrow(new SQLException("database is locked")).doNothing()
+                .when(dao).logOperations(anyList(), any(boolean[].class));
+        target = new AsyncHistoryWriter(dao);
+
+        // WHEN
+        target.submit(new LogIn(new User(), "Logowanie "), true);
+        boolean flushed = target.flush(5000);
+
+        // THEN
+        assertTrue(flushed);
+        assertEquals(0, target.getFailed());
+        assertEquals(1, target.getBatches());
+        verify(dao, times(2)).logOperations(anyList(), any(boolean[].class));
+    }
+
+    @Test
+    void batchWhichKeepsFailingIsWrittenOneByOne() throws SQLException, InterruptedException {
+        // GIVEN
+        doThrow(new SQLException()).when(dao).logOperations(anyList(), any(boolean[].class));
+        Operation bad = new LogIn(new User(), "Logowanie ");
+        doAnswer(invocation -> {
+            if (invocation.getArgument(0) == bad) throw new SQLException();
+            return null;
+        }).when(dao).logOperation(any(Operation.class), anyBoolean());
+        target = new AsyncHistoryWriter(dao, 10, 10, 50, AsyncHistoryWriter.OverflowPolicy.BLOCK);
+
+        // WHEN
+        target.submit(new LogIn(new User(), "Logowanie "), true);
+        target.submit(bad, true);
+        target.submit(new LogIn(new User(), "Logowanie "), true);
+        boolean flushed = target.flush(5000);
+
+        // THEN
+        assertTrue(flushed);
+        assertEquals(1, target.getFailed());
+        verify(dao, times(3)).logOperation(any(Operation.class), eq(true));
+    }
+
+    @Test
+    void failedLoginOfUnknownUserIsWrittenInTheBatch(@TempDir Path dir) throws Exception {
+        // GIVEN
+        Path file = dir.resolve("bank.db");
+        Files.copy(Paths.get("bank.db"), file);
+        String url = "jdbc:sqlite:" + file;
+        DAO bank = SQLiteDB.createDAO(url);
+        User user = bank.findUsers().get(0);
+        target = new AsyncHistoryWriter(bank, 100, 10, 1000, AsyncHistoryWriter.OverflowPolicy.BLOCK);
+
+        // WHEN
+        target.submit(new LogIn(user, "Logowanie "), true);
+        target.submit(new LogIn(null, "Zła nazwa użytkownika x"), false);
+        target.submit(new LogIn(user, "Logowanie "), true);
+        target.close();
+        bank.close();
+
+        // THEN
+        assertEquals(1, target.getBatches());
+        assertEquals(0, target.getFailed());
+        try (Connection conn = DriverManager.getConnection(url); Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM Operation WHERE user_id IS NULL " +
+                     "AND description = 'Zła nazwa użytkownika x'")) {
+            rs.next();
+            assertEquals(1, rs.getInt(1));
+        }
+    }
+
+    @Test
+    void operationSubmittedWhileClosingIsWritten() throws Exception {
+        // GIVEN
+        AtomicInteger written = new AtomicInteger();
+        lenient().doAnswer(invocation -> {
+            List<Operation> operations = invocation.getArgument(0);
+            written.addAndGet(operations.size());
+            return null;
+        }).when(dao).logOperations(anyList(), any(boolean[].class));
+        lenient().doAnswer(invocation -> written.incrementAndGet())
+                .when(dao).logOperation(any(Operation.class), anyBoolean());
+        target = new AsyncHistoryWriter(dao, 100, 10, 0, AsyncHistoryWriter.OverflowPolicy.BLOCK);
+        int threads = 4;
+        int perThread = 2000;
+        CountDownLatch started = new CountDownLatch(threads);
+        Thread[] submitters = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            submitters[t] = new Thread(() -> {
+                started.countDown();
+                for (int i = 0; i < perThread; i++) {
+                    try {
+                        target.submit(new LogIn(new User(), "Logowanie "), true);
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            submitters[t].start();
+        }
+
+        // WHEN
+        started.await();
+        target.close();
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+
+        // THEN
+        assertEquals(threads * perThread, written.get());
+    }
+}
@@ -5,6 +5,7 @@ import model.Operation;
 import model.Password;
 import model.Role;
 import model.User;
+import model.exceptions.LoginThrottledException;
 import model.exceptions.UserUnnkownOrBadPasswordException;
 import model.operations.OperationType;
 import model.operations.Withdraw;
@@ -14,7 +15,6 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
-import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.lang.reflect.InvocationTargetException;
@@ -23,6 +23,7 @@ import java.nio.charset.Charset;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
+import java.util.Collections;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -89,6 +90,51 @@ class AuthenticationManagerTest {
         verify(mockHistory, times(1)).logLoginFailure(mockUser, "Bad Password");
     }
 
+    @Test
+    void testLogInRehashesLegacyPassword() throws SQLException, UserUnnkownOrBadPasswordException {
+        // GIVEN
+        target = new AuthenticationManager(mockDao, mockHistory, new PasswordHashing(new Pbkdf2Hasher(1000),
+                Collections.singletonList(new LegacySha256Hasher()), 1, 1));
+        String userName = "testUser";
+        String legacyHash = AuthenticationManager.hashPassword("testPassword".toCharArray());
+        User mockUser = mock(User.class);
+        Password password = new Password();
+        password.setPasswd(legacyHash);
+        when(mockDao.findUserByName(userName)).thenReturn(mockUser);
+        when(mockDao.findPasswordForUser(mockUser)).thenReturn(password);
+        when(mockDao.setUserPassword(eq(mockUser), startsWith("$pbkdf2-sha256$1000$"), eq(legacyHash))).thenReturn(true);
+
+        // WHEN
+        User result = target.logIn(userName, "testPassword".toCharArray());
+
+        // THEN
+        assertEquals(mockUser, result);
+        verify(mockDao, times(1)).setUserPassword(eq(mockUser), startsWith("$pbkdf2-sha256$1000$"), eq(legacyHash));
+        verify(mockHistory, times(1)).logLoginSuccess(mockUser);
+    }
+
+    @Test
+    void testLogInThrottledUserSkipsDatabase() throws SQLException {
+        // GIVEN
+        String userName = "testUser";
+        LoginThrottle throttle = new LoginThrottle(mockHistory, 60_000, 6, 2, 50, 300_000);
+        target = new AuthenticationManager(mockDao, mockHistory, new PasswordHashing(new Pbkdf2Hasher(1000),
+                Collections.singletonList(new LegacySha256Hasher()), 1, 1), throttle);
+        when(mockDao.findUserByName(userName)).thenReturn(null);
+        char[] password = "testPassword".toCharArray();
+
+        // WHEN
+        assertThrows(UserUnnkownOrBadPasswordException.class, () -> target.logIn(userName, "bad".toCharArray(), "10.0.0.1"));
+        assertThrows(UserUnnkownOrBadPasswordException.class, () -> target.logIn(userName, "bad".toCharArray(), "10.0.0.1"));
+
+        // THEN
+        assertThrows(LoginThrottledException.class, () -> target.logIn(userName, password, "10.0.0.1"));
+        assertArrayEquals("aaaaaaaaaaaa".toCharArray(), password);
+        verify(mockDao, times(2)).findUserByName(userName);
+        verify(mockHistory, times(1)).logLoginFailure(null, "Zła nazwa użytkownika " + userName);
+        throttle.shutdown();
+    }
+
     @Test
     void testLogOut() throws SQLException {
         // GIVEN
@@ -143,36 +189,25 @@ class AuthenticationManagerTest {
     @Test
     void testHashPasswordNoSuchAlgorithmException() {
         // GIVEN
-        String plainPassword = "testPassword";
-        char[] password = plainPassword.toCharArray();
-
-        try {
-            java.lang.reflect.Method getInstanceMethod = MessageDigest.class.getDeclaredMethod("getInstance", String.class);
-            getInstanceMethod.setAccessible(true);
-
-            try (MockedStatic<MessageDigest> mockedStatic = mockStatic(MessageDigest.class)) {
-                mockedStatic.when(() -> getInstanceMethod.invoke(null, "SHA-256"))
-                        .thenThrow(new NoSuchAlgorithmException());
+        char[] password = "testPassword".toCharArray();
+        PasswordDigest digest = new PasswordDigest("NoSuchAlg");
 
-                // WHEN
-                String hashedPassword = AuthenticationManager.hashPassword(password);
+        // WHEN
+        String hashedPassword = digest.hash(password);
 
-                // THEN
-                assertNull(hashedPassword);
-            }
-        } catch (Exception e) {
-            fail("Reflection setup failed: " + e.getMessage());
-        }
+        // THEN
+        assertNull(hashedPassword);
+        assertArrayEquals("aaaaaaaaaaaa".toCharArray(), password);
     }
 
     @Test
     void testCanInvokeOperationAdmin() {
         // GIVEN
-        Role mockRole = mock(Role.class);
+        Role role = role(-1L, false);
         User mockUser = mock(User.class);
         Operation mockOperation = mock(Operation.class);
-        when(mockRole.getName()).thenReturn("Admin");
-        when(mockUser.getRole()).thenReturn(mockRole);
+        when(mockUser.getRole()).thenReturn(role);
+        when(mockOperation.getType()).thenReturn(OperationType.LOG_OUT);
 
         // WHEN
         boolean result = target.canInvokeOperation(mockOperation, mockUser);
@@ -184,11 +219,10 @@ class AuthenticationManagerTest {
     @Test
     void testCanInvokeOperationPaymentIn() {
         // GIVEN
-        Role mockRole = mock(Role.class);
+        Role role = role(OperationType.maskOf(OperationType.PAYMENT_IN, OperationType.WITHDRAW), true);
         User mockUser = mock(User.class);
         Operation mockOperation = mock(Operation.class);
-        when(mockRole.getName()).thenReturn("User");
-        when(mockUser.getRole()).thenReturn(mockRole);
+        when(mockUser.getRole()).thenReturn(role);
         when(mockOperation.getType()).thenReturn(OperationType.PAYMENT_IN);
 
         // WHEN
@@ -201,11 +235,10 @@ class AuthenticationManagerTest {
     @Test
     void testCanInvokeOperationWithdraw() {
         // GIVEN
-        Role mockRole = mock(Role.class);
+        Role role = role(OperationType.maskOf(OperationType.PAYMENT_IN, OperationType.WITHDRAW), true);
         User mockUser = mock(User.class);
         Withdraw mockWithdraw = mock(Withdraw.class);
-        when(mockRole.getName()).thenReturn("User");
-        when(mockUser.getRole()).thenReturn(mockRole);
+        when(mockUser.getRole()).thenReturn(role);
         when(mockWithdraw.getType()).thenReturn(OperationType.WITHDRAW);
         when(mockWithdraw.getUser()).thenReturn(mockUser);
 
@@ -216,14 +249,33 @@ class AuthenticationManagerTest {
         assertTrue(result);
     }
 
+    @Test
+    void testCannotInvokeWithdrawForOtherUser() {
+        // GIVEN
+        Role role = role(OperationType.maskOf(OperationType.PAYMENT_IN, OperationType.WITHDRAW), true);
+        User mockUser = mock(User.class);
+        User otherUser = mock(User.class);
+        Withdraw mockWithdraw = mock(Withdraw.class);
+        when(mockUser.getRole()).thenReturn(role);
+        when(mockUser.getId()).thenReturn(1);
+        when(otherUser.getId()).thenReturn(2);
+        when(mockWithdraw.getType()).thenReturn(OperationType.WITHDRAW);
+        when(mockWithdraw.getUser()).thenReturn(otherUser);
+
+        // WHEN
+        boolean result = target.canInvokeOperation(mockWithdraw, mockUser);
+
+        // THEN
+        assertFalse(result);
+    }
+
     @Test
     void testCannotInvokeOperation() {
         // GIVEN
-        Role mockRole = mock(Role.class);
+        Role role = role(OperationType.maskOf(OperationType.PAYMENT_IN, OperationType.WITHDRAW), true);
         User mockUser = mock(User.class);
         Operation mockOperation = mock(Operation.class);
-        when(mockRole.getName()).thenReturn("User");
-        when(mockUser.getRole()).thenReturn(mockRole);
+        when(mockUser.getRole()).thenReturn(role);
         when(mockOperation.getType()).thenReturn(OperationType.LOG_OUT);
 
         // WHEN
@@ -232,4 +284,11 @@ class AuthenticationManagerTest {
         // THEN
         assertFalse(result);
     }
+
+    private static Role role(long permissions, boolean ownershipChecked) {
+        Role role = new Role();
+        role.setPermissions(permissions);
+        role.setOwnershipChecked(ownershipChecked);
+        return role;
+    }
 }
\ No newline at end of file
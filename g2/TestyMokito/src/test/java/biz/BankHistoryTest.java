@@ -9,9 +9,12 @@ import model.operations.LogOut;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -73,7 +76,7 @@ class BankHistoryTest {
     void logPaymentIn() {
         // GIVEN
         Account account = new Account();
-        double amount = 100.0;
+        long amount = 10000;
         boolean success = true;
 
         // WHEN & THEN
@@ -84,7 +87,7 @@ class BankHistoryTest {
     void logPaymentOut() {
         // GIVEN
         Account account = new Account();
-        double amount = 100.0;
+        long amount = 10000;
         boolean success = true;
 
         // WHEN & THEN
@@ -104,6 +107,38 @@ class BankHistoryTest {
         verify(dao, times(1)).logOperation(operation, success);
     }
 
+    @Test
+    void logOperationAsync() throws SQLException, InterruptedException {
+        // GIVEN
+        Operation operation = mock(Operation.class);
+        AsyncHistoryWriter writer = mock(AsyncHistoryWriter.class);
+        target = new BankHistory(dao, writer);
+
+        // WHEN
+        target.logOperation(operation, true);
+
+        // THEN
+        verify(writer, times(1)).submit(operation, true);
+        verify(dao, never()).logOperation(any(Operation.class), anyBoolean());
+    }
+
+    @Test
+    void logOperationToJournal(@TempDir Path directory) throws SQLException, IOException {
+        // GIVEN
+        OperationJournal journal = new OperationJournal(directory, 16, OperationJournal.ForcePolicy.NEVER, 0);
+        target = new BankHistory(dao, journal);
+
+        // WHEN
+        target.logLoginSuccess(new User());
+        target.logLogOut(new User());
+        journal.close();
+
+        // THEN
+        assertEquals(2, journal.getNextSequence());
+        assertEquals(2, new OperationJournalReader(directory, 16, 0).replay((sequence, type, userId, accountId, amount, timestamp, success) -> {}));
+        verify(dao, never()).logOperation(any(Operation.class), anyBoolean());
+    }
+
     @Test
     void logUnauthorizedOperation() {
         // GIVEN
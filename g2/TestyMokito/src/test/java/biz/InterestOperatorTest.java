@@ -12,6 +12,12 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.eq;
@@ -44,17 +50,17 @@ public class InterestOperatorTest {
         Account account = mock(Account.class);
         account.setOwner(user);
         int accountId = account.getId();
-        when(account.getAmmount()).thenReturn(1000.0);
+        when(account.getBalance()).thenReturn(100000L);
         when(dao.findUserByName("InterestOperator")).thenReturn(user);
-        when(accountManager.paymentIn(eq(user), eq(200.0), eq("Interest ..."), eq(accountId))).thenReturn(true);
+        when(accountManager.paymentIn(eq(user), eq(20000L), eq("Interest ..."), eq(accountId))).thenReturn(true);
 
         // WHEN
         target.countInterestForAccount(account);
 
         // THEN
-        verify(account, times(1)).getAmmount();
+        verify(account, times(1)).getBalance();
         verify(dao, times(1)).findUserByName("InterestOperator");
-        verify(accountManager, times(1)).paymentIn(eq(user), eq(200.0), eq("Interest ..."), eq(accountId));
+        verify(accountManager, times(1)).paymentIn(eq(user), eq(20000L), eq("Interest ..."), eq(accountId));
         verify(bankHistory, times(1)).logOperation(any(Interest.class), eq(true));
     }
 
@@ -64,18 +70,18 @@ public class InterestOperatorTest {
         User user = mock(User.class);
         Account account = mock(Account.class);
         account.setOwner(user);
-        when(account.getAmmount()).thenReturn(1000.0);
+        when(account.getBalance()).thenReturn(100000L);
         int accountId = account.getId();
         when(dao.findUserByName("InterestOperator")).thenReturn(user);
-        when(accountManager.paymentIn(eq(user), eq(200.0), eq("Interest ..."), eq(accountId))).thenReturn(false);
+        when(accountManager.paymentIn(eq(user), eq(20000L), eq("Interest ..."), eq(accountId))).thenReturn(false);
 
         // WHEN
         target.countInterestForAccount(account);
 
         // THEN
-        verify(account, times(1)).getAmmount();
+        verify(account, times(1)).getBalance();
         verify(dao, times(1)).findUserByName("InterestOperator");
-        verify(accountManager, times(1)).paymentIn(eq(user), eq(200.0), eq("Interest ..."), eq(accountId));
+        verify(accountManager, times(1)).paymentIn(eq(user), eq(20000L), eq("Interest ..."), eq(accountId));
         verify(bankHistory, times(1)).logOperation(any(Interest.class), eq(false));
     }
 
@@ -83,15 +89,221 @@ public class InterestOperatorTest {
     void countInterestForAccountSQLException() throws SQLException {
         // GIVEN
         Account account = mock(Account.class);
-        when(account.getAmmount()).thenReturn(1000.0);
+        when(account.getBalance()).thenReturn(100000L);
         when(dao.findUserByName("InterestOperator")).thenThrow(new SQLException());
 
         // WHEN & THEN
         assertThrows(SQLException.class, () -> target.countInterestForAccount(account));
 
-        verify(account, times(1)).getAmmount();
+        verify(account, times(1)).getBalance();
         verify(dao, times(1)).findUserByName("InterestOperator");
-        verify(accountManager, never()).paymentIn(any(User.class), anyDouble(), anyString(), anyInt());
+        verify(accountManager, never()).paymentIn(any(User.class), anyLong(), anyString(), anyInt());
         verify(bankHistory, never()).logOperation(any(Operation.class), anyBoolean());
     }
-}
\ No newline at end of file
+
+    @Test
+    void applyInterestToAllAccounts() throws SQLException {
+        // GIVEN
+        User user = mock(User.class);
+        target.setChunkSize(2);
+        List<Account> firstChunk = Arrays.asList(account(1, 100000), account(2, 50000));
+        List<Account> secondChunk = Collections.singletonList(account(5, 10000));
+        when(dao.findUserByName("InterestOperator")).thenReturn(user);
+        when(dao.findAccounts(0, Integer.MAX_VALUE, 2)).thenReturn(firstChunk);
+        when(dao.findAccounts(2, Integer.MAX_VALUE, 2)).thenReturn(secondChunk);
+        when(dao.findAccounts(5, Integer.MAX_VALUE, 2)).thenReturn(Collections.emptyList());
+        when(dao.creditInterest(anyString(), anyInt(), anyList(), anyInt())).thenAnswer(invocation -> allApplied(invocation.getArgument(2)));
+        InterestProgressListener listener = mock(InterestProgressListener.class);
+
+        // WHEN
+        InterestRunSummary summary = target.applyInterestToAllAccounts("run-1", listener);
+
+        // THEN
+        assertEquals(3, summary.getAccounts());
+        assertEquals(32000, summary.getTotalInterest());
+        verify(dao, times(1)).findUserByName("InterestOperator");
+        verify(dao, times(1)).creditInterest(anyString(), eq(0), anyList(), eq(2));
+        verify(dao, times(1)).creditInterest(anyString(), eq(0), anyList(), eq(5));
+        verify(listener, times(1)).chunkCommitted(eq(2L), anyLong());
+        verify(listener, times(1)).chunkCommitted(eq(3L), anyLong());
+        verify(dao, times(1)).finishInterestRun("run-1");
+        verify(accountManager, never()).paymentIn(any(User.class), anyLong(), anyString(), anyInt());
+        verify(bankHistory, never()).logOperation(any(Operation.class), anyBoolean());
+    }
+
+    @Test
+    void creditHoldsTheAccountLocks() throws SQLException {
+        // GIVEN
+        AccountLocks locks = new AccountLocks();
+        when(accountManager.getLocks()).thenReturn(locks);
+        when(dao.findUserByName("InterestOperator")).thenReturn(mock(User.class));
+        when(dao.findAccounts(0, Integer.MAX_VALUE, 1000)).thenReturn(Collections.singletonList(account(7, 100000)));
+        when(dao.findAccounts(7, Integer.MAX_VALUE, 1000)).thenReturn(Collections.emptyList());
+        boolean[] paymentWaited = new boolean[1];
+        when(dao.creditInterest(anyString(), anyInt(), anyList(), anyInt())).thenAnswer(invocation -> {
+            Thread payment = new Thread(() -> locks.lock(7).close());
+            payment.start();
+            payment.join(100);
+            paymentWaited[0] = payment.isAlive();
+            return allApplied(invocation.getArgument(2));
+        });
+
+        // WHEN
+        target.applyInterestToAllAccounts("run-1", null);
+
+        // THEN
+        assertTrue(paymentWaited[0], "Payment on the account waits for the credit");
+        try (AccountLocks.Held held = locks.lock(7)) {
+            assertNotNull(held, "Locks are released after the credit");
+        }
+    }
+
+    @Test
+    void chunkIsCreditedOneStripeAtATime() throws SQLException {
+        // GIVEN
+        AccountLocks locks = new AccountLocks(4);
+        when(accountManager.getLocks()).thenReturn(locks);
+        when(dao.findUserByName("InterestOperator")).thenReturn(mock(User.class));
+        List<Account> chunk = new ArrayList<>();
+        Set<Integer> stripes = new HashSet<>();
+        for (int id = 1; id <= 8; id++) {
+            chunk.add(account(id, 10000));
+            stripes.add(locks.stripeFor(id));
+        }
+        when(dao.findAccounts(0, Integer.MAX_VALUE, 1000)).thenReturn(chunk);
+        when(dao.findAccounts(8, Integer.MAX_VALUE, 1000)).thenReturn(Collections.emptyList());
+        List<Integer> watermarks = new ArrayList<>();
+        List<Boolean> otherStripeFree = new ArrayList<>();
+        when(dao.creditInterest(anyString(), anyInt(), anyList(), anyInt())).thenAnswer(invocation -> {
+            List<Interest> part = invocation.getArgument(2);
+            int stripe = locks.stripeFor(part.get(0).getAccount().getId());
+            for (Interest interest : part) {
+                assertEquals(stripe, locks.stripeFor(interest.getAccount().getId()));
+            }
+            int other = chunk.stream().mapToInt(Account::getId).filter(id -> locks.stripeFor(id) != stripe).findFirst().getAsInt();
+            Thread payment = new Thread(() -> locks.lock(other).close());
+            payment.start();
+            payment.join(1000);
+            otherStripeFree.add(!payment.isAlive());
+            watermarks.add(invocation.getArgument(3));
+            return allApplied(part);
+        });
+
+        // WHEN
+        InterestRunSummary summary = target.applyInterestToAllAccounts("run-1", null);
+
+        // THEN
+        assertEquals(8, summary.getAccounts());
+        assertEquals(stripes.size(), watermarks.size());
+        assertEquals(8, watermarks.get(watermarks.size() - 1).intValue(), "Checkpoint moves with the last part");
+        for (int i = 0; i < watermarks.size() - 1; i++) {
+            assertEquals(0, watermarks.get(i).intValue());
+        }
+        assertFalse(otherStripeFree.contains(false), "Payments on other stripes do not wait for the credit");
+    }
+
+    @Test
+    void finishedRunIsNotAppliedAgain() throws SQLException {
+        // GIVEN
+        when(dao.isInterestRunFinished("run-1")).thenReturn(true);
+
+        // WHEN
+        InterestRunSummary summary = target.applyInterestToAllAccounts("run-1", null);
+        InterestRunSummary parallel = target.applyInterestInParallel("run-1", 2, 1, null);
+
+        // THEN
+        assertEquals(0, summary.getAccounts());
+        assertEquals(0, parallel.getAccounts());
+        verify(dao, never()).findAccounts(anyInt(), anyInt(), anyInt());
+        verify(dao, never()).creditInterest(anyString(), anyInt(), anyList(), anyInt());
+        verify(dao, never()).finishInterestRun(anyString());
+    }
+
+    @Test
+    void applyInterestInParallel() throws SQLException {
+        // GIVEN
+        User user = mock(User.class);
+        target.setChunkSize(10);
+        when(dao.findUserByName("InterestOperator")).thenReturn(user);
+        when(dao.findMaxAccountId()).thenReturn(4);
+        when(dao.findAccounts(anyInt(), anyInt(), eq(10))).thenAnswer(invocation -> {
+            int after = invocation.getArgument(0);
+            int max = invocation.getArgument(1);
+            List<Account> chunk = new ArrayList<>();
+            for (int id = after + 1; id <= max; id++) chunk.add(account(id, 10000));
+            return chunk;
+        });
+        when(dao.creditInterest(anyString(), anyInt(), anyList(), anyInt())).thenAnswer(invocation -> allApplied(invocation.getArgument(2)));
+
+        // WHEN
+        InterestRunSummary summary = target.applyInterestInParallel("run-1", 2, 1, null);
+
+        // THEN
+        assertTrue(summary.isComplete());
+        assertEquals(4, summary.getAccounts());
+        assertEquals(8000, summary.getTotalInterest());
+        assertEquals(4, summary.getWorkers().values().stream().mapToLong(InterestRunSummary.WorkerStats::getAccounts).sum());
+        verify(dao, times(4)).creditInterest(anyString(), anyInt(), anyList(), anyInt());
+    }
+
+    @Test
+    void applyInterestInParallelReportsFailedPartition() throws SQLException {
+        // GIVEN
+        User user = mock(User.class);
+        when(dao.findUserByName("InterestOperator")).thenReturn(user);
+        when(dao.findMaxAccountId()).thenReturn(2);
+        when(dao.findAccounts(anyInt(), anyInt(), anyInt())).thenAnswer(invocation -> {
+            int after = invocation.getArgument(0);
+            int max = invocation.getArgument(1);
+            if (after >= max) return Collections.emptyList();
+            if (max == 2) throw new SQLException("disk I/O error");
+            return Collections.singletonList(account(max, 10000));
+        });
+        when(dao.creditInterest(anyString(), anyInt(), anyList(), anyInt())).thenAnswer(invocation -> allApplied(invocation.getArgument(2)));
+
+        // WHEN
+        InterestRunSummary summary = target.applyInterestInParallel("run-1", 2, 1, null);
+
+        // THEN
+        assertFalse(summary.isComplete());
+        assertEquals(1, summary.getAccounts());
+        assertEquals(1, summary.getFailures().size());
+        assertEquals(1, summary.getFailures().get(0).getFromId());
+        assertEquals(2, summary.getFailures().get(0).getToId());
+        verify(dao, never()).finishInterestRun(anyString());
+    }
+
+    @Test
+    void applyInterestToAllAccountsResumesFromCheckpoint() throws SQLException {
+        // GIVEN
+        User user = mock(User.class);
+        target.setChunkSize(2);
+        when(dao.findUserByName("InterestOperator")).thenReturn(user);
+        when(dao.findInterestWatermark("run-1", 0)).thenReturn(2);
+        when(dao.findAccounts(2, Integer.MAX_VALUE, 2)).thenReturn(Arrays.asList(account(3, 100000), account(4, 50000)));
+        when(dao.findAccounts(4, Integer.MAX_VALUE, 2)).thenReturn(Collections.emptyList());
+        when(dao.creditInterest(eq("run-1"), eq(0), anyList(), eq(4))).thenReturn(new boolean[]{false, true});
+
+        // WHEN
+        InterestRunSummary summary = target.applyInterestToAllAccounts("run-1", null);
+
+        // THEN
+        assertEquals(1, summary.getAccounts());
+        assertEquals(10000, summary.getTotalInterest());
+        verify(dao, never()).findAccounts(eq(0), anyInt(), anyInt());
+        verify(dao, times(1)).creditInterest(eq("run-1"), eq(0), anyList(), eq(4));
+    }
+
+    private static boolean[] allApplied(List<?> credits) {
+        boolean[] applied = new boolean[credits.size()];
+        Arrays.fill(applied, true);
+        return applied;
+    }
+
+    private static Account account(int id, long balance) {
+        Account account = new Account();
+        account.setId(id);
+        account.setBalance(balance);
+        return account;
+    }
+}
@@ -0,0 +1,191 @@
+package biz;
+
+import db.dao.DAO;
+import model.Account;
+import model.Operation;
+import model.User;
+import model.exceptions.OperationIsNotAllowedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerTest {
+
+    @Mock
+    DAO dao;
+    @Captor
+    ArgumentCaptor<List<Account>> captor;
+    @TempDir
+    Path journal;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(dao.findMaxAccountId()).thenReturn(2);
+        when(dao.findAccounts(0, Integer.MAX_VALUE, 10000)).thenReturn(Arrays.asList(account(1, 10000), account(2, 0)));
+        when(dao.findAccounts(2, Integer.MAX_VALUE, 10000)).thenReturn(Collections.emptyList());
+    }
+
+    @Test
+    void changesAreAppliedInMemory() throws SQLException, IOException {
+        // GIVEN
+        Ledger target = new Ledger(dao, journal, false, 16, 4, 1000);
+
+        // WHEN
+        boolean credited = target.credit(2, 500);
+        boolean overdraft = target.debit(1, 20000);
+        boolean transferred = target.transfer(1, 2, 2500);
+        boolean unknown = target.credit(9, 100);
+
+        // THEN
+        assertTrue(credited);
+        assertFalse(overdraft);
+        assertTrue(transferred);
+        assertFalse(unknown);
+        assertEquals(7500, target.getBalance(1));
+        assertEquals(3000, target.getBalance(2));
+        assertEquals(2, target.getSequence());
+        verify(dao, never()).updateAccountState(any());
+        target.close();
+    }
+
+    @Test
+    void journalIsReplayedAfterCrash() throws SQLException, IOException {
+        // GIVEN
+        Ledger crashed = new Ledger(dao, journal, false, 16, 4, 1000);
+        crashed.credit(2, 500);
+        crashed.transfer(1, 2, 2500);
+
+        // WHEN
+        // the first ledger is never closed, its snapshot was not stored
+        Ledger target = new Ledger(dao, journal, false, 16, 4, 1000);
+
+        // THEN
+        assertEquals(7500, target.getBalance(1));
+        assertEquals(3000, target.getBalance(2));
+        assertEquals(2, target.getSequence());
+        target.close();
+    }
+
+    @Test
+    void closeStoresSnapshotOfChangedAccounts() throws SQLException, IOException {
+        // GIVEN
+        Ledger target = new Ledger(dao, journal, false, 16, 4, 1000);
+        target.credit(2, 500);
+
+        // WHEN
+        target.close();
+
+        // THEN
+        verify(dao, times(1)).saveLedgerSnapshot(captor.capture(), eq(1L));
+        assertEquals(1, captor.getValue().size());
+        assertEquals(2, captor.getValue().get(0).getId());
+        assertEquals(500, captor.getValue().get(0).getBalance());
+        assertThrows(SQLException.class, () -> target.credit(2, 500));
+    }
+
+    @Test
+    void snapshotIsTakenEverySnapshotEveryChanges() throws SQLException, IOException {
+        // GIVEN
+        Ledger target = new Ledger(dao, journal, false, 16, 1, 2);
+
+        // WHEN
+        target.credit(1, 1);
+        target.credit(2, 1);
+
+        // THEN
+        verify(dao, timeout(1000)).saveLedgerSnapshot(anyList(), eq(2L));
+        target.close();
+    }
+
+    @Test
+    void accountCreatedAfterStartIsLoaded() throws SQLException, IOException {
+        // GIVEN
+        Ledger target = new Ledger(dao, journal, false, 16, 4, 1000);
+        when(dao.findAccountById(40)).thenReturn(account(40, 300));
+
+        // WHEN
+        Account loaded = target.lookup(40);
+        boolean credited = target.credit(40, 100);
+        boolean transferred = target.transfer(1, 40, 600);
+
+        // THEN
+        assertNotNull(loaded);
+        assertEquals(300, loaded.getBalance());
+        assertTrue(credited);
+        assertTrue(transferred);
+        assertEquals(1000, target.getBalance(40));
+        assertEquals(9400, target.getBalance(1));
+        assertNull(target.lookup(41));
+        target.close();
+        verify(dao).saveLedgerSnapshot(captor.capture(), eq(2L));
+        assertEquals(Arrays.asList(1, 40), Arrays.asList(captor.getValue().get(0).getId(), captor.getValue().get(1).getId()));
+    }
+
+    @Test
+    void balanceWritesAreRefusedWhileLedgerIsOpen() throws SQLException, IOException {
+        // GIVEN
+        Ledger ledger = new Ledger(dao, journal, false, 16, 4, 1000);
+        DAO target = new LedgerAccountManager.BalanceGuard(dao, ledger);
+        Account account = account(1, 500);
+
+        // WHEN
+        assertThrows(SQLException.class, () -> target.updateAccountState(account));
+        assertThrows(SQLException.class, () -> target.creditInterest("2026-10", 0, Collections.emptyList(), 1));
+        ledger.close();
+        target.updateAccountState(account);
+
+        // THEN
+        verify(dao, times(1)).updateAccountState(account);
+        verify(dao, never()).creditInterest(any(), anyInt(), anyList(), anyInt());
+    }
+
+    @Test
+    void ledgerAccountManagerLogsBothSidesOfTransfer() throws SQLException, IOException, OperationIsNotAllowedException {
+        // GIVEN
+        LedgerAccountManager target = new LedgerAccountManager();
+        target.ledger = new Ledger(dao, journal, false, 16, 4, 1000);
+        target.history = mock(BankHistory.class);
+        target.auth = mock(AuthenticationManager.class);
+        User user = new User();
+        when(target.auth.canInvokeOperation(any(Operation.class), eq(user))).thenReturn(true);
+
+        // WHEN
+        boolean result = target.internalPayment(user, 2500, "Przelew", 1, 2);
+        boolean unknown = target.internalPayment(user, 2500, "Przelew", 1, 9);
+
+        // THEN
+        assertTrue(result);
+        assertFalse(unknown);
+        assertEquals(7500, target.getLedger().getBalance(1));
+        verify(target.history, times(2)).logOperation(any(Operation.class), eq(true));
+        verify(target.history, times(2)).logOperation(any(Operation.class), eq(false));
+        target.ledger.close();
+    }
+
+    private static Account account(int id, long balance) {
+        Account account = new Account();
+        account.setId(id);
+        account.setBalance(balance);
+        return account;
+    }
+}
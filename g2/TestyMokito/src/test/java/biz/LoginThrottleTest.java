@@ -0,0 +1,173 @@
+package biz;
+
+import model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class LoginThrottleTest {
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private BankHistory history;
+    private LoginThrottle target;
+
+    @BeforeEach
+    void setUp() {
+        history = mock(BankHistory.class);
+        // 100 ms window in 4 buckets, 3 failures per user, 5 per source, 1000 ms lockout
+        target = new LoginThrottle(history, 100, 4, 3, 5, 1000, now::get, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        target.shutdown();
+    }
+
+    @Test
+    void userIsLockedOutAfterMaxFailures() {
+        // GIVEN
+        User user = new User();
+
+        // WHEN
+        boolean first = target.failure("jan", user, null);
+        boolean second = target.failure("jan", user, null);
+        boolean notYet = target.refuse("jan", null);
+        target.failure("jan", user, null);
+        boolean locked = target.refuse("jan", null);
+        boolean other = target.refuse("anna", null);
+        now.addAndGet(1000);
+        boolean released = target.refuse("jan", null);
+
+        // THEN
+        assertTrue(first);
+        assertFalse(second);
+        assertFalse(notYet);
+        assertTrue(locked);
+        assertFalse(other);
+        assertFalse(released);
+    }
+
+    @Test
+    void oldFailuresLeaveTheWindow() {
+        // GIVEN
+        target.failure("jan", null, null);
+        target.failure("jan", null, null);
+
+        // WHEN
+        now.addAndGet(150);
+        boolean individual = target.failure("jan", null, null);
+        boolean locked = target.refuse("jan", null);
+
+        // THEN
+        assertTrue(individual);
+        assertFalse(locked);
+    }
+
+    @Test
+    void successClearsFailures() {
+        // GIVEN
+        target.failure("jan", null, null);
+        target.failure("jan", null, null);
+
+        // WHEN
+        target.success("jan");
+        target.failure("jan", null, null);
+
+        // THEN
+        assertFalse(target.refuse("jan", null));
+    }
+
+    @Test
+    void sourceIsLockedOutForEveryUser() {
+        // GIVEN
+        for (int i = 0; i < 5; i++) {
+            target.failure("user" + i, null, "10.0.0.1");
+        }
+
+        // WHEN
+        boolean sameSource = target.refuse("jan", "10.0.0.1");
+        boolean otherSource = target.refuse("jan", "10.0.0.2");
+
+        // THEN
+        assertTrue(sameSource);
+        assertFalse(otherSource);
+    }
+
+    @Test
+    void failuresAreWrittenAsOneSummaryRow() throws SQLException {
+        // GIVEN
+        User user = new User();
+        for (int i = 0; i < 4; i++) {
+            target.failure("jan", user, null);
+        }
+        target.refuse("jan", null);
+        target.refuse("jan", null);
+
+        // WHEN
+        target.writeSummaries();
+        target.writeSummaries();
+
+        // THEN
+        verify(history, times(1)).logLoginFailure(user, "Nieudane logowania: 3, odrzucone: 2, użytkownik jan");
+        verify(history, times(1)).logLoginFailure(any(), anyString());
+    }
+
+    @Test
+    void idleCountersArePruned() {
+        // GIVEN
+        target.failure("jan", null, "10.0.0.1");
+
+        // WHEN
+        now.addAndGet(150);
+        target.writeSummaries();
+
+        // THEN
+        assertEquals(0, target.getTrackedUsers());
+        assertEquals(0, target.getTrackedSources());
+    }
+
+    @Test
+    void unknownNamesAreSummedUp() throws SQLException {
+        // WHEN
+        int individual = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (target.failure("nobody" + i, null, "10.0.0." + (i % 100))) individual++;
+        }
+        boolean refused = target.refuse("nobody", "10.0.0.1");
+        target.writeSummaries();
+
+        // THEN
+        assertEquals(3, individual);
+        assertTrue(refused);
+        verify(history, times(1)).logLoginFailure(null,
+                "Nieudane logowania nieznanych użytkowników: 997, odrzucone ze względu na źródło: 1");
+        verify(history, times(1)).logLoginFailure(any(), anyString());
+    }
+
+    @Test
+    void countersArePrunedWithoutFailuresOfOneUser() throws InterruptedException {
+        // GIVEN
+        target.shutdown();
+        target = new LoginThrottle(history, 40, 2, 3, 5, 10);
+        for (int i = 0; i < 100; i++) {
+            target.failure("user" + i, null, "10.0.0.1");
+        }
+
+        // WHEN
+        long deadline = System.currentTimeMillis() + 5_000;
+        while ((target.getTrackedUsers() > 0 || target.getTrackedSources() > 0) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // THEN
+        assertEquals(0, target.getTrackedUsers());
+        assertEquals(0, target.getTrackedSources());
+    }
+}
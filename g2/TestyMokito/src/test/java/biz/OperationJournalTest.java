@@ -0,0 +1,234 @@
+package biz;
+
+import model.Account;
+import model.Operation;
+import model.User;
+import model.operations.LogIn;
+import model.operations.OperationType;
+import model.operations.PaymentIn;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OperationJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<String> records = new ArrayList<>();
+
+    private final OperationJournalReader.Visitor collect = (sequence, type, userId, accountId, amount, timestamp, success) ->
+            records.add(sequence + " " + type + " " + userId + " " + accountId + " " + amount + " " + success);
+
+    @Test
+    void recordsAreReadBack() throws IOException {
+        // GIVEN
+        User user = new User();
+        user.setId(7);
+        Account account = new Account();
+        account.setId(3);
+
+        // WHEN
+        try (OperationJournal target = new OperationJournal(directory, 16, OperationJournal.ForcePolicy.NEVER, 0)) {
+            target.append(new PaymentIn(user, 1250, "Wpłata", account), true);
+            target.append(new LogIn(null, "Zła nazwa użytkownika x"), false);
+        }
+        long read = new OperationJournalReader(directory, 16, 0).replay(collect);
+
+        // THEN
+        assertEquals(2, read);
+        assertEquals("0 PAYMENT_IN 7 3 1250 true", records.get(0));
+        assertEquals("1 LOG_IN -1 -1 0 false", records.get(1));
+    }
+
+    @Test
+    void segmentsRollAndReopenContinuesSequence() throws IOException {
+        // GIVEN
+        try (OperationJournal target = new OperationJournal(directory, 4, OperationJournal.ForcePolicy.EVERY_WRITE, 0)) {
+            for (int i = 0; i < 6; i++) {
+                target.append(login(), true);
+            }
+        }
+
+        // WHEN
+        long next;
+        try (OperationJournal target = new OperationJournal(directory, 4, OperationJournal.ForcePolicy.INTERVAL, 10)) {
+            next = target.append(login(), true);
+        }
+        long read = new OperationJournalReader(directory, 4, 0).replay(collect);
+
+        // THEN
+        assertEquals(6, next);
+        assertEquals(7, read);
+        assertEquals(2, OperationJournal.segments(directory).size());
+        assertTrue(records.get(6).startsWith("6 LOG_IN"));
+    }
+
+    @Test
+    void readerTailsNewRecords() throws IOException {
+        // GIVEN
+        OperationJournalReader reader = new OperationJournalReader(directory, 4, 0);
+        try (OperationJournal target = new OperationJournal(directory, 4, OperationJournal.ForcePolicy.NEVER, 0)) {
+            target.append(login(), true);
+
+            // WHEN
+            int first = reader.poll(collect, 10);
+            int nothing = reader.poll(collect, 10);
+            for (int i = 0; i < 4; i++) {
+                target.append(login(), true);
+            }
+            int second = reader.poll(collect, 10);
+
+            // THEN
+            assertEquals(1, first);
+            assertEquals(0, nothing);
+            assertEquals(4, second);
+            assertEquals(5, reader.getPosition());
+        }
+    }
+
+    @Test
+    void damagedRecordIsSkippedInOlderSegment() throws IOException {
+        // GIVEN
+        try (OperationJournal target = new OperationJournal(directory, 4, OperationJournal.ForcePolicy.NEVER, 0)) {
+            for (int i = 0; i < 6; i++) {
+                target.append(login(), true);
+            }
+        }
+        try (RandomAccessFile file = new RandomAccessFile(OperationJournal.segmentFile(directory, 0).toFile(), "rw")) {
+            file.seek(OperationJournal.RECORD_SIZE + OperationJournal.AMOUNT);
+            file.write(1);
+        }
+
+        // WHEN
+        long read = new OperationJournalReader(directory, 4, 0).replay(collect);
+
+        // THEN
+        assertEquals(5, read);
+        assertTrue(records.get(1).startsWith("2 "));
+    }
+
+    @Test
+    void pollWaitsForMissingRecordBeforeSkippingIt() throws IOException, InterruptedException {
+        // GIVEN
+        try (OperationJournal target = new OperationJournal(directory, 4, OperationJournal.ForcePolicy.NEVER, 0)) {
+            for (int i = 0; i < 6; i++) {
+                target.append(login(), true);
+            }
+        }
+        try (RandomAccessFile file = new RandomAccessFile(OperationJournal.segmentFile(directory, 0).toFile(), "rw")) {
+            file.seek(OperationJournal.RECORD_SIZE + OperationJournal.AMOUNT);
+            file.write(1);
+        }
+        OperationJournalReader reader = new OperationJournalReader(directory, 4, 0, 50);
+
+        // WHEN
+        int before = reader.poll(collect, 10);
+        int waiting = reader.poll(collect, 10);
+        Thread.sleep(60);
+        int after = reader.poll(collect, 10);
+
+        // THEN
+        assertEquals(1, before);
+        assertEquals(0, waiting);
+        assertEquals(4, after);
+        assertEquals(6, reader.getPosition());
+    }
+
+    @Test
+    void segmentMappedWhileShortIsMappedAgain() throws IOException {
+        // GIVEN
+        Files.write(OperationJournal.segmentFile(directory, 0), new byte[0]);
+        OperationJournalReader reader = new OperationJournalReader(directory, 4, 0, 0);
+        int before = reader.poll(collect, 10);
+
+        // WHEN
+        try (OperationJournal target = new OperationJournal(directory, 4, OperationJournal.ForcePolicy.NEVER, 0)) {
+            for (int i = 0; i < 6; i++) {
+                target.append(login(), true);
+            }
+        }
+        int after = reader.poll(collect, 10);
+
+        // THEN
+        assertEquals(0, before);
+        assertEquals(6, after);
+        assertEquals(6, reader.getPosition());
+    }
+
+    @Test
+    void newSegmentIsCreatedAtFullSize() throws IOException {
+        // WHEN
+        try (OperationJournal target = new OperationJournal(directory, 4, OperationJournal.ForcePolicy.NEVER, 0)) {
+            for (int i = 0; i < 5; i++) {
+                target.append(login(), true);
+            }
+        }
+
+        // THEN
+        assertEquals(4 * OperationJournal.RECORD_SIZE, Files.size(OperationJournal.segmentFile(directory, 1)));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(2, files.count(), "No temporary file is left");
+        }
+    }
+
+    @Test
+    void tailerReadsEveryRecordOfConcurrentWriters() throws Exception {
+        // GIVEN
+        int writers = 4;
+        int perWriter = 5000;
+        int total = writers * perWriter;
+        List<Long> sequences = new ArrayList<>();
+        OperationJournalReader reader = new OperationJournalReader(directory, 64, 0);
+        ExecutorService threads = Executors.newFixedThreadPool(writers + 1);
+        try (OperationJournal target = new OperationJournal(directory, 64, OperationJournal.ForcePolicy.NEVER, 0)) {
+            Future<?> tailer = threads.submit(() -> {
+                long deadline = System.currentTimeMillis() + 10_000;
+                while (sequences.size() < total && System.currentTimeMillis() < deadline) {
+                    reader.poll((sequence, type, userId, accountId, amount, timestamp, success) -> sequences.add(sequence), 4096);
+                }
+                return null;
+            });
+
+            // WHEN
+            List<Future<?>> writes = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                writes.add(threads.submit(() -> {
+                    for (int i = 0; i < perWriter; i++) {
+                        target.append(login(), true);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> write : writes) {
+                write.get(10, TimeUnit.SECONDS);
+            }
+            tailer.get(15, TimeUnit.SECONDS);
+        } finally {
+            threads.shutdownNow();
+        }
+
+        // THEN
+        assertEquals(total, sequences.size());
+        for (int i = 0; i < total; i++) {
+            assertEquals(i, sequences.get(i).longValue());
+        }
+    }
+
+    private static Operation login() {
+        return new LogIn(new User(), "Logowanie ");
+    }
+}
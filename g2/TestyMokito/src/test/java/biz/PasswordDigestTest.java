@@ -0,0 +1,69 @@
+package biz;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.jupiter.api.Test;
+
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordDigestTest {
+
+    @Test
+    void hashIsCompatibleWithStoredHashes() throws NoSuchAlgorithmException {
+        for (String plainPassword : new String[]{"", "Adam", "testPassword", "zażółć gęślą jaźń", "€€€", "a😀b"}) {
+            // GIVEN
+            byte[] bpass = Charset.forName("UTF-8").encode(CharBuffer.wrap(plainPassword.toCharArray())).array();
+            String expectedHash = new String(Base64.encodeBase64(MessageDigest.getInstance("SHA-256").digest(bpass)));
+
+            // WHEN
+            String hashedPassword = PasswordDigest.SHA_256.hash(plainPassword.toCharArray());
+
+            // THEN
+            assertEquals(expectedHash, hashedPassword);
+        }
+    }
+
+    @Test
+    void matchesCorrectPasswordOnly() {
+        // GIVEN
+        String stored = PasswordDigest.SHA_256.hash("testPassword".toCharArray());
+
+        // WHEN
+        boolean correct = PasswordDigest.SHA_256.matches("testPassword".toCharArray(), stored);
+        boolean wrong = PasswordDigest.SHA_256.matches("testPassworD".toCharArray(), stored);
+
+        // THEN
+        assertTrue(correct);
+        assertFalse(wrong);
+    }
+
+    @Test
+    void malformedStoredHashDoesNotMatch() {
+        // GIVEN
+        char[] password = "secret".toCharArray();
+
+        // WHEN
+        boolean result = PasswordDigest.SHA_256.matches(password, "not base64!");
+
+        // THEN
+        assertFalse(result);
+        assertArrayEquals("aaaaaa".toCharArray(), password);
+    }
+
+    @Test
+    void passwordIsOverwrittenAfterCheck() {
+        // GIVEN
+        String stored = PasswordDigest.SHA_256.hash("secret".toCharArray());
+        char[] password = "secret".toCharArray();
+
+        // WHEN
+        PasswordDigest.SHA_256.matches(password, stored);
+
+        // THEN
+        assertArrayEquals("aaaaaa".toCharArray(), password);
+    }
+}
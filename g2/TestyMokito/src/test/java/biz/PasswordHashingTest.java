@@ -0,0 +1,107 @@
+package biz;
+
+import model.exceptions.LoginServiceBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHashingTest {
+    private PasswordHashing target;
+
+    @AfterEach
+    void tearDown() {
+        if (target != null) target.shutdown();
+    }
+
+    @Test
+    void legacyHashIsReplacedAfterMatch() throws LoginServiceBusyException {
+        // GIVEN
+        target = new PasswordHashing(new Pbkdf2Hasher(1000), Collections.singletonList(new LegacySha256Hasher()), 1, 10);
+        String legacy = AuthenticationManager.hashPassword("secret".toCharArray());
+
+        // WHEN
+        String kept = target.verify("secret".toCharArray(), legacy);
+        String rejected = target.verify("wrong".toCharArray(), legacy);
+
+        // THEN
+        assertTrue(kept.startsWith("$pbkdf2-sha256$1000$"));
+        assertNull(rejected);
+        assertNotNull(target.verify("secret".toCharArray(), kept));
+    }
+
+    @Test
+    void defaultsUseTheGivenIterations() throws LoginServiceBusyException {
+        // GIVEN
+        target = PasswordHashing.defaults(1500);
+
+        // WHEN
+        String stored = target.hash("secret".toCharArray());
+
+        // THEN
+        assertTrue(stored.startsWith("$pbkdf2-sha256$1500$"));
+        assertEquals(stored, target.verify("secret".toCharArray(), stored));
+    }
+
+    @Test
+    void currentHashIsKept() throws LoginServiceBusyException {
+        // GIVEN
+        target = new PasswordHashing(new Pbkdf2Hasher(1000), Collections.emptyList(), 1, 10);
+        String stored = target.hash("secret".toCharArray());
+
+        // WHEN
+        String kept = target.verify("secret".toCharArray(), stored);
+
+        // THEN
+        assertEquals(stored, kept);
+    }
+
+    @Test
+    void fullQueueRefusesWork() throws Exception {
+        // GIVEN
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordHasher blocking = new Pbkdf2Hasher(1000) {
+            @Override
+            public String hash(char[] password) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.hash(password);
+            }
+        };
+        target = new PasswordHashing(blocking, Collections.emptyList(), 1, 1);
+        Thread first = new Thread(() -> {
+            try {
+                target.hash("one".toCharArray());
+            } catch (LoginServiceBusyException e) {
+                fail(e);
+            }
+        });
+        Thread second = new Thread(() -> {
+            try {
+                target.hash("two".toCharArray());
+            } catch (LoginServiceBusyException e) {
+                fail(e);
+            }
+        });
+        first.start();
+        entered.await();
+        second.start();
+        while (target.getQueued() == 0) Thread.sleep(1);
+        char[] password = "three".toCharArray();
+
+        // WHEN & THEN
+        assertThrows(LoginServiceBusyException.class, () -> target.hash(password));
+        assertArrayEquals("aaaaa".toCharArray(), password);
+        release.countDown();
+        first.join(5000);
+        second.join(5000);
+    }
+}
@@ -0,0 +1,76 @@
+package biz;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Pbkdf2HasherTest {
+    private final Pbkdf2Hasher target = new Pbkdf2Hasher(1000);
+
+    @Test
+    void hashIsSaltedAndVersioned() {
+        // WHEN
+        String first = target.hash("secret".toCharArray());
+        String second = target.hash("secret".toCharArray());
+
+        // THEN
+        assertTrue(first.startsWith("$pbkdf2-sha256$1000$"));
+        assertNotEquals(first, second);
+        assertTrue(target.supports(first));
+        assertFalse(target.supports(AuthenticationManager.hashPassword("secret".toCharArray())));
+    }
+
+    @Test
+    void matchesCorrectPasswordOnly() {
+        // GIVEN
+        String stored = target.hash("secret".toCharArray());
+        char[] password = "secret".toCharArray();
+
+        // WHEN
+        boolean correct = target.matches(password, stored);
+        boolean wrong = target.matches("Secret".toCharArray(), stored);
+
+        // THEN
+        assertTrue(correct);
+        assertFalse(wrong);
+        assertArrayEquals("aaaaaa".toCharArray(), password);
+    }
+
+    @Test
+    void hashWithFewerIterationsNeedsRehash() {
+        // GIVEN
+        String weak = new Pbkdf2Hasher(500).hash("secret".toCharArray());
+        String current = target.hash("secret".toCharArray());
+
+        // WHEN & THEN
+        assertTrue(target.needsRehash(weak));
+        assertFalse(target.needsRehash(current));
+        assertTrue(target.matches("secret".toCharArray(), weak));
+    }
+
+    @Test
+    void malformedHashDoesNotMatch() {
+        // WHEN & THEN
+        assertFalse(target.matches("secret".toCharArray(), "$pbkdf2-sha256$x$y"));
+        assertFalse(target.matches("secret".toCharArray(), "$pbkdf2-sha256$1000$!!$!!"));
+    }
+
+    @Test
+    void iterationsComeFromSystemProperty() {
+        // GIVEN
+        System.setProperty(Pbkdf2Hasher.ITERATIONS_PROPERTY, "2000");
+        try {
+            // WHEN
+            Pbkdf2Hasher configured = new Pbkdf2Hasher();
+
+            // THEN
+            assertEquals(2000, configured.getIterations());
+            assertTrue(configured.hash("secret".toCharArray()).startsWith("$pbkdf2-sha256$2000$"));
+            assertTrue(configured.needsRehash(target.hash("secret".toCharArray())));
+        }
+        finally {
+            System.clearProperty(Pbkdf2Hasher.ITERATIONS_PROPERTY);
+        }
+        assertEquals(Pbkdf2Hasher.DEFAULT_ITERATIONS, new Pbkdf2Hasher().getIterations());
+    }
+}
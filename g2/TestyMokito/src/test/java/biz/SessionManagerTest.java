@@ -0,0 +1,113 @@
+package biz;
+
+import model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionManagerTest {
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private SessionManager target;
+
+    @BeforeEach
+    void setUp() {
+        // idle 100 ms, absolute 1000 ms, 10 ms ticks on a 16 slot wheel
+        target = new SessionManager(100, 1000, 10, 16, now::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        target.shutdown();
+    }
+
+    @Test
+    void tokenResolvesToUser() {
+        // GIVEN
+        User user = new User();
+
+        // WHEN
+        String token = target.open(user);
+        String other = target.open(user);
+
+        // THEN
+        assertNotEquals(token, other);
+        assertSame(user, target.resolve(token));
+        assertNull(target.resolve("unknown"));
+        assertEquals(2, target.getActiveSessions());
+    }
+
+    @Test
+    void idleSessionExpires() {
+        // GIVEN
+        String token = target.open(new User());
+
+        // WHEN
+        now.addAndGet(50);
+        User touched = target.resolve(token);
+        now.addAndGet(99);
+        User stillAlive = target.resolve(token);
+        now.addAndGet(100);
+        User expired = target.resolve(token);
+
+        // THEN
+        assertNotNull(touched);
+        assertNotNull(stillAlive);
+        assertNull(expired);
+        assertEquals(1, target.getExpiredSessions());
+    }
+
+    @Test
+    void activeSessionExpiresAfterAbsoluteTimeout() {
+        // GIVEN
+        String token = target.open(new User());
+
+        // WHEN
+        for (int i = 0; i < 9; i++) {
+            now.addAndGet(99);
+            assertNotNull(target.resolve(token));
+        }
+        now.addAndGet(200);
+
+        // THEN
+        assertNull(target.resolve(token));
+    }
+
+    @Test
+    void reaperRemovesExpiredSessionsOnly() {
+        // GIVEN
+        String idle = target.open(new User());
+        String active = target.open(new User());
+
+        // WHEN
+        for (int i = 0; i < 30; i++) {
+            now.addAndGet(10);
+            target.resolve(active);
+            target.reap();
+        }
+
+        // THEN
+        assertEquals(1, target.getActiveSessions());
+        assertEquals(1, target.getExpiredSessions());
+        assertNotNull(target.resolve(active));
+        assertNull(target.resolve(idle));
+    }
+
+    @Test
+    void closedSessionIsGone() {
+        // GIVEN
+        User user = new User();
+        String token = target.open(user);
+
+        // WHEN
+        User closed = target.close(token);
+
+        // THEN
+        assertSame(user, closed);
+        assertNull(target.resolve(token));
+        assertNull(target.close(token));
+    }
+}
@@ -7,7 +7,9 @@ import biz.InterestOperator;
 import db.dao.DAO;
 import io.cucumber.java.Before;
 import model.Account;
+import model.Money;
 import model.User;
+import model.operations.Payment;
 
 import java.lang.reflect.Field;
 import java.sql.SQLException;
@@ -35,7 +37,7 @@ public class MoneyTransferSteps {
 
     //@Given("SetUpTestEnv")
     @Before
-    public void setUpTestEnv() throws NoSuchFieldException, IllegalAccessException {
+    public void setUpTestEnv() throws NoSuchFieldException, IllegalAccessException, SQLException {
         //... set up
         aM = new AccountManager();
         daoMock = mock(DAO.class);
@@ -63,6 +65,11 @@ public class MoneyTransferSteps {
         } catch (NoSuchFieldException | IllegalAccessException e) {
             e.printStackTrace();
         }
+        // the DAO debits only when the source account holds enough money
+        when(daoMock.transfer(any(), any())).thenAnswer(invocation -> {
+            Payment withdraw = invocation.getArgument(0);
+            return withdraw.getAccount().getBalance() >= withdraw.getAmmount();
+        });
     }
 
     @Given("We have user {string} with id: {int}")
@@ -91,7 +98,7 @@ public class MoneyTransferSteps {
     public Account setupAccountWithIdandAmount(int accId, double amount) throws SQLException {
         Account acc = new Account();
         acc.setId(accId);
-        acc.setAmmount(amount);
+        acc.setBalance(Money.toMinor(amount, Money.PLN));
         when(daoMock.findAccountById(accId)).thenReturn(acc);
         return acc;
     }
@@ -111,13 +118,13 @@ public class MoneyTransferSteps {
             }
         }
         if (u == null) throw new NullPointerException();
-        aM.internalPayment(u, amount, "Opis", srcId, dstId);
+        aM.internalPayment(u, Money.toMinor(amount, Money.PLN), "Opis", srcId, dstId);
     }
 
     @Then("account:{int} value:{double} pln")
     public void checkAccountAmount(int accId, double value) throws SQLException {
         Account acc = daoMock.findAccountById(accId);
-        assertEquals(acc.getAmmount(),value,0.001);
+        assertEquals(Money.toMinor(value, Money.PLN), acc.getBalance());
     }
 
 }
\ No newline at end of file
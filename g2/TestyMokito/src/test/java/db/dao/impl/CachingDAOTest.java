@@ -0,0 +1,190 @@
+package db.dao.impl;
+
+import db.dao.DAO;
+import model.Account;
+import model.User;
+import model.operations.PaymentIn;
+import model.operations.Withdraw;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingDAOTest {
+    private CachingDAO target;
+
+    @Mock
+    private DAO dao;
+
+    @Captor
+    private ArgumentCaptor<List<Account>> captor;
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        if (target != null) target.close();
+    }
+
+    @Test
+    void findAccountByIdIsServedFromCache() throws SQLException {
+        // GIVEN
+        target = new CachingDAO(dao, 10, 0, CachingDAO.Durability.WRITE_BEHIND);
+        when(dao.findAccountById(1)).thenReturn(account(1, 10000));
+
+        // WHEN
+        Account first = target.findAccountById(1);
+        Account second = target.findAccountById(1);
+
+        // THEN
+        assertNotSame(first, second);
+        assertEquals(10000, second.getBalance());
+        assertEquals(1, target.getHits());
+        assertEquals(1, target.getMisses());
+        verify(dao, times(1)).findAccountById(1);
+    }
+
+    @Test
+    void writeBehindCoalescesUpdatesOfOneAccount() throws SQLException {
+        // GIVEN
+        target = new CachingDAO(dao, 10, 0, CachingDAO.Durability.WRITE_BEHIND);
+        when(dao.updateAccountStates(anyList())).thenAnswer(invocation -> allUpdated(invocation.getArgument(0)));
+
+        // WHEN
+        target.updateAccountState(account(1, 10000));
+        target.updateAccountState(account(2, 5000));
+        target.updateAccountState(account(1, 12000));
+        Account cached = target.findAccountById(1);
+        verify(dao, never()).updateAccountStates(anyList());
+        target.flush();
+
+        // THEN
+        assertEquals(12000, cached.getBalance());
+        verify(dao, times(1)).updateAccountStates(captor.capture());
+        assertEquals(2, captor.getValue().size());
+        assertEquals(12000, captor.getValue().get(0).getBalance());
+        assertEquals(0, target.getPending());
+        verify(dao, never()).findAccountById(anyInt());
+    }
+
+    @Test
+    void waitForFlushWritesBeforeReturning() throws SQLException {
+        // GIVEN
+        target = new CachingDAO(dao, 10, 0, CachingDAO.Durability.WAIT_FOR_FLUSH);
+        when(dao.updateAccountStates(anyList())).thenAnswer(invocation -> allUpdated(invocation.getArgument(0)));
+
+        // WHEN
+        boolean result = target.updateAccountState(account(1, 10000));
+
+        // THEN
+        assertTrue(result);
+        assertEquals(0, target.getPending());
+        verify(dao, times(1)).updateAccountStates(anyList());
+    }
+
+    @Test
+    void waitForFlushReportsMissingAccount() throws SQLException {
+        // GIVEN
+        target = new CachingDAO(dao, 10, 0, CachingDAO.Durability.WAIT_FOR_FLUSH);
+        when(dao.updateAccountStates(anyList())).thenReturn(new boolean[] { false }, new boolean[] { true });
+
+        // WHEN
+        boolean missing = target.updateAccountState(account(7, 10000));
+        boolean existing = target.updateAccountState(account(7, 12000));
+
+        // THEN
+        assertFalse(missing);
+        assertTrue(existing, "A later successful write is reported as such");
+        assertEquals(0, target.getPending());
+    }
+
+    @Test
+    void failedFlushKeepsPendingUpdates() throws SQLException {
+        // GIVEN
+        target = new CachingDAO(dao, 10, 0, CachingDAO.Durability.WRITE_BEHIND);
+        when(dao.updateAccountStates(anyList()))
+                .thenThrow(new SQLException("database is locked"))
+                .thenAnswer(invocation -> allUpdated(invocation.getArgument(0)));
+        target.updateAccountState(account(1, 10000));
+
+        // WHEN & THEN
+        assertThrows(SQLException.class, () -> target.flush());
+        assertEquals(1, target.getPending());
+        assertEquals(1, target.getFailedFlushes());
+        target.flush();
+        assertEquals(0, target.getPending());
+        verify(dao, times(2)).updateAccountStates(anyList());
+    }
+
+    @Test
+    void failedFlushDropsUpdateOfWaitingCaller() throws SQLException {
+        // GIVEN
+        target = new CachingDAO(dao, 10, 0, CachingDAO.Durability.WAIT_FOR_FLUSH);
+        when(dao.findAccountById(1)).thenAnswer(invocation -> account(1, 10000));
+        when(dao.updateAccountStates(anyList()))
+                .thenThrow(new SQLException("database is locked"))
+                .thenAnswer(invocation -> allUpdated(invocation.getArgument(0)));
+        Account account = target.findAccountById(1);
+        account.setBalance(15000);
+
+        // WHEN
+        assertThrows(SQLException.class, () -> target.updateAccountState(account));
+        Account reloaded = target.findAccountById(1);
+        target.updateAccountState(account(2, 5000));
+
+        // THEN
+        assertEquals(10000, reloaded.getBalance(), "Failed payment is not visible");
+        assertEquals(0, target.getPending());
+        assertEquals(1, target.getFailedFlushes());
+        verify(dao, times(2)).findAccountById(1);
+        verify(dao, times(2)).updateAccountStates(captor.capture());
+        assertEquals(1, captor.getValue().size());
+        assertEquals(2, captor.getValue().get(0).getId(), "Failed payment is not written later");
+    }
+
+    @Test
+    void transferFlushesAndInvalidatesBothAccounts() throws SQLException {
+        // GIVEN
+        target = new CachingDAO(dao, 10, 0, CachingDAO.Durability.WRITE_BEHIND);
+        Account source = account(1, 10000);
+        Account dest = account(2, 0);
+        when(dao.findAccountById(1)).thenReturn(source);
+        when(dao.updateAccountStates(anyList())).thenAnswer(invocation -> allUpdated(invocation.getArgument(0)));
+        Withdraw withdraw = new Withdraw(new User(), 1000, "", source);
+        PaymentIn payment = new PaymentIn(new User(), 1000, "", dest);
+        when(dao.transfer(withdraw, payment)).thenReturn(true);
+        target.findAccountById(1);
+        target.updateAccountState(account(2, 500));
+
+        // WHEN
+        boolean result = target.transfer(withdraw, payment);
+        target.findAccountById(1);
+
+        // THEN
+        assertTrue(result);
+        verify(dao, times(1)).updateAccountStates(anyList());
+        verify(dao, times(2)).findAccountById(1);
+    }
+
+    private static boolean[] allUpdated(List<?> accounts) {
+        boolean[] updated = new boolean[accounts.size()];
+        Arrays.fill(updated, true);
+        return updated;
+    }
+
+    private static Account account(int id, long balance) {
+        Account account = new Account();
+        account.setId(id);
+        account.setBalance(balance);
+        return account;
+    }
+}
@@ -0,0 +1,92 @@
+package db.dao.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionPoolTest {
+    @TempDir
+    Path dir;
+
+    private ConnectionPool target;
+
+    @AfterEach
+    void tearDown() {
+        if (target != null) target.close();
+    }
+
+    @Test
+    void borrowWaitsNoLongerThanTimeoutWhenPoolIsExhausted() throws SQLException {
+        // GIVEN
+        target = new ConnectionPool(url(), config(0, 2, 100), ConnectionProfile.durable());
+        DAOImpl first = target.borrow();
+        target.borrow();
+
+        // WHEN
+        long start = System.nanoTime();
+        assertThrows(SQLTimeoutException.class, () -> target.borrow());
+        long waited = (System.nanoTime() - start) / 1_000_000;
+
+        // THEN
+        assertEquals(2, target.getOpenConnections());
+        assertTrue(waited >= 90, "Waited " + waited + " ms");
+        target.release(first);
+        assertSame(first, target.borrow(), "Released connection is reused");
+        assertEquals(2, target.getOpenConnections());
+    }
+
+    @Test
+    void minSizeConnectionsAreOpenedUpFront() throws SQLException {
+        // WHEN
+        target = new ConnectionPool(url(), config(2, 3, 100), ConnectionProfile.durable());
+
+        // THEN
+        assertEquals(2, target.getOpenConnections());
+        assertEquals(2, target.getIdleConnections());
+    }
+
+    @Test
+    void invalidSizeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new ConnectionPool(url(), config(0, 0, 100),
+                ConnectionProfile.durable()));
+        assertThrows(IllegalArgumentException.class, () -> new ConnectionPool(url(), config(3, 2, 100),
+                ConnectionProfile.durable()));
+    }
+
+    @Test
+    void closeClosesIdleAndLaterReleasedConnections() throws SQLException {
+        // GIVEN
+        target = new ConnectionPool(url(), config(1, 2, 100), ConnectionProfile.durable());
+        DAOImpl borrowed = target.borrow();
+        DAOImpl other = target.borrow();
+        target.release(other);
+
+        // WHEN
+        target.close();
+        target.release(borrowed);
+
+        // THEN
+        assertTrue(other.db.isClosed());
+        assertTrue(borrowed.db.isClosed());
+        assertEquals(0, target.getOpenConnections());
+        assertThrows(SQLException.class, () -> target.borrow());
+    }
+
+    private String url() {
+        return "jdbc:sqlite:" + dir.resolve("bank.db");
+    }
+
+    static PoolConfig config(int minSize, int maxSize, long borrowTimeoutMillis) {
+        PoolConfig config = new PoolConfig();
+        config.setMinSize(minSize);
+        config.setMaxSize(maxSize);
+        config.setBorrowTimeoutMillis(borrowTimeoutMillis);
+        return config;
+    }
+}
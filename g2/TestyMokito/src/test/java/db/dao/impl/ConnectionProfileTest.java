@@ -0,0 +1,118 @@
+package db.dao.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionProfileTest {
+    @TempDir
+    Path dir;
+
+    private ConnectionPool pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) pool.close();
+    }
+
+    @Test
+    void pragmasAreAppliedToEveryPooledConnection() throws SQLException {
+        // GIVEN
+        pool = new ConnectionPool(url(), ConnectionPoolTest.config(0, 2, 1_000), ConnectionProfile.throughput());
+
+        // WHEN
+        DAOImpl first = pool.borrow();
+        DAOImpl second = pool.borrow();
+
+        // THEN
+        for (DAOImpl dao : new DAOImpl[] { first, second }) {
+            assertEquals("wal", pragma(dao, "journal_mode"));
+            assertEquals("1", pragma(dao, "synchronous"), "NORMAL");
+            assertEquals("2", pragma(dao, "temp_store"), "MEMORY");
+            assertEquals("-64000", pragma(dao, "cache_size"));
+            assertEquals("5000", pragma(dao, "busy_timeout"));
+        }
+        pool.release(first);
+        pool.release(second);
+    }
+
+    @Test
+    void durableProfileSyncsEveryCommit() throws SQLException {
+        // GIVEN
+        pool = new ConnectionPool(url(), ConnectionPoolTest.config(1, 1, 1_000), ConnectionProfile.durable());
+
+        // WHEN
+        DAOImpl dao = pool.borrow();
+
+        // THEN
+        assertEquals("wal", pragma(dao, "journal_mode"));
+        assertEquals("2", pragma(dao, "synchronous"), "FULL");
+        pool.release(dao);
+    }
+
+    @Test
+    void walIsCheckpointedInTheBackground() throws Exception {
+        // GIVEN
+        ConnectionProfile profile = ConnectionProfile.durable();
+        profile.setCheckpointIntervalMillis(20);
+        pool = new ConnectionPool(url(), ConnectionPoolTest.config(1, 2, 1_000), profile);
+        DAOImpl dao = pool.borrow();
+        try (Statement st = dao.db.createStatement()) {
+            st.executeUpdate("CREATE TABLE t (x INTEGER)");
+            st.executeUpdate("INSERT INTO t VALUES (1)");
+        }
+        pool.release(dao);
+
+        // WHEN
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (pool.getCheckpoints() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // THEN
+        assertTrue(pool.getCheckpoints() > 0);
+        dao = pool.borrow();
+        try (Statement st = dao.db.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA wal_checkpoint(PASSIVE)")) {
+            rs.next();
+            assertEquals(rs.getInt(2), rs.getInt(3), "All WAL frames are in the database file");
+        }
+        pool.release(dao);
+    }
+
+    @Test
+    void noCheckpointOutsideWal() throws Exception {
+        // GIVEN
+        ConnectionProfile profile = ConnectionProfile.durable();
+        profile.setJournalMode("DELETE");
+        profile.setCheckpointIntervalMillis(10);
+
+        // WHEN
+        pool = new ConnectionPool(url(), ConnectionPoolTest.config(1, 1, 1_000), profile);
+        Thread.sleep(100);
+
+        // THEN
+        assertEquals(0, pool.getCheckpoints());
+        DAOImpl dao = pool.borrow();
+        assertEquals("delete", pragma(dao, "journal_mode"));
+        pool.release(dao);
+    }
+
+    private String url() {
+        return "jdbc:sqlite:" + dir.resolve("bank.db");
+    }
+
+    private static String pragma(DAOImpl dao, String name) throws SQLException {
+        try (Statement st = dao.db.createStatement(); ResultSet rs = st.executeQuery("PRAGMA " + name)) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+}
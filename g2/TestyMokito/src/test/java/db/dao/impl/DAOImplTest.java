@@ -0,0 +1,96 @@
+package db.dao.impl;
+
+import model.Account;
+import model.Operation;
+import model.User;
+import model.operations.Interest;
+import model.operations.LogIn;
+import model.operations.PaymentIn;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DAOImplTest {
+    @TempDir
+    Path dir;
+
+    private DAOImpl target;
+    private User user;
+    private Account account;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        String url = "jdbc:sqlite:" + dir.resolve("bank.db");
+        SQLiteDB.initializeDB(url);
+        target = SQLiteDB.connect(url, ConnectionProfile.durable());
+        try (Statement st = target.db.createStatement()) {
+            st.executeUpdate("INSERT INTO Role (id, name) VALUES (1, 'Klient')");
+            st.executeUpdate("INSERT INTO User (id, name, role_id) VALUES (1, 'Tomek', 1)");
+            st.executeUpdate("INSERT INTO Account (id, owner_id, ammount) VALUES (1, 1, 10000)");
+        }
+        user = new User();
+        user.setId(1);
+        account = new Account();
+        account.setId(1);
+        account.setOwner(user);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        target.close();
+    }
+
+    @Test
+    void singleInsertAfterBatchWritesHistory() throws SQLException {
+        // GIVEN
+        List<Operation> batch = Arrays.asList(new LogIn(user, "first"), new PaymentIn(user, 500, "second", account));
+        target.logOperations(batch, new boolean[] { true, false });
+
+        // WHEN
+        LogIn single = new LogIn(user, "third");
+        target.logOperation(single, true);
+        target.logOperations(Arrays.asList(new LogIn(user, "fourth")), new boolean[] { true });
+
+        // THEN
+        assertEquals(3, single.getId());
+        assertEquals(4, count("SELECT COUNT(*) FROM Operation"));
+        assertEquals(4, count("SELECT COUNT(*) FROM History"));
+        assertEquals(0, count("SELECT COUNT(*) FROM Operation o LEFT JOIN History h ON h.operation_id = o.id " +
+                "WHERE h.operation_id IS NULL"));
+    }
+
+    @Test
+    void finishedInterestRunKeepsNoClaims() throws SQLException {
+        // GIVEN
+        List<Interest> credits = Collections.singletonList(new Interest(user, 2000, "Interest ...", account));
+        target.creditInterest("2026-10", 0, credits, 1);
+
+        // WHEN
+        target.finishInterestRun("2026-10");
+
+        // THEN
+        assertTrue(target.isInterestRunFinished("2026-10"));
+        assertFalse(target.isInterestRunFinished("2026-11"));
+        assertEquals(0, count("SELECT COUNT(*) FROM InterestCredit"));
+        assertEquals(0, count("SELECT COUNT(*) FROM InterestCheckpoint"));
+        assertEquals(12000, count("SELECT ammount FROM Account WHERE id = 1"));
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Statement st = target.db.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package db.dao.impl;
+
+import db.dao.DAO;
+import model.Role;
+import model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdentityCachingDAOTest {
+    private IdentityCachingDAO target;
+
+    @Mock
+    private DAO dao;
+
+    @BeforeEach
+    void setUp() {
+        target = new IdentityCachingDAO(dao);
+    }
+
+    @Test
+    void usersAreLoadedOnceAndShared() throws SQLException {
+        // GIVEN
+        Role client = role(1, "Klient");
+        when(dao.findUsers()).thenReturn(Arrays.asList(user(1, "Adam", client), user(2, "Ewa", client)));
+
+        // WHEN
+        User adam = target.findUserByName("Adam");
+        User ewa = target.findUserByName("Ewa");
+        User adamAgain = target.findUserByName("Adam");
+
+        // THEN
+        assertSame(adam, adamAgain);
+        assertSame(adam.getRole(), ewa.getRole());
+        assertEquals(1, target.getLoads());
+        assertEquals(3, target.getHits());
+        verify(dao, times(1)).findUsers();
+        verify(dao, never()).findUserByName(anyString());
+    }
+
+    @Test
+    void unknownNameFallsBackToDatabase() throws SQLException {
+        // GIVEN
+        when(dao.findUsers()).thenReturn(Arrays.asList(user(1, "Adam", role(1, "Klient"))));
+        when(dao.findUserByName("Nobody")).thenReturn(null);
+
+        // WHEN
+        User user = target.findUserByName("Nobody");
+
+        // THEN
+        assertNull(user);
+        verify(dao, times(1)).findUserByName("Nobody");
+    }
+
+    @Test
+    void invalidateReloadsUsers() throws SQLException {
+        // GIVEN
+        when(dao.findUsers())
+                .thenReturn(Arrays.asList(user(1, "Adam", role(1, "Klient"))))
+                .thenReturn(Arrays.asList(user(1, "Adam", role(2, "Administrator"))));
+        User before = target.findUserByName("Adam");
+
+        // WHEN
+        target.invalidate();
+        User after = target.findUserByName("Adam");
+
+        // THEN
+        assertEquals("Klient", before.getRole().getName());
+        assertEquals("Administrator", after.getRole().getName());
+        assertEquals(1, target.getVersion());
+        verify(dao, times(2)).findUsers();
+    }
+
+    private static Role role(int id, String name) {
+        Role role = new Role();
+        role.setId(id);
+        role.setName(name);
+        return role;
+    }
+
+    private static User user(int id, String name, Role role) {
+        User user = new User();
+        user.setId(id);
+        user.setName(name);
+        user.setRole(role);
+        return user;
+    }
+}
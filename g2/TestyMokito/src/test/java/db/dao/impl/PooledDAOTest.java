@@ -0,0 +1,106 @@
+package db.dao.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PooledDAOTest {
+    @TempDir
+    Path dir;
+
+    private PooledDAO target;
+    private ExecutorService threads;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        target = new PooledDAO(new ConnectionPool("jdbc:sqlite:" + dir.resolve("bank.db"),
+                ConnectionPoolTest.config(0, 4, 1_000), ConnectionProfile.durable()));
+        threads = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        threads.shutdownNow();
+        target.close();
+    }
+
+    @Test
+    void connectionIsReturnedWhenCallThrows() throws SQLException {
+        // WHEN
+        assertThrows(SQLException.class, () -> target.read(dao -> {
+            throw new SQLException("no such table");
+        }));
+        assertThrows(IllegalStateException.class, () -> target.write(dao -> {
+            throw new IllegalStateException();
+        }));
+
+        // THEN
+        assertEquals(1, target.getOpenConnections());
+        assertEquals(1, target.getIdleConnections());
+    }
+
+    @Test
+    void writesRunOneAtATime() throws Exception {
+        // GIVEN
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger mostInside = new AtomicInteger();
+        List<Future<Object>> writes = new ArrayList<>();
+
+        // WHEN
+        for (int i = 0; i < 8; i++) {
+            writes.add(threads.submit(() -> target.write(dao -> {
+                mostInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inside.decrementAndGet();
+                return null;
+            })));
+        }
+        for (Future<Object> write : writes) {
+            write.get(5, TimeUnit.SECONDS);
+        }
+
+        // THEN
+        assertEquals(1, mostInside.get());
+    }
+
+    @Test
+    void readsRunOnSeparateConnectionsInParallel() throws Exception {
+        // GIVEN
+        CyclicBarrier bothInside = new CyclicBarrier(2);
+        List<Future<DAOImpl>> reads = new ArrayList<>();
+
+        // WHEN
+        for (int i = 0; i < 2; i++) {
+            reads.add(threads.submit(() -> target.read(dao -> {
+                try {
+                    bothInside.await(5, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new SQLException(e);
+                }
+                return dao;
+            })));
+        }
+
+        // THEN
+        assertNotSame(reads.get(0).get(5, TimeUnit.SECONDS), reads.get(1).get(5, TimeUnit.SECONDS));
+        assertEquals(2, target.getOpenConnections());
+    }
+}
@@ -0,0 +1,106 @@
+package db.dao.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaUpgradeTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void bankDbKeepsOperationConstraintsExceptUser() throws Exception {
+        // GIVEN
+        Path file = dir.resolve("bank.db");
+        Files.copy(Paths.get("bank.db"), file);
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file)) {
+            long operations = number(conn, "SELECT COUNT(*) FROM Operation");
+            long ammounts = number(conn, "SELECT CAST(ROUND(SUM(ammount) * 100) AS INTEGER) FROM Operation");
+
+            // WHEN
+            SchemaUpgrade.apply(conn);
+
+            // THEN
+            String sql = text(conn, "SELECT sql FROM sqlite_master WHERE type = 'table' AND name = 'Operation'");
+            assertTrue(sql.matches("(?s).*`type`\\s+INTEGER NOT NULL.*"), sql);
+            assertTrue(sql.matches("(?s).*`user_id`\\s+INTEGER,.*"), "Failed logins have no user: " + sql);
+            assertTrue(sql.matches("(?s).*`ammount`\\s+INTEGER.*"), sql);
+            assertTrue(sql.contains("REFERENCES Account ( id )"), sql);
+            assertEquals(operations, number(conn, "SELECT COUNT(*) FROM Operation"));
+            assertEquals(ammounts, number(conn, "SELECT SUM(ammount) FROM Operation"));
+            assertEquals(0, number(conn, "SELECT COUNT(*) FROM Operation WHERE typeof(ammount) = 'real'"));
+            try (Statement st = conn.createStatement()) {
+                assertThrows(SQLException.class, () -> st.executeUpdate("INSERT INTO Operation " +
+                        "(type, ammount, description, date, user_id) VALUES (NULL, NULL, 'x', 'd', 1)"));
+                st.executeUpdate("INSERT INTO Operation (type, ammount, description, date, user_id) " +
+                        "VALUES (2, NULL, 'Zła nazwa użytkownika x', 'd', NULL)");
+            }
+        }
+    }
+
+    @Test
+    void initializedDbKeepsItsNullableColumns() throws Exception {
+        // GIVEN
+        String url = "jdbc:sqlite:" + dir.resolve("new.db");
+
+        // WHEN
+        SQLiteDB.initializeDB(url);
+
+        // THEN
+        try (Connection conn = DriverManager.getConnection(url); Statement st = conn.createStatement()) {
+            st.executeUpdate("INSERT INTO Operation (type, ammount, description, date, user_id) " +
+                    "VALUES (2, NULL, 'Zła nazwa użytkownika x', 'd', NULL)");
+            assertEquals(6, number(conn, "PRAGMA user_version"));
+            assertTrue(text(conn, "SELECT sql FROM sqlite_master WHERE type = 'table' AND name = 'Operation'")
+                    .matches("(?s).*`ammount`\\s+INTEGER.*"));
+        }
+    }
+
+    @Test
+    void failedUpgradeClosesThePool() throws Exception {
+        // GIVEN
+        // no Role table, the second step cannot alter it
+        String url = "jdbc:sqlite:" + dir.resolve("empty.db");
+        long before = maintenanceThreads();
+
+        // WHEN
+        assertThrows(SQLException.class, () -> SQLiteDB.createDAO(url));
+
+        // THEN
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (maintenanceThreads() > before && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(before, maintenanceThreads());
+    }
+
+    private static long maintenanceThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.isAlive() && "sqlite-pool-maintenance".equals(t.getName()))
+                .count();
+    }
+
+    private static long number(Connection conn, String sql) throws SQLException {
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static String text(Connection conn, String sql) throws SQLException {
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package db.dao.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementCacheTest {
+    private static final String SELECT = "SELECT ammount FROM Account WHERE id = ?";
+
+    @TempDir
+    Path dir;
+
+    private Connection connection;
+    private StatementCache target;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("bank.db"));
+        try (Statement st = connection.createStatement()) {
+            st.executeUpdate("CREATE TABLE Account (id INTEGER PRIMARY KEY, ammount INTEGER)");
+            st.executeUpdate("INSERT INTO Account (id, ammount) VALUES (1, 100), (2, 200)");
+        }
+        target = new StatementCache(connection);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        target.close();
+        connection.close();
+    }
+
+    @Test
+    void statementIsPreparedOncePerConnection() throws SQLException {
+        // WHEN
+        PreparedStatement first = target.prepare(SELECT);
+        long firstAmmount = ammount(first, 1);
+        PreparedStatement second = target.prepare(SELECT);
+        long secondAmmount = ammount(second, 2);
+
+        // THEN
+        assertSame(first, second);
+        assertEquals(100, firstAmmount);
+        assertEquals(200, secondAmmount);
+        assertEquals(1, target.getMisses());
+        assertEquals(1, target.getHits());
+    }
+
+    @Test
+    void connectionsDoNotShareStatements() throws SQLException {
+        // GIVEN
+        try (Connection other = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("bank.db"))) {
+            StatementCache otherCache = new StatementCache(other);
+
+            // WHEN
+            PreparedStatement st = target.prepare(SELECT);
+            PreparedStatement otherSt = otherCache.prepare(SELECT);
+
+            // THEN
+            assertNotSame(st, otherSt);
+            assertSame(connection, st.getConnection());
+            assertSame(other, otherSt.getConnection());
+            otherCache.close();
+        }
+    }
+
+    @Test
+    void batchStatementIsNotTheSingleOne() throws SQLException {
+        // WHEN
+        PreparedStatement single = target.prepare(SELECT);
+        PreparedStatement batch = target.prepareBatch(SELECT);
+
+        // THEN
+        assertNotSame(single, batch);
+        assertSame(batch, target.prepareBatch(SELECT));
+    }
+
+    @Test
+    void generatedKeysFlagIsPartOfTheKey() throws SQLException {
+        // GIVEN
+        String insert = "INSERT INTO Account (ammount) VALUES (?)";
+
+        // WHEN
+        PreparedStatement plain = target.prepare(insert);
+        PreparedStatement withKeys = target.prepare(insert, Statement.RETURN_GENERATED_KEYS);
+
+        // THEN
+        assertNotSame(plain, withKeys);
+        assertSame(plain, target.prepare(insert, Statement.NO_GENERATED_KEYS));
+        assertSame(withKeys, target.prepare(insert, Statement.RETURN_GENERATED_KEYS));
+        assertEquals(2, target.getMisses());
+    }
+
+    @Test
+    void closeClosesStatementsAndRejectsPrepare() throws SQLException {
+        // GIVEN
+        PreparedStatement single = target.prepare(SELECT);
+        PreparedStatement batch = target.prepareBatch(SELECT);
+
+        // WHEN
+        target.close();
+
+        // THEN
+        assertTrue(single.isClosed());
+        assertTrue(batch.isClosed());
+        assertFalse(connection.isClosed(), "The connection belongs to the caller");
+        assertThrows(SQLException.class, () -> target.prepare(SELECT));
+        assertThrows(SQLException.class, () -> target.prepareBatch(SELECT));
+        target.close();
+    }
+
+    private static long ammount(PreparedStatement st, int id) throws SQLException {
+        st.setInt(1, id);
+        try (ResultSet rs = st.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Currency;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @Test
+    void percentRoundsHalfEven() {
+        assertEquals(20000, Money.percent(100000, 2000));
+        // 0.5 grosza rounds to the even neighbour
+        assertEquals(2, Money.percent(25, 1000));
+        assertEquals(4, Money.percent(35, 1000));
+        assertEquals(3, Money.percent(26, 1000));
+        assertEquals(-2, Money.percent(-25, 1000));
+    }
+
+    @Test
+    void legacyAmountsConvertExactly() {
+        assertEquals(134512, Money.toMinor(1345.12, Money.PLN));
+        assertEquals(1143385, Money.toMinor(11433.85, Money.PLN));
+        assertEquals(15820, Money.toMinor(158.2, Money.PLN));
+        assertEquals(30, Money.toMinor(0.1 + 0.2, Money.PLN));
+    }
+
+    @Test
+    void formatAndParse() {
+        assertEquals("12.05", Money.format(1205, Money.PLN));
+        assertEquals("-0.07", Money.format(-7, Money.PLN));
+        assertEquals("0.00", Money.format(0, Money.PLN));
+        assertEquals("150", Money.format(150, Currency.getInstance("JPY")));
+        assertEquals(Money.pln(1205), Money.parse("12.05", Money.PLN));
+        assertEquals("12.05 PLN", Money.pln(1205).toString());
+        assertThrows(ArithmeticException.class, () -> Money.parse("12.055", Money.PLN));
+    }
+
+    @Test
+    void arithmeticFailsOnOverflow() {
+        assertThrows(ArithmeticException.class, () -> Money.add(Long.MAX_VALUE, 1));
+        assertThrows(ArithmeticException.class, () -> Money.percent(Long.MAX_VALUE, 2));
+    }
+
+    @Test
+    void currenciesAreNotMixed() {
+        Money pln = Money.pln(100);
+        Money eur = Money.of(100, Currency.getInstance("EUR"));
+
+        assertEquals(Money.pln(150), pln.plus(Money.pln(50)));
+        assertNotEquals(pln, eur);
+        assertThrows(IllegalArgumentException.class, () -> pln.plus(eur));
+    }
+
+    @Test
+    void accountRefusesOverdraft() {
+        Account account = new Account();
+        account.setBalance(1000);
+
+        assertFalse(account.outcome(1001));
+        assertTrue(account.outcome(1000));
+        assertTrue(account.income(15820));
+        assertEquals(15820, account.getBalance());
+        assertEquals(Money.PLN, account.getCurrency());
+    }
+}
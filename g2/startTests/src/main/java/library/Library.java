@@ -1,35 +1,40 @@
 package library;
 
-import java.util.ArrayList;
-import java.util.List;
-
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Books indexed by (author, title), copies of one title wait in a queue under
+ * its key so borrowing is a constant time lookup without shifting a list.
+ */
 public class Library {
 
-    private List<Book> books = new ArrayList<>();
+    record Key(String author, String title) {
+    }
+
+    private Map<Key, ArrayDeque<Book>> books = new HashMap<>();
 
     public void init(Book[] books){
         for(Book b : books){
-            this.books.add(b);
+            this.books.computeIfAbsent(new Key(b.getAuthor(), b.getTitle()), k -> new ArrayDeque<>()).addLast(b);
         }
     }
 
     public Book borrow(String author, String title){
-        int i = searchForBook(author, title);
-        if (i<0) return null;
-        Book b = books.get(i);
-        this.books.remove(i);
+        Key key = new Key(author, title);
+        ArrayDeque<Book> copies = books.get(key);
+        if (copies == null) return null;
+        Book b = copies.pollFirst();
+        if (copies.isEmpty()) books.remove(key);
         return b;
     }
 
-    private int searchForBook(String author, String title) {
-        for (int k=0; k<books.size(); k++){
-            Book b = books.get(k);
-            if (b.getAuthor().equals(author) && b.getTitle().equals(title)){
-                return k;
-            }
-        }
-        return -1;
+    /**
+     * Copies of the title left in the library.
+     */
+    public int available(String author, String title) {
+        ArrayDeque<Book> copies = books.get(new Key(author, title));
+        return copies == null ? 0 : copies.size();
     }
-
-
 }
@@ -6,8 +6,8 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestFactory;
 
 import java.lang.reflect.Field;
-import java.util.Arrays;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -38,13 +38,13 @@ class LibraryTest {
         lib.init(books);
         //*** THEN ***
         try {
-            List<Book> listBooks;
+            Map<Library.Key, ArrayDeque<Book>> shelf;
             Field f = lib.getClass().getDeclaredField("books");
             f.setAccessible(true);
-            listBooks = (List<Book>) f.get(lib);
+            shelf = (Map<Library.Key, ArrayDeque<Book>>) f.get(lib);
             f.setAccessible(false);
-            assertEquals(3, listBooks.size());
-            assertEquals("Silmalirion", listBooks.get(0).getTitle());
+            assertEquals(3, shelf.size());
+            assertEquals("Silmalirion", shelf.get(new Library.Key("J.R.R. Tolkien", "Silmalirion")).peekFirst().getTitle());
         }
         catch(Exception e){
 
@@ -59,23 +59,14 @@ class LibraryTest {
                 new Book("J. Joice", "Ulisses"),
                 new Book("M. Twain", "Tom Sawyer"),
         };
-        List<Book> listBooks = null;
-        try {
-            Field f = lib.getClass().getDeclaredField("books");
-            f.setAccessible(true);
-            listBooks = (List<Book>) f.get(lib);
-            listBooks.addAll(Arrays.asList(books));
-            f.setAccessible(false);
-        }
-        catch(Exception e){
-
-        }
+        lib.init(books);
         //*** WHEN ***
         Book b = lib.borrow("J. Joice", "Ulisses");
         //*** THEN ***
         assertNotNull(b);
         assertEquals("J. Joice",b.getAuthor());
-        assertEquals(2, listBooks.size());
+        assertEquals(0, lib.available("J. Joice", "Ulisses"));
+        assertEquals(1, lib.available("M. Twain", "Tom Sawyer"));
     }
 
     @Test
@@ -86,22 +77,28 @@ class LibraryTest {
                 new Book("J. Joice", "Ulisses"),
                 new Book("M. Twain", "Tom Sawyer"),
         };
-        List<Book> listBooks = null;
-        try {
-            Field f = lib.getClass().getDeclaredField("books");
-            f.setAccessible(true);
-            listBooks = (List<Book>) f.get(lib);
-            listBooks.addAll(Arrays.asList(books));
-            f.setAccessible(false);
-        }
-        catch(Exception e){
-
-        }
+        lib.init(books);
         //*** WHEN ***
         Book b = lib.borrow("J.R.R. Tolkien", "Dwie Wieże");
         //*** THEN ***
         assertNull(b,"This book should not exist");
-        assertEquals(3, listBooks.size());
+        assertEquals(1, lib.available("J.R.R. Tolkien", "Silmalirion"));
+    }
+
+    @Test
+    void borrowCopies() {
+        //*** GIVEN ***
+        Book first = new Book("J. Joice", "Ulisses");
+        Book second = new Book("J. Joice", "Ulisses");
+        lib.init(new Book[]{first, second});
+        //*** WHEN ***
+        Book b1 = lib.borrow("J. Joice", "Ulisses");
+        Book b2 = lib.borrow("J. Joice", "Ulisses");
+        Book b3 = lib.borrow("J. Joice", "Ulisses");
+        //*** THEN ***
+        assertSame(first, b1);
+        assertSame(second, b2);
+        assertNull(b3, "All copies are borrowed");
     }
 
      /*Zadanie, modyfikacje kodu + odpowiednie testy:
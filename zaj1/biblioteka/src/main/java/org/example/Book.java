@@ -1,7 +1,9 @@
 package org.example;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class Book {
-    private static int lastId = 0;
+    private static final AtomicInteger lastId = new AtomicInteger();
     private final int Id;
     private String author;
     private String title;
@@ -10,7 +12,18 @@ public class Book {
     {
         this.author = author;
         this.title = title;
-        this.Id = ++lastId;
+        this.Id = lastId.incrementAndGet();
+    }
+
+    /**
+     * A book restored with the id it had, new books get higher ids.
+     */
+    Book(int id, String author, String title)
+    {
+        this.author = author;
+        this.title = title;
+        this.Id = id;
+        lastId.accumulateAndGet(id, Math::max);
     }
 
     public int getId() {
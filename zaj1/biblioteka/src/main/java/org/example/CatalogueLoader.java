@@ -0,0 +1,331 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Loads a catalogue export chunk by chunk instead of as one Book array.
+ * Lines are read into chunks, parsed into books (on worker threads when
+ * threads &gt; 1) and handed to the sink in file order, e.g. library::init,
+ * so the library and its index grow while the file is read. At most
+ * 2 * threads chunks are held at a time.
+ * <p>
+ * CSV: one "author,title" line per book, fields may be quoted with "" for a
+ * quote inside, a first line "author,title" is skipped. JSON lines: one
+ * object per line with string fields "author" and "title", other fields are
+ * ignored. Blank lines are skipped in both.
+ */
+public class CatalogueLoader {
+
+    public enum Format {
+        CSV, JSON_LINES;
+
+        /**
+         * By the extension of the file: .csv, .jsonl or .ndjson.
+         */
+        public static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase();
+            if (name.endsWith(".csv")) return CSV;
+            if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) return JSON_LINES;
+            throw new IllegalArgumentException("Unknown catalogue format: " + name);
+        }
+    }
+
+    /**
+     * Called on the loading thread about once a second and when loading ends.
+     */
+    public interface Progress {
+        void loaded(long records, double recordsPerSecond);
+    }
+
+    private final Format format;
+    private final int threads;
+    private final int chunkSize;
+    private final Progress progress;
+
+    public CatalogueLoader(Format format) {
+        this(format, 1, 4096, null);
+    }
+
+    /**
+     * @param threads   parsing threads, 1 parses on the loading thread
+     * @param chunkSize lines in a chunk
+     * @param progress  may be null
+     */
+    public CatalogueLoader(Format format, int threads, int chunkSize, Progress progress) {
+        if (threads < 1 || chunkSize < 1) throw new IllegalArgumentException("threads and chunkSize must be positive");
+        this.format = format;
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+        this.progress = progress;
+    }
+
+    /**
+     * @return number of books loaded
+     */
+    public long load(Path file, Consumer<Book[]> sink) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return load(in, sink);
+        }
+    }
+
+    public long load(BufferedReader in, Consumer<Book[]> sink) throws IOException {
+        long start = System.nanoTime();
+        long[] loaded = new long[1];
+        long[] reported = new long[] { start };
+        Consumer<Book[]> counting = books -> {
+            sink.accept(books);
+            loaded[0] += books.length;
+            long now = System.nanoTime();
+            if (progress != null && now - reported[0] >= 1_000_000_000L) {
+                reported[0] = now;
+                progress.loaded(loaded[0], rate(loaded[0], start, now));
+            }
+        };
+        if (threads == 1) {
+            long line = 1;
+            for (List<String> chunk; !(chunk = readChunk(in, line)).isEmpty(); ) {
+                counting.accept(parse(chunk, line));
+                line += chunk.size();
+            }
+        } else {
+            loadParallel(in, counting);
+        }
+        if (progress != null) progress.loaded(loaded[0], rate(loaded[0], start, System.nanoTime()));
+        return loaded[0];
+    }
+
+    private void loadParallel(BufferedReader in, Consumer<Book[]> sink) throws IOException {
+        ExecutorService parsers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "catalogue-parser");
+            t.setDaemon(true);
+            return t;
+        });
+        ArrayDeque<Future<Book[]>> pending = new ArrayDeque<>();
+        try {
+            long line = 1;
+            while (true) {
+                List<String> chunk = readChunk(in, line);
+                if (chunk.isEmpty()) break;
+                long first = line;
+                pending.addLast(parsers.submit(() -> parse(chunk, first)));
+                line += chunk.size();
+                if (pending.size() >= 2 * threads) sink.accept(next(pending));
+            }
+            while (!pending.isEmpty()) {
+                sink.accept(next(pending));
+            }
+        } finally {
+            parsers.shutdownNow();
+        }
+    }
+
+    private static Book[] next(ArrayDeque<Future<Book[]>> pending) throws IOException {
+        try {
+            return pending.removeFirst().get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Loading interrupted", e);
+        }
+    }
+
+    private List<String> readChunk(BufferedReader in, long line) throws IOException {
+        List<String> chunk = new ArrayList<>(chunkSize);
+        String s;
+        while (chunk.size() < chunkSize && (s = in.readLine()) != null) {
+            if (line == 1 && chunk.isEmpty() && !s.isEmpty() && s.charAt(0) == '\uFEFF') s = s.substring(1);
+            chunk.add(s);
+        }
+        return chunk;
+    }
+
+    /**
+     * @param line number of the first line of the chunk, for error messages
+     */
+    private Book[] parse(List<String> chunk, long line) throws IOException {
+        List<Book> books = new ArrayList<>(chunk.size());
+        String[] fields = new String[2];
+        for (int i = 0; i < chunk.size(); i++) {
+            String s = chunk.get(i);
+            if (s.isBlank()) continue;
+            try {
+                if (format == Format.CSV) {
+                    parseCsv(s, fields);
+                    if (line + i == 1 && "author".equalsIgnoreCase(fields[0]) && "title".equalsIgnoreCase(fields[1])) continue;
+                } else {
+                    parseJson(s, fields);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Line " + (line + i) + ": " + e.getMessage());
+            }
+            books.add(new Book(fields[0], fields[1]));
+        }
+        return books.toArray(new Book[0]);
+    }
+
+    static void parseCsv(String s, String[] fields) {
+        StringBuilder sb = new StringBuilder();
+        int field = 0;
+        int i = 0;
+        while (true) {
+            if (field == 2) throw new IllegalArgumentException("more than two fields");
+            sb.setLength(0);
+            if (i < s.length() && s.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= s.length()) throw new IllegalArgumentException("unterminated quote");
+                    char c = s.charAt(i++);
+                    if (c != '"') {
+                        sb.append(c);
+                    } else if (i < s.length() && s.charAt(i) == '"') {
+                        sb.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                if (i < s.length() && s.charAt(i) != ',') throw new IllegalArgumentException("text after a quoted field");
+            } else {
+                int end = s.indexOf(',', i);
+                if (end < 0) end = s.length();
+                sb.append(s, i, end);
+                i = end;
+            }
+            fields[field++] = sb.toString();
+            if (i >= s.length()) break;
+            i++;
+        }
+        if (field != 2) throw new IllegalArgumentException("expected author,title");
+    }
+
+    static void parseJson(String s, String[] fields) {
+        fields[0] = fields[1] = null;
+        int[] pos = new int[] { skipSpace(s, 0) };
+        expect(s, pos, '{');
+        if (peek(s, pos) == '}') {
+            pos[0]++;
+        } else {
+            while (true) {
+                String name = string(s, pos);
+                expect(s, pos, ':');
+                if (peek(s, pos) == '"') {
+                    String value = string(s, pos);
+                    if (name.equals("author")) fields[0] = value;
+                    else if (name.equals("title")) fields[1] = value;
+                } else {
+                    skipValue(s, pos);
+                }
+                char c = peek(s, pos);
+                pos[0]++;
+                if (c == '}') break;
+                if (c != ',') throw new IllegalArgumentException("expected , or }");
+            }
+        }
+        if (skipSpace(s, pos[0]) != s.length()) throw new IllegalArgumentException("text after the object");
+        if (fields[0] == null || fields[1] == null) throw new IllegalArgumentException("author or title missing");
+    }
+
+    private static String string(String s, int[] pos) {
+        expect(s, pos, '"');
+        StringBuilder sb = new StringBuilder();
+        int i = pos[0];
+        while (true) {
+            if (i >= s.length()) throw new IllegalArgumentException("unterminated string");
+            char c = s.charAt(i++);
+            if (c == '"') break;
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (i >= s.length()) throw new IllegalArgumentException("unterminated string");
+            char e = s.charAt(i++);
+            switch (e) {
+                case '"', '\\', '/' -> sb.append(e);
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> {
+                    if (i + 4 > s.length()) throw new IllegalArgumentException("bad \\u escape");
+                    try {
+                        sb.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException("bad \\u escape");
+                    }
+                    i += 4;
+                }
+                default -> throw new IllegalArgumentException("bad escape \\" + e);
+            }
+        }
+        pos[0] = i;
+        return sb.toString();
+    }
+
+    /**
+     * Skips a number, literal, object or array.
+     */
+    private static void skipValue(String s, int[] pos) {
+        int depth = 0;
+        int i = pos[0];
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c == '"') {
+                pos[0] = i;
+                string(s, pos);
+                i = pos[0];
+                continue;
+            }
+            if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) break;
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                break;
+            }
+            i++;
+        }
+        if (depth != 0) throw new IllegalArgumentException("unterminated value");
+        pos[0] = i;
+    }
+
+    private static void expect(String s, int[] pos, char c) {
+        if (peek(s, pos) != c) throw new IllegalArgumentException("expected " + c);
+        pos[0]++;
+    }
+
+    /**
+     * Skips white space and returns the next character, 0 at the end.
+     */
+    private static char peek(String s, int[] pos) {
+        pos[0] = skipSpace(s, pos[0]);
+        return pos[0] < s.length() ? s.charAt(pos[0]) : 0;
+    }
+
+    private static int skipSpace(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static double rate(long records, long start, long now) {
+        double seconds = (now - start) / 1e9;
+        return seconds > 0 ? records / seconds : 0;
+    }
+}
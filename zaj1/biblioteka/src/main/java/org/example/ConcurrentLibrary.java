@@ -0,0 +1,106 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Library which many terminals can use at once. Every title has a counter of
+ * copies on the shelf and a slot per copy; borrow takes a copy off the
+ * counter with a compare-and-set and then empties one slot, giveBack fills
+ * the slot of its copy again and increments the counter. Neither locks.
+ * <p>
+ * init is not atomic against borrow and giveBack, the catalogue should be
+ * loaded before the library is shared.
+ */
+public class ConcurrentLibrary {
+
+    private static final class Title {
+        /** all copies of the title, copy i belongs to slot i */
+        final Book[] copies;
+        /** copies on the shelf, never more than the non-empty slots */
+        final AtomicInteger available;
+        /** copy i of the title while it is on the shelf, null while borrowed */
+        final AtomicReferenceArray<Book> shelf;
+
+        Title(Book[] copies, Book[] onShelf) {
+            int n = 0;
+            for (Book b : onShelf) {
+                if (b != null) n++;
+            }
+            this.copies = copies;
+            this.available = new AtomicInteger(n);
+            this.shelf = new AtomicReferenceArray<>(onShelf);
+        }
+    }
+
+    private record Copy(Title title, int slot) {
+    }
+
+    private final ConcurrentHashMap<Library.Key, Title> titles = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Copy> copies = new ConcurrentHashMap<>();
+
+    /**
+     * Adds the books, copies of a title already in the library are kept with
+     * the new ones.
+     */
+    public synchronized void init(Book[] books) {
+        Map<Library.Key, List<Book>> byTitle = new HashMap<>();
+        for (Book b : books) {
+            byTitle.computeIfAbsent(Library.Key.of(b), k -> new ArrayList<>()).add(b);
+        }
+        for (Map.Entry<Library.Key, List<Book>> e : byTitle.entrySet()) {
+            Title old = titles.get(e.getKey());
+            int had = old == null ? 0 : old.copies.length;
+            Book[] all = new Book[had + e.getValue().size()];
+            Book[] onShelf = new Book[all.length];
+            for (int i = 0; i < had; i++) {
+                all[i] = old.copies[i];
+                onShelf[i] = old.shelf.get(i);
+            }
+            for (int i = had; i < all.length; i++) {
+                all[i] = onShelf[i] = e.getValue().get(i - had);
+            }
+            Title title = new Title(all, onShelf);
+            for (int i = 0; i < all.length; i++) {
+                copies.put(all[i].getId(), new Copy(title, i));
+            }
+            titles.put(e.getKey(), title);
+        }
+    }
+
+    public Book borrow(String author, String title) {
+        Title t = titles.get(new Library.Key(author, title));
+        if (t == null) return null;
+        int n;
+        do {
+            n = t.available.get();
+            if (n == 0) return null;
+        } while (!t.available.compareAndSet(n, n - 1));
+        // a copy is reserved, so a full slot is there even if others take theirs first
+        AtomicReferenceArray<Book> shelf = t.shelf;
+        for (int i = 0; ; i = (i + 1) % shelf.length()) {
+            Book b = shelf.get(i);
+            if (b != null && shelf.compareAndSet(i, b, null)) return b;
+        }
+    }
+
+    public boolean giveBack(Book book) {
+        Copy c = copies.get(book.getId());
+        if (c == null || !c.title.shelf.compareAndSet(c.slot, null, book)) return false;
+        c.title.available.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Copies of the title which can be borrowed now.
+     */
+    public int available(String author, String title) {
+        Title t = titles.get(new Library.Key(author, title));
+        return t == null ? 0 : t.available.get();
+    }
+}
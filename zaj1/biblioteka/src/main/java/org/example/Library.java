@@ -1,42 +1,151 @@
 package org.example;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Catalogue indexed by (author, title). Copies of a title on the shelf wait in
+ * a queue under its key and borrowed copies are kept by id, so borrow and
+ * giveBack find a book in constant time and never shift a list.
+ * <p>
+ * A {@link SearchIndex} given to the constructor is kept up to date with the
+ * titles on the shelf.
+ */
 public class Library {
-    private final List<Book> books = new ArrayList<Book>();
-    private final List<Book> borrowed = new ArrayList<Book>();
+    public record Key(String author, String title) {
+        static Key of(Book book) {
+            return new Key(book.getAuthor(), book.getTitle());
+        }
+    }
+
+    private final Map<Key, ArrayDeque<Book>> books = new HashMap<>();
+    private final Map<Integer, Book> borrowed = new HashMap<>();
+    private final SearchIndex index;
+    private LibraryStore store;
+
+    public Library() {
+        this(null);
+    }
+
+    public Library(SearchIndex index) {
+        this.index = index;
+    }
 
     public void init(Book[] books) {
-        this.books.addAll(Arrays.asList(books));
+        if (store != null) {
+            for (Book b : books) {
+                store.added(b);
+            }
+            store.commit();
+        }
+        for (Book b : books) {
+            shelve(b);
+        }
     }
 
     public Book borrow(String author, String title) {
-        int i = searchForBook(this.books, author, title);
-        if (i<0) return null;
-        Book b = this.books.get(i);
-        this.books.remove(i);
-        this.borrowed.add(b);
+        Key key = new Key(author, title);
+        ArrayDeque<Book> copies = this.books.get(key);
+        if (copies == null) return null;
+        Book b = copies.peekFirst();
+        // written first, a failed write leaves the library as it was
+        if (store != null) {
+            store.borrowed(b);
+            store.commit();
+        }
+        copies.pollFirst();
+        if (copies.isEmpty()) {
+            this.books.remove(key);
+            if (index != null) index.remove(key);
+        }
+        this.borrowed.put(b.getId(), b);
         return b;
     }
 
     public boolean giveBack(Book book) {
-        int i = searchForBook(this.borrowed, book.getAuthor(), book.getTitle());
-        if (i<0) return false;
-        Book b = this.borrowed.get(i);
-        this.borrowed.remove(i);
-        this.books.add(b);
+        Book b = this.borrowed.get(book.getId());
+        if (b == null) return false;
+        if (store != null) {
+            store.returned(b);
+            store.commit();
+        }
+        this.borrowed.remove(b.getId());
+        shelve(b);
         return true;
     }
 
-    private int searchForBook(List<Book> books, String author, String title) {
-        for (int i=0; i<books.size(); ++i) {
-            Book b = books.get(i);
-            if (b.getAuthor() == author && b.getTitle() == title) {
-                return i;
+    /**
+     * Copies of the title which can be borrowed now.
+     */
+    public int available(String author, String title) {
+        ArrayDeque<Book> copies = this.books.get(new Key(author, title));
+        return copies == null ? 0 : copies.size();
+    }
+
+    /**
+     * Changes are written to the store from now on.
+     */
+    void attach(LibraryStore store) {
+        this.store = store;
+    }
+
+    Map<Key, ArrayDeque<Book>> shelf() {
+        return books;
+    }
+
+    Map<Integer, Book> lent() {
+        return borrowed;
+    }
+
+    /**
+     * Puts the loaded copies of a title back on the shelf, in this order.
+     * Nothing is written to the store.
+     */
+    void restoreShelf(Key key, ArrayDeque<Book> copies) {
+        this.books.put(key, copies);
+        if (index != null) index.add(key);
+    }
+
+    /**
+     * Puts a loaded borrowed copy back, nothing is written to the store.
+     */
+    void restoreLent(Book b) {
+        this.borrowed.put(b.getId(), b);
+    }
+
+    /**
+     * Replays the borrowing of the copy with this id, nothing is written to
+     * the store.
+     */
+    boolean restoreBorrow(Key key, int id) {
+        ArrayDeque<Book> copies = this.books.get(key);
+        if (copies == null) return false;
+        for (Book b : copies) {
+            if (b.getId() == id) {
+                copies.remove(b);
+                if (copies.isEmpty()) {
+                    this.books.remove(key);
+                    if (index != null) index.remove(key);
+                }
+                this.borrowed.put(id, b);
+                return true;
             }
         }
-        return -1;
+        return false;
+    }
+
+    /**
+     * Replays a copy added by init, nothing is written to the store.
+     */
+    void restoreAdded(Book b) {
+        shelve(b);
+    }
+
+    private void shelve(Book b) {
+        Key key = Key.of(b);
+        ArrayDeque<Book> copies = this.books.computeIfAbsent(key, k -> new ArrayDeque<>());
+        copies.addLast(b);
+        if (copies.size() == 1 && index != null) index.add(key);
     }
 }
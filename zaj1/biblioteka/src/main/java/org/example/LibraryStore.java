@@ -0,0 +1,391 @@
+package org.example;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Keeps a {@link Library} on disk: a binary snapshot of all copies and which
+ * of them are borrowed, plus a change log of what happened since. Opening a
+ * store maps the snapshot, restores the copies with their ids and replays the
+ * short log, so a restart does not go through init for every book.
+ * <p>
+ * Snapshot {@value #SNAPSHOT}: magic, version, sequence number of the last
+ * change it contains, number of titles and of borrowed copies; per title its
+ * author, title and the ids of the copies on the shelf in shelf order; per
+ * borrowed copy the index of its title and its id; a CRC32 of all of it at
+ * the end. It is written to a temporary file and renamed over the old one,
+ * so a crash leaves either snapshot whole.
+ * <p>
+ * Log {@value #LOG}: records of length (4), seq (8), type (1), id (4), author
+ * and title of the copy except when it is returned, CRC32 (4). Strings are
+ * an int length (-1 for null) and UTF-8. The records of a library operation
+ * are written before the library changes; when writing fails the log is cut
+ * back to the previous operation and the library stays as it was. When even
+ * that fails, the store refuses all changes until a snapshot has replaced the
+ * log, records appended after the torn ones would be lost on replay. A torn
+ * record at the end is ignored. Records already in the snapshot (seq not
+ * above its sequence) are skipped, so a crash between renaming the snapshot
+ * and clearing the log loses nothing.
+ */
+public class LibraryStore implements AutoCloseable {
+
+    static final String SNAPSHOT = "library.snap";
+    static final String LOG = "library.log";
+    private static final int MAGIC = 0x4C494253;
+    private static final int VERSION = 1;
+
+    private static final byte ADDED = 1;
+    private static final byte BORROWED = 2;
+    private static final byte RETURNED = 3;
+
+    private final Path directory;
+    private final boolean sync;
+    private final Library library;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private byte[] scratch = new byte[256];
+    FileChannel log;
+    private long seq;
+    // state after the last committed operation
+    private long committedSeq;
+    private long committedSize;
+    // set when the log could not be cut back, the log ends with a torn operation
+    private IOException failure;
+
+    private LibraryStore(Path directory, boolean sync, Library library) {
+        this.directory = directory;
+        this.sync = sync;
+        this.library = library;
+    }
+
+    public static LibraryStore open(Path directory, SearchIndex index) throws IOException {
+        return open(directory, index, false);
+    }
+
+    /**
+     * Loads the library kept in the directory, an empty one when there is none.
+     * @param index may be null
+     * @param sync  force every change to the disk, without it a crash of the
+     *              machine (not of the process) may lose the last changes
+     */
+    public static LibraryStore open(Path directory, SearchIndex index, boolean sync) throws IOException {
+        Files.createDirectories(directory);
+        Library library = new Library(index);
+        LibraryStore store = new LibraryStore(directory, sync, library);
+        store.seq = store.loadSnapshot();
+        store.seq = store.replay();
+        store.committedSeq = store.seq;
+        store.log = FileChannel.open(directory.resolve(LOG), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        store.committedSize = store.log.size();
+        library.attach(store);
+        return store;
+    }
+
+    public Library getLibrary() {
+        return library;
+    }
+
+    /**
+     * Writes a snapshot of the library and empties the log, a store which
+     * refused changes after a failed write accepts them again.
+     */
+    public void snapshot() throws IOException {
+        Path tmp = directory.resolve(SNAPSHOT + ".tmp");
+        Map<Library.Key, ArrayDeque<Book>> shelf = library.shelf();
+        Map<Library.Key, Integer> titleIndex = new HashMap<>(shelf.size() * 4 / 3 + 1);
+        List<Library.Key> titles = new ArrayList<>(shelf.keySet());
+        for (Library.Key key : titles) {
+            titleIndex.put(key, titleIndex.size());
+        }
+        for (Book b : library.lent().values()) {
+            titleIndex.computeIfAbsent(Library.Key.of(b), k -> {
+                titles.add(k);
+                return titles.size() - 1;
+            });
+        }
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            CRC32 sum = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024), sum));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(seq);
+            out.writeInt(titles.size());
+            out.writeInt(library.lent().size());
+            for (Library.Key key : titles) {
+                writeString(out, key.author());
+                writeString(out, key.title());
+                ArrayDeque<Book> copies = shelf.get(key);
+                out.writeInt(copies == null ? 0 : copies.size());
+                if (copies == null) continue;
+                for (Book b : copies) {
+                    out.writeInt(b.getId());
+                }
+            }
+            for (Book b : library.lent().values()) {
+                out.writeInt(titleIndex.get(Library.Key.of(b)));
+                out.writeInt(b.getId());
+            }
+            out.writeInt((int) sum.getValue());
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, directory.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // the rename must be on the disk before the log it replaces is cleared
+        forceDirectory();
+        log.close();
+        log = FileChannel.open(directory.resolve(LOG), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        committedSize = 0;
+        failure = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        library.attach(null);
+        log.close();
+    }
+
+    void added(Book b) {
+        write(ADDED, b);
+    }
+
+    void borrowed(Book b) {
+        write(BORROWED, b);
+    }
+
+    void returned(Book b) {
+        int length = 13;
+        endRecord(record(length, RETURNED, b.getId()), length);
+    }
+
+    /**
+     * Writes the records of the current operation, the library changes only
+     * after this returns.
+     * @throws UncheckedIOException when they could not be written, the log is
+     *         cut back to the previous operation
+     */
+    void commit() {
+        checkLog();
+        flush();
+        try {
+            if (sync) log.force(false);
+            committedSeq = seq;
+            committedSize = log.size();
+        } catch (IOException e) {
+            throw abort(e);
+        }
+    }
+
+    private void flush() {
+        try {
+            pending.flip();
+            while (pending.hasRemaining()) {
+                log.write(pending);
+            }
+            pending.clear();
+        } catch (IOException e) {
+            throw abort(e);
+        }
+    }
+
+    /**
+     * Drops the records of the current operation.
+     */
+    private UncheckedIOException abort(IOException e) {
+        pending.clear();
+        seq = committedSeq;
+        try {
+            log.truncate(committedSize);
+        } catch (IOException truncate) {
+            e.addSuppressed(truncate);
+            failure = e;
+        }
+        return new UncheckedIOException(e);
+    }
+
+    private void checkLog() {
+        if (failure != null) throw new UncheckedIOException("Library log is damaged, take a snapshot", failure);
+    }
+
+    /**
+     * Forces the directory entry, where the platform cannot open a directory
+     * the rename is left to the file system.
+     */
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // e.g. Windows
+        }
+    }
+
+    private void write(byte type, Book b) {
+        byte[] author = bytes(b.getAuthor());
+        byte[] title = bytes(b.getTitle());
+        int length = 13 + length(author) + length(title);
+        ByteBuffer r = record(length, type, b.getId());
+        putString(r, author);
+        putString(r, title);
+        endRecord(r, length);
+    }
+
+    private ByteBuffer record(int length, byte type, int id) {
+        checkLog();
+        if (pending.remaining() < 8 + length) {
+            if (pending.position() > 0) flush();
+            if (pending.capacity() < 8 + length) pending = ByteBuffer.allocate(8 + length);
+        }
+        pending.putInt(length);
+        pending.putLong(++seq).put(type).putInt(id);
+        return pending;
+    }
+
+    private void endRecord(ByteBuffer r, int length) {
+        crc.reset();
+        crc.update(r.array(), r.position() - length, length);
+        r.putInt((int) crc.getValue());
+    }
+
+    /**
+     * @return sequence number of the snapshot, 0 when there is none
+     */
+    private long loadSnapshot() throws IOException {
+        Path file = directory.resolve(SNAPSHOT);
+        if (!Files.exists(file)) return 0;
+        MappedByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (in.limit() < 28 || in.getInt(0) != MAGIC || in.getInt(4) != VERSION) {
+            throw new IOException("Not a library snapshot: " + file);
+        }
+        CRC32 sum = new CRC32();
+        sum.update(in.duplicate().limit(in.limit() - 4));
+        if ((int) sum.getValue() != in.getInt(in.limit() - 4)) throw new IOException("Damaged library snapshot: " + file);
+        in.position(8);
+        long last = in.getLong();
+        Library.Key[] titles = new Library.Key[in.getInt()];
+        int lent = in.getInt();
+        for (int i = 0; i < titles.length; i++) {
+            String author = getString(in);
+            String title = getString(in);
+            titles[i] = new Library.Key(author, title);
+            int count = in.getInt();
+            if (count == 0) continue;
+            ArrayDeque<Book> copies = new ArrayDeque<>(count);
+            for (int k = 0; k < count; k++) {
+                copies.addLast(new Book(in.getInt(), author, title));
+            }
+            library.restoreShelf(titles[i], copies);
+        }
+        for (int i = 0; i < lent; i++) {
+            Library.Key key = titles[in.getInt()];
+            library.restoreLent(new Book(in.getInt(), key.author(), key.title()));
+        }
+        return last;
+    }
+
+    /**
+     * Applies the log records after the snapshot and cuts off a torn record.
+     * @return sequence number of the last change
+     */
+    private long replay() throws IOException {
+        Path file = directory.resolve(LOG);
+        long last = seq;
+        if (!Files.exists(file)) return last;
+        long end = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32 sum = new CRC32();
+            while (in.remaining() >= 4) {
+                int length = in.getInt(in.position());
+                if (length < 13 || in.remaining() < 8 + length) break;
+                int start = in.position() + 4;
+                sum.reset();
+                sum.update(in.duplicate().position(start).limit(start + length));
+                if ((int) sum.getValue() != in.getInt(start + length)) break;
+                in.position(start);
+                long s = in.getLong();
+                byte type = in.get();
+                int id = in.getInt();
+                if (s > last) {
+                    last = s;
+                    if (type == RETURNED) {
+                        Book b = library.lent().get(id);
+                        if (b == null || !library.giveBack(b)) throw new IOException("Copy " + id + " was not borrowed, " + file);
+                    } else {
+                        String author = getString(in);
+                        String title = getString(in);
+                        if (type == ADDED) {
+                            library.restoreAdded(new Book(id, author, title));
+                        } else if (!library.restoreBorrow(new Library.Key(author, title), id)) {
+                            throw new IOException("Copy " + id + " was not on the shelf, " + file);
+                        }
+                    }
+                }
+                in.position(start + length + 4);
+                end = in.position();
+            }
+        }
+        // a torn record would hide the ones appended after it
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (channel.size() > end) channel.truncate(end);
+        }
+        return last;
+    }
+
+    private static byte[] bytes(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] b) {
+        return 4 + (b == null ? 0 : b.length);
+    }
+
+    private static void putString(ByteBuffer out, byte[] b) {
+        if (b == null) {
+            out.putInt(-1);
+        } else {
+            out.putInt(b.length).put(b);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) return null;
+        if (scratch.length < length) scratch = new byte[Math.max(length, 2 * scratch.length)];
+        in.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,88 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Words of the catalogue for autocomplete. Children of a node are kept in a
+ * sorted char array searched by bisection, which is far smaller than a map
+ * per node for hundreds of thousands of words.
+ */
+class PrefixTrie {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    private static final class Node {
+        char[] keys = NO_KEYS;
+        Node[] children = NO_NODES;
+        /** the word ending here was added */
+        boolean word;
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i < 0 ? null : children[i];
+        }
+
+        Node addChild(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) return children[i];
+            i = -i - 1;
+            char[] k = new char[keys.length + 1];
+            Node[] n = new Node[keys.length + 1];
+            System.arraycopy(keys, 0, k, 0, i);
+            System.arraycopy(children, 0, n, 0, i);
+            System.arraycopy(keys, i, k, i + 1, keys.length - i);
+            System.arraycopy(children, i, n, i + 1, keys.length - i);
+            k[i] = c;
+            n[i] = new Node();
+            keys = k;
+            children = n;
+            return n[i];
+        }
+    }
+
+    private final Node root = new Node();
+
+    void add(String word) {
+        Node node = root;
+        for (int i = 0; i < word.length(); i++) {
+            node = node.addChild(word.charAt(i));
+        }
+        node.word = true;
+    }
+
+    boolean contains(String word) {
+        Node node = find(word);
+        return node != null && node.word;
+    }
+
+    /**
+     * At most limit words starting with the prefix, in alphabetical order.
+     * Every node leads to a word, so this visits no more than limit words.
+     */
+    List<String> complete(String prefix, int limit) {
+        List<String> words = new ArrayList<>();
+        Node node = find(prefix);
+        if (node != null && limit > 0) collect(node, new StringBuilder(prefix), words, limit);
+        return words;
+    }
+
+    private void collect(Node node, StringBuilder word, List<String> words, int limit) {
+        if (node.word) words.add(word.toString());
+        for (int i = 0; i < node.keys.length && words.size() < limit; i++) {
+            word.append(node.keys[i]);
+            collect(node.children[i], word, words, limit);
+            word.setLength(word.length() - 1);
+        }
+    }
+
+    private Node find(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i));
+        }
+        return node;
+    }
+}
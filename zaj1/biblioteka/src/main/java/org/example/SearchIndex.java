@@ -0,0 +1,130 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Search over the titles of a {@link Library}. Words of author and title are
+ * folded with {@link TextFolding} and kept in an inverted index (word to
+ * titles) and a {@link PrefixTrie} for autocomplete. A title enters both when
+ * its first copy is shelved and stays there; borrowing the last copy and
+ * giving one back only change the title's availability, so the index is
+ * never rebuilt and borrow does not touch the word lists.
+ * <p>
+ * Search returns titles with a copy on the shelf, autocomplete offers words
+ * of the whole catalogue. Not thread safe, like Library.
+ */
+public class SearchIndex {
+
+    private static final class Entry {
+        final Library.Key key;
+        final String[] words;
+        boolean available;
+
+        Entry(Library.Key key, String[] words) {
+            this.key = key;
+            this.words = words;
+        }
+
+        boolean hasWord(String word) {
+            for (String w : words) {
+                if (w.equals(word)) return true;
+            }
+            return false;
+        }
+    }
+
+    private final Map<Library.Key, Entry> entries = new HashMap<>();
+    private final Map<String, List<Entry>> postings = new HashMap<>();
+    private final PrefixTrie words = new PrefixTrie();
+    private int available;
+
+    /**
+     * The title has a copy on the shelf again.
+     */
+    void add(Library.Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(key, TextFolding.words(key.author() + " " + key.title()).toArray(new String[0]));
+            for (String word : entry.words) {
+                List<Entry> titles = postings.get(word);
+                if (titles == null) {
+                    titles = new ArrayList<>(1);
+                    postings.put(word, titles);
+                    words.add(word);
+                }
+                titles.add(entry);
+            }
+            entries.put(key, entry);
+        }
+        if (!entry.available) {
+            entry.available = true;
+            available++;
+        }
+    }
+
+    /**
+     * The last copy of the title has been borrowed.
+     */
+    void remove(Library.Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.available) {
+            entry.available = false;
+            available--;
+        }
+    }
+
+    /**
+     * Titles on the shelf whose author or title contain every word of the
+     * query, at most limit of them in no particular order.
+     */
+    public List<Library.Key> search(String query, int limit) {
+        Set<String> wanted = TextFolding.words(query);
+        List<Entry> rarest = null;
+        for (String word : wanted) {
+            List<Entry> titles = postings.get(word);
+            if (titles == null) return Collections.emptyList();
+            if (rarest == null || titles.size() < rarest.size()) rarest = titles;
+        }
+        if (rarest == null) return Collections.emptyList();
+        // walk the rarest word, a title has few words to check the others against
+        List<Library.Key> found = new ArrayList<>();
+        for (Entry entry : rarest) {
+            if (found.size() >= limit) break;
+            if (!entry.available) continue;
+            boolean all = true;
+            for (String word : wanted) {
+                if (!entry.hasWord(word)) {
+                    all = false;
+                    break;
+                }
+            }
+            if (all) found.add(entry.key);
+        }
+        return found;
+    }
+
+    /**
+     * Words completing the last, unfinished word of the input, alphabetically.
+     */
+    public List<String> complete(String input, int limit) {
+        String folded = TextFolding.fold(input);
+        int start = folded.length();
+        while (start > 0 && Character.isLetterOrDigit(folded.charAt(start - 1))) {
+            start--;
+        }
+        if (start == folded.length()) return Collections.emptyList();
+        return words.complete(folded.substring(start), limit);
+    }
+
+    /**
+     * Titles with a copy on the shelf.
+     */
+    public int size() {
+        return available;
+    }
+}
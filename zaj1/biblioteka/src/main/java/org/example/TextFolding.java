@@ -0,0 +1,54 @@
+package org.example;
+
+import java.text.Normalizer;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Folds text for searching: lower case, accents removed ("Żółć" and "zolc"
+ * are the same word), anything that is not a letter or digit separates words.
+ */
+final class TextFolding {
+
+    private TextFolding() {
+    }
+
+    static String fold(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            // letters with a stroke do not decompose
+            switch (c) {
+                case 'ł', 'Ł' -> c = 'l';
+                case 'ø', 'Ø' -> c = 'o';
+                case 'đ', 'Đ' -> c = 'd';
+                default -> {
+                }
+            }
+            sb.append(c);
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Distinct folded words of the text in order of appearance.
+     */
+    static Set<String> words(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        String folded = fold(text);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean part = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (part && start < 0) {
+                start = i;
+            } else if (!part && start >= 0) {
+                words.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
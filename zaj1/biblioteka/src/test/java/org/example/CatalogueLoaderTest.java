@@ -0,0 +1,110 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogueLoaderTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void loadCsv() throws IOException {
+        // *** GIVEN ***
+        Path file = dir.resolve("catalogue.csv");
+        Files.write(file, Arrays.asList(
+                "author,title",
+                "J.R.R. Tolkien,Silmallirion",
+                "",
+                "\"Twain, Mark\",\"The \"\"adventures\"\" of Tom Sawyer\""), StandardCharsets.UTF_8);
+        Library lib = new Library();
+
+        // *** WHEN ***
+        long loaded = new CatalogueLoader(CatalogueLoader.Format.of(file)).load(file, lib::init);
+
+        // *** THEN ***
+        assertEquals(2, loaded);
+        assertEquals(1, lib.available("J.R.R. Tolkien", "Silmallirion"));
+        assertEquals(1, lib.available("Twain, Mark", "The \"adventures\" of Tom Sawyer"));
+    }
+
+    @Test
+    void loadJsonLines() throws IOException {
+        // *** GIVEN ***
+        Path file = dir.resolve("catalogue.jsonl");
+        Files.write(file, Arrays.asList(
+                "{\"author\": \"Stanis\\u0142aw Lem\", \"title\": \"Solaris\"}",
+                "{\"year\": 1922, \"tags\": [\"novel\", {\"a\": \"}\"}], \"title\": \"Ulisses\", \"author\": \"James Joice\"}"),
+                StandardCharsets.UTF_8);
+        SearchIndex index = new SearchIndex();
+        Library lib = new Library(index);
+
+        // *** WHEN ***
+        long loaded = new CatalogueLoader(CatalogueLoader.Format.of(file)).load(file, lib::init);
+
+        // *** THEN ***
+        assertEquals(2, loaded);
+        assertEquals(1, lib.available("Stanisław Lem", "Solaris"));
+        assertEquals(1, lib.available("James Joice", "Ulisses"));
+        assertEquals(1, index.search("ulisses", 10).size());
+    }
+
+    @Test
+    void parallelLoadKeepsFileOrder() throws IOException {
+        // *** GIVEN ***
+        Path file = dir.resolve("catalogue.csv");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            lines.add("Author " + (i % 100) + ",Title " + i);
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8);
+        List<String> titles = new ArrayList<>();
+        Set<Integer> ids = new HashSet<>();
+        long[] reported = new long[1];
+
+        // *** WHEN ***
+        long loaded = new CatalogueLoader(CatalogueLoader.Format.CSV, 4, 128, (records, perSecond) -> reported[0] = records)
+                .load(file, books -> {
+                    assertTrue(books.length <= 128);
+                    for (Book b : books) {
+                        titles.add(b.getTitle());
+                        ids.add(b.getId());
+                    }
+                });
+
+        // *** THEN ***
+        assertEquals(10000, loaded);
+        assertEquals(10000, reported[0]);
+        assertEquals(10000, ids.size(), "Books created on different threads get distinct ids");
+        for (int i = 0; i < 10000; i++) {
+            assertEquals("Title " + i, titles.get(i));
+        }
+    }
+
+    @Test
+    void badLineIsReported() throws IOException {
+        // *** GIVEN ***
+        Path file = dir.resolve("catalogue.jsonl");
+        Files.write(file, Arrays.asList(
+                "{\"author\": \"Mark Twain\", \"title\": \"Tom Sawyer\"}",
+                "{\"author\": \"Mark Twain\"}"), StandardCharsets.UTF_8);
+
+        // *** WHEN ***
+        IOException e = assertThrows(IOException.class,
+                () -> new CatalogueLoader(CatalogueLoader.Format.JSON_LINES, 2, 1, null).load(file, books -> { }));
+
+        // *** THEN ***
+        assertTrue(e.getMessage().startsWith("Line 2:"), e.getMessage());
+    }
+}
@@ -0,0 +1,106 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentLibraryTest {
+    private ConcurrentLibrary lib;
+
+    @org.junit.jupiter.api.BeforeEach
+    void setUp() {
+        lib = new ConcurrentLibrary();
+    }
+
+    @Test
+    void borrowAndGiveBack() {
+        // *** GIVEN ***
+        Book first = new Book("J.R.R. Tolkien", "Silmallirion");
+        Book second = new Book("J.R.R. Tolkien", "Silmallirion");
+        this.lib.init(new Book[] { first, second, new Book("Mark Twain", "The adventures of Tom Sawyer") });
+
+        // *** WHEN ***
+        Book notFound = this.lib.borrow("J.R.R. Tolkien", "Two towers");
+        Book b1 = this.lib.borrow("J.R.R. Tolkien", "Silmallirion");
+        Book b2 = this.lib.borrow("J.R.R. Tolkien", "Silmallirion");
+        Book b3 = this.lib.borrow("J.R.R. Tolkien", "Silmallirion");
+
+        // *** THEN ***
+        assertNull(notFound, "This book should not exists.");
+        assertSame(first, b1);
+        assertSame(second, b2);
+        assertNull(b3, "All copies are borrowed.");
+        assertTrue(this.lib.giveBack(b1));
+        assertFalse(this.lib.giveBack(b1), "Book cannot be returned twice");
+        assertFalse(this.lib.giveBack(new Book("J.R.R. Tolkien", "Silmallirion")), "Book is not from this library");
+        assertEquals(1, this.lib.available("J.R.R. Tolkien", "Silmallirion"));
+        assertSame(first, this.lib.borrow("J.R.R. Tolkien", "Silmallirion"));
+    }
+
+    @Test
+    void initKeepsBorrowedCopies() {
+        // *** GIVEN ***
+        Book first = new Book("James Joice", "Ulisses");
+        this.lib.init(new Book[] { first });
+        Book b = this.lib.borrow("James Joice", "Ulisses");
+
+        // *** WHEN ***
+        this.lib.init(new Book[] { new Book("James Joice", "Ulisses") });
+
+        // *** THEN ***
+        assertEquals(1, this.lib.available("James Joice", "Ulisses"));
+        assertTrue(this.lib.giveBack(b));
+        assertEquals(2, this.lib.available("James Joice", "Ulisses"));
+    }
+
+    @Test
+    void concurrentTerminals() throws Exception {
+        // *** GIVEN ***
+        int copies = 8;
+        Book[] books = new Book[copies];
+        for (int i = 0; i < copies; i++) {
+            books[i] = new Book("Mark Twain", "The adventures of Tom Sawyer");
+        }
+        this.lib.init(books);
+        Map<Book, Boolean> known = new IdentityHashMap<>();
+        for (Book b : books) {
+            known.put(b, true);
+        }
+
+        // *** WHEN ***
+        ExecutorService terminals = Executors.newFixedThreadPool(16);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            results.add(terminals.submit(() -> {
+                int borrowed = 0;
+                for (int i = 0; i < 20000; i++) {
+                    Book b = this.lib.borrow("Mark Twain", "The adventures of Tom Sawyer");
+                    if (b == null) continue;
+                    if (!known.containsKey(b)) throw new AssertionError("Unknown copy");
+                    borrowed++;
+                    if (!this.lib.giveBack(b)) throw new AssertionError("Copy lent twice");
+                }
+                return borrowed;
+            }));
+        }
+        int borrowed = 0;
+        for (Future<Integer> f : results) {
+            borrowed += f.get();
+        }
+        terminals.shutdown();
+        assertTrue(terminals.awaitTermination(10, TimeUnit.SECONDS));
+
+        // *** THEN ***
+        assertTrue(borrowed > 0, "Terminals have borrowed books");
+        assertEquals(copies, this.lib.available("Mark Twain", "The adventures of Tom Sawyer"));
+    }
+}
@@ -0,0 +1,172 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LibraryStoreTest {
+    @TempDir
+    Path dir;
+
+    private static Book[] books() {
+        return new Book[] {
+                new Book("J.R.R. Tolkien", "Silmallirion"),
+                new Book("J.R.R. Tolkien", "Silmallirion"),
+                new Book("James Joice", "Ulisses"),
+                new Book("Mark Twain", "The adventures of Tom Sawyer")
+        };
+    }
+
+    @Test
+    void restartFromLog() throws IOException {
+        // *** GIVEN ***
+        Book[] books = books();
+        try (LibraryStore store = LibraryStore.open(dir, null)) {
+            Library lib = store.getLibrary();
+            lib.init(books);
+            lib.borrow("James Joice", "Ulisses");
+            lib.borrow("J.R.R. Tolkien", "Silmallirion");
+        }
+
+        // *** WHEN ***
+        try (LibraryStore store = LibraryStore.open(dir, null)) {
+            Library lib = store.getLibrary();
+
+            // *** THEN ***
+            assertEquals(0, lib.available("James Joice", "Ulisses"));
+            assertEquals(1, lib.available("J.R.R. Tolkien", "Silmallirion"));
+            assertEquals(books[1].getId(), lib.borrow("J.R.R. Tolkien", "Silmallirion").getId());
+            assertTrue(lib.giveBack(books[2]), "Copy borrowed before the restart is returned");
+        }
+    }
+
+    @Test
+    void restartFromSnapshotAndLog() throws IOException {
+        // *** GIVEN ***
+        Book[] books = books();
+        try (LibraryStore store = LibraryStore.open(dir, null)) {
+            Library lib = store.getLibrary();
+            lib.init(books);
+            lib.borrow("Mark Twain", "The adventures of Tom Sawyer");
+            store.snapshot();
+            assertEquals(0, Files.size(dir.resolve(LibraryStore.LOG)));
+            lib.giveBack(books[3]);
+            lib.borrow("James Joice", "Ulisses");
+        }
+
+        // *** WHEN ***
+        SearchIndex index = new SearchIndex();
+        try (LibraryStore store = LibraryStore.open(dir, index)) {
+            Library lib = store.getLibrary();
+
+            // *** THEN ***
+            assertEquals(1, lib.available("Mark Twain", "The adventures of Tom Sawyer"));
+            assertEquals(0, lib.available("James Joice", "Ulisses"));
+            assertEquals(2, lib.available("J.R.R. Tolkien", "Silmallirion"));
+            assertEquals(2, index.size());
+            assertFalse(lib.giveBack(books[3]), "Copy is on the shelf");
+            assertTrue(lib.giveBack(books[2]));
+            Book added = new Book("Stanisław Lem", "Solaris");
+            assertTrue(added.getId() > books[3].getId());
+        }
+    }
+
+    @Test
+    void tornRecordIsDropped() throws IOException {
+        // *** GIVEN ***
+        try (LibraryStore store = LibraryStore.open(dir, null)) {
+            store.getLibrary().init(books());
+            store.getLibrary().borrow("James Joice", "Ulisses");
+        }
+        Path log = dir.resolve(LibraryStore.LOG);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        // *** WHEN ***
+        try (LibraryStore store = LibraryStore.open(dir, null)) {
+            // *** THEN ***
+            assertEquals(1, store.getLibrary().available("James Joice", "Ulisses"), "Torn borrow is not applied");
+            store.getLibrary().borrow("Mark Twain", "The adventures of Tom Sawyer");
+        }
+        try (LibraryStore store = LibraryStore.open(dir, null)) {
+            assertEquals(0, store.getLibrary().available("Mark Twain", "The adventures of Tom Sawyer"),
+                    "Changes after the torn record are kept");
+        }
+    }
+
+    @Test
+    void failedWriteLeavesLibraryUnchanged() throws IOException {
+        // *** GIVEN ***
+        Book[] books = books();
+        try (LibraryStore store = LibraryStore.open(dir, null)) {
+            Library lib = store.getLibrary();
+            lib.init(books);
+            lib.borrow("James Joice", "Ulisses");
+            long size = Files.size(dir.resolve(LibraryStore.LOG));
+            store.log.close();
+
+            // *** WHEN ***
+            assertThrows(UncheckedIOException.class, () -> lib.borrow("J.R.R. Tolkien", "Silmallirion"));
+            assertThrows(UncheckedIOException.class, () -> lib.giveBack(books[2]));
+            assertThrows(UncheckedIOException.class, () -> lib.init(new Book[] { new Book("Stanisław Lem", "Solaris") }));
+
+            // *** THEN ***
+            assertEquals(2, lib.available("J.R.R. Tolkien", "Silmallirion"));
+            assertEquals(0, lib.available("James Joice", "Ulisses"));
+            assertEquals(0, lib.available("Stanisław Lem", "Solaris"));
+            assertTrue(lib.lent().containsKey(books[2].getId()));
+            assertEquals(size, Files.size(dir.resolve(LibraryStore.LOG)));
+        }
+    }
+
+    @Test
+    void logWhichCannotBeCutBackRefusesChanges() throws IOException {
+        // *** GIVEN ***
+        Book[] books = books();
+        try (LibraryStore store = LibraryStore.open(dir, null)) {
+            Library lib = store.getLibrary();
+            lib.init(books);
+            store.log.close();
+            assertThrows(UncheckedIOException.class, () -> lib.borrow("James Joice", "Ulisses"));
+            long size = Files.size(dir.resolve(LibraryStore.LOG));
+
+            // *** WHEN ***
+            store.log = FileChannel.open(dir.resolve(LibraryStore.LOG), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+            // *** THEN ***
+            assertThrows(UncheckedIOException.class, () -> lib.borrow("James Joice", "Ulisses"),
+                    "Nothing is appended after a torn operation");
+            assertEquals(size, Files.size(dir.resolve(LibraryStore.LOG)));
+            store.snapshot();
+            assertEquals(books[2].getId(), lib.borrow("James Joice", "Ulisses").getId());
+        }
+        try (LibraryStore store = LibraryStore.open(dir, null)) {
+            assertEquals(0, store.getLibrary().available("James Joice", "Ulisses"));
+        }
+    }
+
+    @Test
+    void damagedSnapshotIsRejected() throws IOException {
+        // *** GIVEN ***
+        try (LibraryStore store = LibraryStore.open(dir, null)) {
+            store.getLibrary().init(books());
+            store.snapshot();
+        }
+        try (FileChannel channel = FileChannel.open(dir.resolve(LibraryStore.SNAPSHOT), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 'X' }), 40);
+        }
+
+        // *** THEN ***
+        assertThrows(IOException.class, () -> LibraryStore.open(dir, null));
+    }
+}
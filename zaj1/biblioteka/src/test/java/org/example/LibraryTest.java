@@ -3,8 +3,8 @@ package org.example;
 import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Field;
-import java.util.Arrays;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -33,18 +33,19 @@ class LibraryTest {
         };
         this.lib.init(books);
         // *** THEN ***
-        List<Book> listBooks;
+        Map<Library.Key, ArrayDeque<Book>> shelf;
         try {
             Field f = lib.getClass().getDeclaredField("books");
             f.setAccessible(true);
-            listBooks = (List<Book>) f.get(lib);
+            shelf = (Map<Library.Key, ArrayDeque<Book>>) f.get(lib);
             f.setAccessible(false);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
 
-        assertArrayEquals(books, listBooks.toArray());
-        assertEquals("Silmallirion", listBooks.get(0).getTitle());
+        assertEquals(3, shelf.size());
+        assertSame(books[0], shelf.get(new Library.Key("J.R.R. Tolkien", "Silmallirion")).peekFirst());
+        assertEquals(1, this.lib.available("Mark Twain", "The adventures of Tom Sawyer"));
     }
 
     @org.junit.jupiter.api.Test
@@ -58,16 +59,16 @@ class LibraryTest {
         };
         this.lib.init(books);
 
-        List<Book> listBooks;
-        List<Book> borrowed;
+        Map<Library.Key, ArrayDeque<Book>> shelf;
+        Map<Integer, Book> borrowed;
         try {
             Field f1 = lib.getClass().getDeclaredField("books");
             f1.setAccessible(true);
-            listBooks = (List<Book>) f1.get(lib);
+            shelf = (Map<Library.Key, ArrayDeque<Book>>) f1.get(lib);
             f1.setAccessible(false);
             Field f2 = lib.getClass().getDeclaredField("borrowed");
             f2.setAccessible(true);
-            borrowed = (List<Book>) f2.get(lib);
+            borrowed = (Map<Integer, Book>) f2.get(lib);
             f2.setAccessible(false);
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -79,9 +80,9 @@ class LibraryTest {
 
         // *** THEN ***
         assertNull(notFound, "This book should not exists.");
-        assertEquals(b.getId(), 1);
+        assertEquals(books[0].getId(), b.getId());
         assertEquals(1, borrowed.size());
-        assertEquals(2, listBooks.size());
+        assertEquals(2, copies(shelf));
     }
 
     @Test
@@ -95,17 +96,17 @@ class LibraryTest {
         };
         this.lib.init(books);
 
-        List<Book> listBooks;
-        List<Book> borrowed;
+        Map<Library.Key, ArrayDeque<Book>> shelf;
+        Map<Integer, Book> borrowed;
         try {
             Field f1 = lib.getClass().getDeclaredField("books");
             f1.setAccessible(true);
-            listBooks = (List<Book>) f1.get(lib);
+            shelf = (Map<Library.Key, ArrayDeque<Book>>) f1.get(lib);
             f1.setAccessible(false);
             Field f2 = lib.getClass().getDeclaredField("borrowed");
             f2.setAccessible(true);
-            borrowed = (List<Book>) f2.get(lib);
-            f1.setAccessible(false);
+            borrowed = (Map<Integer, Book>) f2.get(lib);
+            f2.setAccessible(false);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -116,7 +117,38 @@ class LibraryTest {
 
         // *** THEN ***
         assertEquals(0, borrowed.size());
-        assertEquals(3, listBooks.size());
+        assertEquals(3, copies(shelf));
         assertTrue(returned, "Book has been returned");
+        assertFalse(this.lib.giveBack(b), "Book cannot be returned twice");
+    }
+
+    @Test
+    void borrowCopies() {
+        // *** GIVEN ***
+        // class has two copies of one title
+        Book first = new Book("J.R.R. Tolkien", "Silmallirion");
+        Book second = new Book("J.R.R. Tolkien", "Silmallirion");
+        this.lib.init(new Book[] { first, second });
+
+        // *** WHEN ***
+        Book b1 = this.lib.borrow("J.R.R. Tolkien", "Silmallirion");
+        Book b2 = this.lib.borrow("J.R.R. Tolkien", "Silmallirion");
+        Book b3 = this.lib.borrow("J.R.R. Tolkien", "Silmallirion");
+
+        // *** THEN ***
+        assertSame(first, b1);
+        assertSame(second, b2);
+        assertNull(b3, "All copies are borrowed.");
+        assertEquals(0, this.lib.available("J.R.R. Tolkien", "Silmallirion"));
+        assertTrue(this.lib.giveBack(b2));
+        assertEquals(1, this.lib.available("J.R.R. Tolkien", "Silmallirion"));
+    }
+
+    private static int copies(Map<Library.Key, ArrayDeque<Book>> shelf) {
+        int n = 0;
+        for (ArrayDeque<Book> c : shelf.values()) {
+            n += c.size();
+        }
+        return n;
     }
 }
\ No newline at end of file
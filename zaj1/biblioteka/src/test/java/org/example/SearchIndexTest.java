@@ -0,0 +1,78 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchIndexTest {
+    private SearchIndex index;
+    private Library lib;
+
+    @org.junit.jupiter.api.BeforeEach
+    void setUp() {
+        index = new SearchIndex();
+        lib = new Library(index);
+        lib.init(new Book[] {
+                new Book("J.R.R. Tolkien", "Silmallirion"),
+                new Book("J.R.R. Tolkien", "The Two Towers"),
+                new Book("Mark Twain", "The adventures of Tom Sawyer"),
+                new Book("Stanisław Lem", "Solaris"),
+                new Book("Stanisław Lem", "Solaris")
+        });
+    }
+
+    @Test
+    void searchByPartialAuthorAndTitle() {
+        // *** WHEN ***
+        List<Library.Key> tolkien = index.search("tolkien", 10);
+        List<Library.Key> towers = index.search("TOLKIEN towers", 10);
+        List<Library.Key> none = index.search("tolkien sawyer", 10);
+
+        // *** THEN ***
+        assertEquals(2, tolkien.size());
+        assertEquals(Arrays.asList(new Library.Key("J.R.R. Tolkien", "The Two Towers")), towers);
+        assertTrue(none.isEmpty());
+        assertEquals(1, index.search("tolkien", 1).size());
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void searchIgnoresAccents() {
+        // *** THEN ***
+        assertEquals(Arrays.asList(new Library.Key("Stanisław Lem", "Solaris")), index.search("stanislaw", 10));
+        assertEquals(Arrays.asList(new Library.Key("Stanisław Lem", "Solaris")), index.search("Stanisław", 10));
+        assertEquals(Arrays.asList("solaris"), index.complete("Śo", 10));
+    }
+
+    @Test
+    void indexFollowsBorrowAndGiveBack() {
+        // *** WHEN ***
+        Book b = lib.borrow("Mark Twain", "The adventures of Tom Sawyer");
+        lib.borrow("Stanisław Lem", "Solaris");
+
+        // *** THEN ***
+        assertTrue(index.search("twain", 10).isEmpty(), "Last copy is borrowed.");
+        assertEquals(1, index.search("solaris", 10).size(), "One copy is left.");
+        assertEquals(3, index.size());
+        assertEquals(Arrays.asList("sawyer"), index.complete("saw", 10), "Catalogue words are completed.");
+
+        // *** WHEN ***
+        lib.giveBack(b);
+
+        // *** THEN ***
+        assertEquals(1, index.search("tom sawyer", 10).size());
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void completeIsLimited() {
+        // *** THEN ***
+        assertEquals(Arrays.asList("the", "tolkien", "tom", "towers", "twain", "two"), index.complete("Tolkien T", 10));
+        assertEquals(Arrays.asList("sawyer", "silmallirion", "solaris", "stanislaw"), index.complete("s", 10));
+        assertEquals(Arrays.asList("sawyer", "silmallirion"), index.complete("s", 2));
+        assertTrue(index.complete("tolkien ", 10).isEmpty(), "Nothing to complete after a space.");
+    }
+}
@@ -32,13 +32,13 @@ class LibraryTest {
         lib.init(books);
         //*** THEN ***
         try {
-            List<Book> listBooks;
+            Map<Library.Key, ArrayDeque<Book>> shelf;
             Field f = lib.getClass().getDeclaredField("books");
             f.setAccessible(true);
-            listBooks = (List<Book>) f.get(lib);
+            shelf = (Map<Library.Key, ArrayDeque<Book>>) f.get(lib);
             f.setAccessible(false);
-            assertEquals(3, listBooks.size());
-            assertEquals("Silmarillion", listBooks.get(0).getTitle());
+            assertEquals(3, shelf.size());
+            assertEquals("Silmarillion", shelf.get(new Library.Key("J.R.R. Tolkien", "Silmarillion")).peekFirst().getTitle());
         } catch(Exception e){
             fail("Exception occurred: " + e.getMessage());
         }